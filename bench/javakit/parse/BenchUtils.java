@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Utility methods for the benchmark harnesses (run by Gradle benchmark tasks, not part of SnapCode).
+ */
+public class BenchUtils {
+
+/**
+ * Returns text for given file path.
+ */
+public static String getText(String aPath) throws IOException
+{
+    return new String(Files.readAllBytes(Paths.get(aPath)), "UTF-8");
+}
+
+/**
+ * Adds JDK class names (from jrt file system or rt.jar).
+ */
+public static void getJDKClassNames(List <String> theNames) throws IOException
+{
+    // Handle Java 9+: Walk modules in jrt file system
+    try {
+        Path modules = FileSystems.getFileSystem(URI.create("jrt:/")).getPath("/modules");
+        Files.walk(modules).forEach(p -> { String path = p.toString();
+            int ind = path.indexOf('/', "/modules/".length());
+            if(ind>0) addClassName(path.substring(ind+1), theNames); });
+    }
+
+    // Handle Java 8: Read rt.jar
+    catch(Exception e) { getJarClassNames(new File(System.getProperty("java.home"), "lib/rt.jar"), theNames); }
+}
+
+/**
+ * Adds class names in given jar.
+ */
+public static void getJarClassNames(File aFile, List <String> theNames) throws IOException
+{
+    try(ZipFile zfile = new ZipFile(aFile)) {
+        for(Enumeration <? extends ZipEntry> e=zfile.entries(); e.hasMoreElements();)
+            addClassName(e.nextElement().getName(), theNames);
+    }
+}
+
+/**
+ * Returns a class loader for given jar paths (with JDK parent).
+ */
+public static ClassLoader getClassLoader(List <String> theJars) throws IOException
+{
+    URL urls[] = new URL[theJars.size()];
+    for(int i=0;i<urls.length;i++) urls[i] = new File(theJars.get(i)).toURI().toURL();
+    return new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+}
+
+/** Adds class name for given class file path (skipping module/package info). */
+private static void addClassName(String aPath, List <String> theNames)
+{
+    if(!aPath.endsWith(".class") || aPath.endsWith("-info.class")) return;
+    theNames.add(aPath.substring(0, aPath.length() - 6).replace('/', '.'));
+}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Prints time and heap used to create class decls (with members) for all classes in JDK and given jars, from class
+ * files (ClassFileDecls) or (with -reflect arg) from loaded classes, as run by Gradle 'declIndexTime' task (each mode
+ * in new JVM).
+ */
+public class ClassFileDeclsBench {
+
+/**
+ * Prints time and heap to create class decls for JDK classes and given jars.
+ */
+public static void main(String args[]) throws Exception
+{
+    // Get mode and jar paths
+    boolean reflect = args.length>0 && args[0].equals("-reflect");
+    List <String> jars = new ArrayList(Arrays.asList(args)); if(reflect) jars.remove(0);
+
+    // Get class names from JDK and jars
+    List <String> names = new ArrayList(); BenchUtils.getJDKClassNames(names);
+    for(String jar : jars) BenchUtils.getJarClassNames(new File(jar), names);
+
+    // Get owner for class loader of jars (with JDK parent)
+    ClassLoader cldr = BenchUtils.getClassLoader(jars);
+    JavaDeclOwner owner = new JavaDeclOwner() { public ClassLoader getClassLoader()  { return cldr; } };
+    JavaDeclOwner._readClassFiles = !reflect;
+
+    // Create class decls and load members, with time and heap used
+    Runtime rt = Runtime.getRuntime(); System.gc(); long mem = rt.totalMemory() - rt.freeMemory();
+    long time = System.nanoTime(); int count = 0, failed = 0;
+    for(String name : names) {
+        try { JavaDeclClass cdecl = owner.getJavaDeclClass(name); if(cdecl==null) { failed++; continue; }
+            cdecl.getAllDecls(); count++; }
+        catch(Throwable t) { failed++; }
+    }
+    time = System.nanoTime() - time;
+    System.gc(); mem = rt.totalMemory() - rt.freeMemory() - mem;
+    System.out.printf("ClassFileDecls (%s): %d classes (%d failed) in %.1f s, %.1f MB heap, %d decls\n",
+        reflect? "reflection" : "class files", count, failed, time/1e9, mem/1024/1024.0, owner._decls.size());
+}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compares class decls created from class files (ClassFileDecls) with class decls created from loaded classes for all
+ * classes in JDK and given jars, and prints decl ids, modifiers, eval types and param types that differ (as run by
+ * Gradle 'declCompare' task).
+ */
+public class ClassFileDeclsCompare {
+
+    // The number of differences found and the maximum number printed
+    static int           _diffCount;
+    static final int     PRINT_MAX = 200;
+
+/**
+ * Prints differences between class file decls and reflection decls for JDK classes and given jars.
+ */
+public static void main(String args[]) throws Exception
+{
+    // Get class names from JDK and jars
+    List <String> jars = Arrays.asList(args);
+    List <String> names = new ArrayList(); BenchUtils.getJDKClassNames(names);
+    for(String jar : jars) BenchUtils.getJarClassNames(new File(jar), names);
+
+    // Get owners for class loader of jars (with JDK parent): One reads class files, other loaded classes
+    ClassLoader cldr = BenchUtils.getClassLoader(jars);
+    JavaDeclOwner fileOwner = new JavaDeclOwner() { public ClassLoader getClassLoader()  { return cldr; } };
+    JavaDeclOwner reflOwner = new JavaDeclOwner() { public ClassLoader getClassLoader()  { return cldr; } };
+
+    // Compare decls for each class (skipping classes either mode can't create)
+    int count = 0, skipped = 0;
+    for(String name : names) {
+        List <JavaDecl> fdecls = getDecls(fileOwner, true, name), rdecls = getDecls(reflOwner, false, name);
+        if(fdecls==null || rdecls==null) { skipped++; continue; }
+        compare(name, fdecls, rdecls); count++;
+    }
+    System.out.printf("ClassFileDecls compare: %d classes (%d skipped), %d differences\n", count, skipped, _diffCount);
+}
+
+/**
+ * Returns all decls for given class name from given owner in given mode (or null if class decl can't be created).
+ */
+private static List <JavaDecl> getDecls(JavaDeclOwner anOwner, boolean readClassFiles, String aName)
+{
+    JavaDeclOwner._readClassFiles = readClassFiles;
+    try { JavaDeclClass cdecl = anOwner.getJavaDeclClass(aName); return cdecl!=null? cdecl.getAllDecls() : null; }
+    catch(Throwable t) { return null; }
+}
+
+/**
+ * Compares class file decls and reflection decls for class by id: Missing, extra, modifiers, eval and param types.
+ */
+private static void compare(String aName, List <JavaDecl> fileDecls, List <JavaDecl> reflDecls)
+{
+    // Map reflection decls by id
+    Map <String,JavaDecl> reflById = new HashMap();
+    for(JavaDecl decl : reflDecls) reflById.put(decl.getId(), decl);
+
+    // Compare class file decls with reflection decls of same id
+    for(JavaDecl fdecl : fileDecls) { JavaDecl rdecl = reflById.remove(fdecl.getId());
+        if(rdecl==null) { diff(aName, "extra in class file", fdecl.getId()); continue; }
+        if(fdecl.getModifiers()!=rdecl.getModifiers())
+            diff(aName, "modifiers", fdecl.getId() + ": " + fdecl.getModifiers() + " != " + rdecl.getModifiers());
+        String ftype = getId(fdecl.getEvalType()), rtype = getId(rdecl.getEvalType());
+        if(!Objects.equals(ftype, rtype)) diff(aName, "eval type", fdecl.getId() + ": " + ftype + " != " + rtype);
+        String fptypes = getIds(fdecl.getParamTypes()), rptypes = getIds(rdecl.getParamTypes());
+        if(!Objects.equals(fptypes, rptypes))
+            diff(aName, "param types", fdecl.getId() + ": " + fptypes + " != " + rptypes);
+    }
+
+    // Report reflection decls with no class file decl
+    for(String id : reflById.keySet()) diff(aName, "missing in class file", id);
+}
+
+/** Records a difference (and prints it, if under print max). */
+private static void diff(String aName, String aKind, String aMsg)
+{
+    if(_diffCount++<PRINT_MAX) System.out.println(aName + ": " + aKind + ": " + aMsg);
+}
+
+/** Returns id of given decl (or null). */
+private static String getId(JavaDecl aDecl)  { return aDecl!=null? aDecl.getId() : null; }
+
+/** Returns ids of given decls joined (or null). */
+private static String getIds(JavaDecl theDecls[])
+{
+    if(theDecls==null) return null;
+    StringBuilder sb = new StringBuilder();
+    for(JavaDecl decl : theDecls) sb.append(sb.length()>0? "," : "").append(getId(decl));
+    return sb.toString();
+}
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Prints ClassNameIndex lookup time for simple and camel-hump prefixes against JDK classes and given jars, as run by
+ * Gradle 'classNameIndexTime' task.
+ */
+public class ClassNameIndexBench {
+
+/**
+ * Prints index build time and lookup time for sample prefixes.
+ */
+public static void main(String args[]) throws Exception
+{
+    // Get class names from JDK and jars and create index
+    List <String> names = new ArrayList(); BenchUtils.getJDKClassNames(names);
+    for(String jar : args) BenchUtils.getJarClassNames(new File(jar), names);
+    long time = System.nanoTime();
+    ClassNameIndex index = new ClassNameIndex(names);
+    System.out.printf("ClassNameIndex: %d names indexed in %.1f ms\n", index.getCount(), (System.nanoTime()-time)/1e6);
+
+    // Look up prefixes (warm up first), then time each
+    String prefixes[] = { "Stri", "List", "HashM", "AbstractL", "JTab", "HM", "ArLi", "URLC", "NPE", "Xyzzy" };
+    for(int i=0;i<1000;i++) for(String prefix : prefixes) index.getClassNames(prefix);
+    for(String prefix : prefixes) { int count = 1000; time = System.nanoTime(); int found = 0;
+        for(int i=0;i<count;i++) found = index.getClassNames(prefix).size();
+        time = System.nanoTime() - time;
+        System.out.printf("ClassNameIndex: '%s' found %d in %.1f us\n", prefix, found, time/1e3/count);
+    }
+}
+
+}
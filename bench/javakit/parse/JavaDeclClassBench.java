@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Prints JavaDeclClass method/field resolution time with and without name indexes (and method resolution cache), as
+ * run by Gradle 'declResolutionTime' task.
+ */
+public class JavaDeclClassBench {
+
+/**
+ * Prints resolution time for the public members of given classes (default JTable, JTree, StringBuilder).
+ */
+public static void main(String args[])
+{
+    // Get owner for this class loader and class names
+    JavaDeclOwner owner = new JavaDeclOwner() {
+        public ClassLoader getClassLoader()  { return JavaDeclClassBench.class.getClassLoader(); } };
+    String names[] = args.length>0? args : new String[] { "javax.swing.JTable", "javax.swing.JTree",
+        "java.lang.StringBuilder" };
+    
+    // Get lookups for public methods (class decl, name, param type decls) and fields (class decl, name)
+    List <Object[]> lookups = new ArrayList();
+    for(String name : names) { Class cls = owner.getClass(name); JavaDeclClass cdecl = owner.getJavaDeclClass(cls);
+        for(Method meth : cls.getMethods()) { Class ptypes[] = meth.getParameterTypes();
+            JavaDecl ptdecls[] = new JavaDecl[ptypes.length];
+            for(int i=0;i<ptypes.length;i++) ptdecls[i] = owner.getJavaDecl(ptypes[i]);
+            lookups.add(new Object[] { cdecl, meth.getName(), ptdecls }); }
+        for(Field field : cls.getFields()) lookups.add(new Object[] { cdecl, field.getName(), null });
+    }
+    
+    // Resolve with and without indexes to warm up, then time each
+    int count = 20;
+    for(int i=0;i<3;i++) for(boolean indexed : new boolean[] { true, false }) {
+        JavaDeclClass._indexed = indexed; resolve(lookups); }
+    for(boolean indexed : new boolean[] { true, false }) { JavaDeclClass._indexed = indexed;
+        long time = System.nanoTime(); int found = 0;
+        for(int i=0;i<count;i++) found = resolve(lookups);
+        time = System.nanoTime() - time;
+        System.out.printf("JavaDeclClass (name indexes/cache %s): %d lookups (%d found) in %.1f ms, %.2f us/lookup\n",
+            indexed? "on" : "off", lookups.size(), found, time/1e6/count, time/1e3/count/lookups.size());
+    }
+}
+
+/** Resolves given method/field lookups and returns number found. */
+private static int resolve(List <Object[]> theLookups)
+{
+    int found = 0;
+    for(Object lookup[] : theLookups) { JavaDeclClass cdecl = (JavaDeclClass)lookup[0]; String name = (String)lookup[1];
+        JavaDecl decl = lookup[2]!=null? cdecl.getCompatibleMethodAll(name, (JavaDecl[])lookup[2]) :
+            cdecl.getFieldDeep(name);
+        if(decl!=null) found++;
+    }
+    return found;
+}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.util.*;
+
+/**
+ * Prints JavaParser first parse time (as run by Gradle 'grammarStartupTime' task) or, with "-throughput" arg, parse
+ * throughput with and without LookAhead memo (as run by Gradle 'parseThroughput' task).
+ */
+public class JavaParserBench {
+
+/**
+ * Prints first parse time for given Java file (run with -Dsnapcode.textGrammar=true to compare precompiled rules
+ * with JavaParser.txt), or parse throughput for given files (with "-throughput" arg).
+ */
+public static void main(String args[]) throws Exception
+{
+    // If "-throughput", print parse throughput for given files instead
+    if(args[0].equals("-throughput")) { printThroughput(Arrays.copyOfRange(args, 1, args.length)); return; }
+
+    // Time rule load, first parse and next parse
+    String text = BenchUtils.getText(args[0]);
+    long t0 = System.nanoTime();
+    JavaParser parser = JavaParser.get(); parser.getRule();
+    long t1 = System.nanoTime();
+    parser.getJavaFile(text);
+    long t2 = System.nanoTime();
+    parser.getJavaFile(text);
+    long t3 = System.nanoTime();
+    String rules = JavaParser.getPrecompiledRules()!=null? "precompiled" : "text";
+    System.out.printf("JavaParser (%s rules): Rule load %.1f ms, first parse %.1f ms (total %.1f ms), next %.1f ms\n",
+        rules, (t1-t0)/1e6, (t2-t1)/1e6, (t2-t0)/1e6, (t3-t2)/1e6);
+}
+
+/**
+ * Prints parse throughput for given Java files with and without LookAhead memo.
+ */
+static void printThroughput(String thePaths[]) throws Exception
+{
+    // Read files
+    List <String> texts = new ArrayList(); long chars = 0;
+    for(String path : thePaths) { String text = BenchUtils.getText(path); texts.add(text); chars += text.length(); }
+
+    // Parse files with and without memo to warm up, then time each
+    JavaParser parser = JavaParser.get(); int count = 10;
+    for(int i=0; i<3; i++) for(boolean memo : new boolean[] { true, false }) { parser.setMemoEnabled(memo);
+        for(String text : texts) parser.getJavaFile(text); }
+    for(boolean memo : new boolean[] { true, false }) { parser.setMemoEnabled(memo);
+        long time = System.nanoTime();
+        for(int i=0; i<count; i++) for(String text : texts) parser.getJavaFile(text);
+        time = System.nanoTime() - time;
+        System.out.printf("JavaParser (LookAhead memo %s): %.1f files/sec, %.0f KB/sec\n", memo? "on" : "off",
+            count*texts.size()/(time/1e9), count*chars/1024/(time/1e9));
+    }
+}
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.project;
+import jdk.jfr.*;
+
+/**
+ * A JFR event for BuildTimeline spans (only loaded when JFR is available). Record with -XX:StartFlightRecording
+ * and look for "SnapCode Build" events. Built from the 'jfr' source set and called by BuildTimeline with reflection.
+ */
+@Name("snapcode.Build") @Label("SnapCode Build") @Category("SnapCode")
+class BuildEventJFR extends Event {
+
+    // The phase, name and project
+    @Label("Phase") String    _phase;
+    @Label("Name") String     _name;
+    @Label("Project") String  _project;
+
+/**
+ * Creates a new event and begins timing.
+ */
+static Object create()
+{
+    BuildEventJFR event = new BuildEventJFR(); event.begin();
+    return event;
+}
+
+/**
+ * Ends and commits given event (if recording).
+ */
+static void commit(Object anEvent, String aPhase, String aName, String aProj)
+{
+    BuildEventJFR event = (BuildEventJFR)anEvent; event.end();
+    if(!event.shouldCommit()) return;
+    event._phase = aPhase; event._name = aName; event._project = aProj;
+    event.commit();
+}
+
+}
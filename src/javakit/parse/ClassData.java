@@ -22,6 +22,10 @@ public class ClassData {
     
     // The class name
     String         _cname;
+    
+    // The class file API hash and all members hash (and the bytes they were computed from)
+    long           _apiHash, _allHash;
+    byte           _hashBytes[];
 
 /**
  * Creates a new ClassData for given file.
@@ -51,6 +55,11 @@ public void getRefs(Set <JavaDecl> theRefs)
         if(ref!=null) theRefs.add(ref);
     }
     
+    // If reading class decls from class files, add refs for decl member types instead (so class isn't loaded)
+    if(JavaDeclOwner._readClassFiles) {
+        JavaDeclClass cdecl = _proj.getClassDecl(_proj.getClassName(_file)); if(cdecl==null) return;
+        addDeclRefs(cdecl, theRefs); return; }
+    
     // Get class and make sure TypeParameters, superclass and interfaces are in refs
     Class cls = _proj.getClassForFile(_file);
     for(TypeVariable tp : cls.getTypeParameters()) addClassRef(tp, theRefs);
@@ -81,6 +90,24 @@ public void getRefs(Set <JavaDecl> theRefs)
     }
 }
 
+/**
+ * Returns a fingerprint of the class public API (or all members, if includePrivate is true), read straight from
+ * class file bytes (see ClassFileData.getApiHash). Returns 0 if class file bytes are missing or can't be read.
+ */
+public synchronized long getApiHash(boolean includePrivate)
+{
+    // Get bytes (if same as last time, just return cached hash)
+    byte bytes[] = _file.getBytes(); if(bytes==null) return 0;
+    if(bytes==_hashBytes) return includePrivate? _allHash : _apiHash;
+    
+    // Get ClassFile reader, read and set hashes
+    ClassFileData cfd = new ClassFileData();
+    try { cfd.read(new DataInputStream(new ByteArrayInputStream(bytes))); }
+    catch(Exception e) { System.err.println(e); return 0; }
+    _apiHash = cfd.getApiHash(false); _allHash = cfd.getApiHash(true); _hashBytes = bytes;
+    return includePrivate? _allHash : _apiHash;
+}
+
 /**
  * Returns the JavaDecl for given Class ConstantPool Constant if external reference.
  */
@@ -172,6 +199,45 @@ private final void addClassRef(Type aType, Set <JavaDecl> theRefs)
     }
 }
 
+/**
+ * Adds refs for the types of given class decl type vars, super type, interfaces and members.
+ */
+private void addDeclRefs(JavaDeclClass aClassDecl, Set <JavaDecl> theRefs)
+{
+    for(JavaDecl tvar : aClassDecl.getTypeVars2()) addDeclRef(tvar, theRefs);
+    addDeclRef(aClassDecl._stype, theRefs);
+    for(JavaDeclClass infc : aClassDecl.getInterfaces()) addDeclRef(infc, theRefs);
+    for(JavaDecl field : aClassDecl.getFields()) addDeclRef(field.getEvalType(), theRefs);
+    for(JavaDecl constr : aClassDecl.getConstructors())
+        for(JavaDecl type : constr.getParamTypes()) addDeclRef(type, theRefs);
+    for(JavaDecl meth : aClassDecl.getMethods()) { addDeclRef(meth.getEvalType(), theRefs);
+        for(JavaDecl type : meth.getParamTypes()) addDeclRef(type, theRefs); }
+}
+
+/**
+ * Adds a ref for a declaration type decl (as addClassRef does for Type).
+ */
+private void addDeclRef(JavaDecl aType, Set <JavaDecl> theRefs)
+{
+    // Handle ParamType: Add raw type and type args
+    if(aType==null) return;
+    if(aType.isParamType()) {
+        addDeclRef(aType._par, theRefs);
+        for(JavaDecl type : aType.getParamTypes()) addDeclRef(type, theRefs);
+    }
+    
+    // Handle TypeVar: Add bounds class
+    else if(aType.isTypeVar())
+        addDeclRef(aType.getEvalType(), theRefs);
+    
+    // Handle Class
+    else if(aType.isClass()) { JavaDecl cdecl = aType;
+        while(cdecl.isArray()) cdecl = cdecl.getArrayItemType();
+        if(cdecl.isPrimitive() || cdecl.getSimpleName().length()==0) return;
+        theRefs.add(cdecl);
+    }
+}
+
 /** Returns the top level class name. */
 private static String getRootClassName(String cname)
 {
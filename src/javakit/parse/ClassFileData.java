@@ -21,6 +21,26 @@ class ClassFileData {
     public ConstantPool    constantPool    = new ConstantPool();
     public ClassNames      classNames      = new ClassNames();
     
+    // The class access flags
+    public int             accessFlags;
+    
+    // The interfaces (CONSTANT_Class)
+    public Constant        interfaces[];
+    
+    // The fields, methods and class attributes
+    public MemberInfo      fields[], methods[];
+    public AttributeInfo   attributes[];
+    
+    // Access flag constants
+    public static final int  ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_PROTECTED = 0x0004, ACC_STATIC = 0x0008;
+    public static final int  ACC_FINAL = 0x0010, ACC_VARARGS = 0x0080, ACC_INTERFACE = 0x0200;
+    public static final int  ACC_ABSTRACT = 0x0400, ACC_SYNTHETIC = 0x1000, ACC_ANNOTATION = 0x2000;
+    public static final int  ACC_ENUM = 0x4000;
+    
+    // The access flags that are part of class/member API
+    static final int  API_FLAGS = ACC_PUBLIC | ACC_PRIVATE | ACC_PROTECTED | ACC_STATIC | ACC_FINAL | ACC_VARARGS |
+        ACC_INTERFACE | ACC_ABSTRACT | ACC_ANNOTATION | ACC_ENUM;
+    
     /**
      * reads the class file into data structures.
      */
@@ -35,11 +55,42 @@ class ClassFileData {
         constantPool.read(dis);
         
         // Read access flags
-        dis.readUnsignedShort(); // Read iAccessFlags
-        // new AccessFlags().read(dis);
+        accessFlags = dis.readUnsignedShort();
 
         // Read ClassNames
         classNames.read(dis, constantPool);
+        
+        // Read interfaces
+        interfaces = new Constant[dis.readUnsignedShort()];
+        for(int i=0; i<interfaces.length; i++) interfaces[i] = constantPool.getPoolInfo(dis.readUnsignedShort());
+        
+        // Read fields, methods and class attributes
+        fields = readMembers(dis); methods = readMembers(dis);
+        attributes = readAttributes(dis);
+    }
+    
+    /** Reads field or method infos. */
+    MemberInfo[] readMembers(DataInputStream dis) throws IOException
+    {
+        MemberInfo members[] = new MemberInfo[dis.readUnsignedShort()];
+        for(int i=0; i<members.length; i++) { MemberInfo mi = members[i] = new MemberInfo();
+            mi.accessFlags = dis.readUnsignedShort();
+            mi.name = constantPool.getPoolInfo(dis.readUnsignedShort()).sUTFStr;
+            mi.descriptor = constantPool.getPoolInfo(dis.readUnsignedShort()).sUTFStr;
+            mi.attributes = readAttributes(dis);
+        }
+        return members;
+    }
+    
+    /** Reads attribute infos. */
+    AttributeInfo[] readAttributes(DataInputStream dis) throws IOException
+    {
+        AttributeInfo attrs[] = new AttributeInfo[dis.readUnsignedShort()];
+        for(int i=0; i<attrs.length; i++) { AttributeInfo ai = attrs[i] = new AttributeInfo();
+            ai.name = constantPool.getPoolInfo(dis.readUnsignedShort()).sUTFStr;
+            ai.bytes = new byte[dis.readInt()]; dis.readFully(ai.bytes);
+        }
+        return attrs;
     }
     
     /**
@@ -51,7 +102,206 @@ class ClassFileData {
      * Returns the individual constant at given index.
      */
     public Constant getConstant(int anIndex)  { return constantPool.getPoolInfo(anIndex); }
+    
+    /**
+     * Returns the class name (with dots, inner classes with '$').
+     */
+    public String getClassName()  { return classNames.getThisClassName(); }
+
+    /**
+     * Returns the super class name (null for Object).
+     */
+    public String getSuperClassName()  { return classNames.iSuperClass!=0? classNames.getSuperClassName() : null; }
+
+    /**
+     * Returns the interface names.
+     */
+    public String[] getInterfaceNames()
+    {
+        String names[] = new String[interfaces.length];
+        for(int i=0; i<interfaces.length; i++) names[i] = interfaces[i].getClassName();
+        return names;
+    }
+
+    /**
+     * Returns the class modifiers, as Class.getModifiers() would: InnerClasses flags for nested classes, without
+     * ACC_SUPER.
+     */
+    public int getModifiers()
+    {
+        int ind = getInnerClassIndex(classNames.cpThisClass.refUTF8.sUTFStr);
+        AttributeInfo iclsAttr = getAttribute(attributes, "InnerClasses");
+        int flags = ind>=0? iclsAttr.getShort(ind+6) : accessFlags;
+        return flags & ~0x0020 & 0x7fff;
+    }
+
+    /**
+     * Returns the declaring class name (null if top level, local or anonymous class).
+     */
+    public String getDeclaringClassName()
+    {
+        int ind = getInnerClassIndex(classNames.cpThisClass.refUTF8.sUTFStr); if(ind<0) return null;
+        int outer = getAttribute(attributes, "InnerClasses").getShort(ind+2);
+        return outer!=0? constantPool.getPoolInfo(outer).getClassName() : null;
+    }
 
+    /**
+     * Returns the simple name, as Class.getSimpleName() would (empty string for anonymous class).
+     */
+    public String getSimpleName()
+    {
+        int ind = getInnerClassIndex(classNames.cpThisClass.refUTF8.sUTFStr);
+        if(ind<0) { String cname = getClassName(); return cname.substring(cname.lastIndexOf('.')+1); }
+        int iname = getAttribute(attributes, "InnerClasses").getShort(ind+4);
+        return iname!=0? constantPool.getPoolInfo(iname).sUTFStr : "";
+    }
+
+    /**
+     * Returns the names of member classes declared by this class (as Class.getDeclaredClasses() would).
+     */
+    public List <String> getMemberClassNames()
+    {
+        List <String> names = new ArrayList(); String cname = classNames.cpThisClass.refUTF8.sUTFStr;
+        AttributeInfo iclsAttr = getAttribute(attributes, "InnerClasses"); if(iclsAttr==null) return names;
+        for(int i=0, iMax=iclsAttr.getShort(0); i<iMax; i++) { int ind = 2 + i*8, outer = iclsAttr.getShort(ind+2);
+            if(outer!=0 && constantPool.getPoolInfo(outer).refUTF8.sUTFStr.equals(cname))
+                names.add(constantPool.getPoolInfo(iclsAttr.getShort(ind)).getClassName());
+        }
+        return names;
+    }
+
+    /** Returns the byte index of InnerClasses entry for given inner class (internal name), or -1. */
+    int getInnerClassIndex(String aName)
+    {
+        AttributeInfo iclsAttr = getAttribute(attributes, "InnerClasses"); if(iclsAttr==null) return -1;
+        for(int i=0, iMax=iclsAttr.getShort(0); i<iMax; i++) { int ind = 2 + i*8;
+            if(constantPool.getPoolInfo(iclsAttr.getShort(ind)).refUTF8.sUTFStr.equals(aName)) return ind; }
+        return -1;
+    }
+
+    /**
+     * Returns the generic Signature string from given attributes (or null if not found).
+     */
+    public String getSignature(AttributeInfo theAttrs[])
+    {
+        AttributeInfo sigAttr = getAttribute(theAttrs, "Signature");
+        return sigAttr!=null? constantPool.getPoolInfo(sigAttr.getShort(0)).sUTFStr : null;
+    }
+
+    /**
+     * Returns the attribute with given name from given attributes.
+     */
+    public static AttributeInfo getAttribute(AttributeInfo theAttrs[], String aName)
+    {
+        for(AttributeInfo attr : theAttrs) if(attr.name.equals(aName)) return attr;
+        return null;
+    }
+    
+    /**
+     * Returns a fingerprint of the class API, computed from class file bytes: a hash of class name, flags, supertypes,
+     * generic Signature, member classes and the signatures of non-synthetic, non-private members (or all members
+     * if includePrivate is true). Constant values of fields are included, since they are compiled into dependents.
+     * Member order is ignored.
+     */
+    public long getApiHash(boolean includePrivate)
+    {
+        // Add class name, flags, super class, interfaces and signature
+        StringBuffer sb = new StringBuffer();
+        String cname = classNames.cpThisClass.refUTF8.sUTFStr;
+        sb.append("C ").append(accessFlags & API_FLAGS).append(' ').append(cname);
+        if(classNames.iSuperClass!=0) sb.append(" extends ").append(classNames.cpSuperClass.refUTF8.sUTFStr);
+        for(Constant infc : interfaces) sb.append(" implements ").append(infc.refUTF8.sUTFStr);
+        appendSignature(attributes, sb); sb.append('\n');
+        
+        // Get list of member strings
+        List <String> mstrs = new ArrayList();
+        
+        // Add member classes (and inner class flags of this class)
+        AttributeInfo iclsAttr = getAttribute(attributes, "InnerClasses");
+        if(iclsAttr!=null) for(int i=0, iMax=iclsAttr.getShort(0); i<iMax; i++) { int ind = 2 + i*8;
+            int inner = iclsAttr.getShort(ind), outer = iclsAttr.getShort(ind+2), flags = iclsAttr.getShort(ind+6);
+            if(outer==0 || !includePrivate && (flags & ACC_PRIVATE)!=0) continue;
+            String iname = constantPool.getPoolInfo(inner).refUTF8.sUTFStr;
+            String oname = constantPool.getPoolInfo(outer).refUTF8.sUTFStr;
+            if(oname.equals(cname) || iname.equals(cname))
+                mstrs.add("I " + (flags & API_FLAGS) + ' ' + iname);
+        }
+        
+        // Add fields (with constant value)
+        for(MemberInfo field : fields) { if(!field.isApi(includePrivate)) continue;
+            StringBuffer fsb = new StringBuffer("F ").append(field.accessFlags & API_FLAGS).append(' ');
+            fsb.append(field.name).append(' ').append(field.descriptor); appendSignature(field.attributes, fsb);
+            AttributeInfo cvAttr = getAttribute(field.attributes, "ConstantValue");
+            if(cvAttr!=null) fsb.append(" = ").append(constantPool.getPoolInfo(cvAttr.getShort(0)));
+            mstrs.add(fsb.toString());
+        }
+        
+        // Add methods (with exceptions)
+        for(MemberInfo meth : methods) { if(!meth.isApi(includePrivate)) continue;
+            StringBuffer msb = new StringBuffer("M ").append(meth.accessFlags & API_FLAGS).append(' ');
+            msb.append(meth.name).append(meth.descriptor); appendSignature(meth.attributes, msb);
+            AttributeInfo excAttr = getAttribute(meth.attributes, "Exceptions");
+            if(excAttr!=null) for(int i=0, iMax=excAttr.getShort(0); i<iMax; i++)
+                msb.append(" throws ").append(constantPool.getPoolInfo(excAttr.getShort(2+i*2)).refUTF8.sUTFStr);
+            mstrs.add(msb.toString());
+        }
+        
+        // Sort member strings and add
+        Collections.sort(mstrs);
+        for(String mstr : mstrs) sb.append(mstr).append('\n');
+        
+        // Return hash
+        return getHash(sb.toString());
+    }
+    
+    /** Appends generic Signature attribute (if found) to given StringBuffer. */
+    void appendSignature(AttributeInfo theAttrs[], StringBuffer aSB)
+    {
+        String sig = getSignature(theAttrs); if(sig!=null) aSB.append(" sig ").append(sig);
+    }
+    
+    /** Returns a 64 bit hash for given string (first 8 bytes of SHA-1 digest). */
+    static long getHash(String aStr)
+    {
+        try {
+            byte bytes[] = java.security.MessageDigest.getInstance("SHA-1").digest(aStr.getBytes("UTF-8"));
+            long hash = 0; for(int i=0; i<8; i++) hash = (hash<<8) | (bytes[i] & 0xff);
+            return hash;
+        }
+        catch(Exception e) { throw new RuntimeException(e); }
+    }
+
+/**
+ * A field or method info.
+ */
+public static class MemberInfo {
+    public int              accessFlags;
+    public String           name, descriptor;
+    public AttributeInfo    attributes[];
+    
+    /** Returns whether member is part of API (not synthetic and not private, unless requested). */
+    public boolean isApi(boolean includePrivate)
+    {
+        if((accessFlags & ACC_SYNTHETIC)!=0) return false;
+        return includePrivate || (accessFlags & ACC_PRIVATE)==0;
+    }
+    
+    public String toString()  { return name + descriptor + " (flags=" + accessFlags + ")"; }
+}
+
+/**
+ * An attribute info.
+ */
+public static class AttributeInfo {
+    public String           name;
+    public byte             bytes[];
+    
+    /** Returns the unsigned short at given byte index. */
+    public int getShort(int anIndex)  { return ((bytes[anIndex] & 0xff)<<8) | (bytes[anIndex+1] & 0xff); }
+    
+    public String toString()  { return name + " (" + bytes.length + " bytes)"; }
+}
+    
 /**
  * ConstantPool.
  */
@@ -114,7 +364,10 @@ public static class Constant
     public static final int  CONSTANT_Utf8                 = 1;
     public static final int  CONSTANT_MethodHandle         = 15;
     public static final int  CONSTANT_MethodType           = 16;
+    public static final int  CONSTANT_Dynamic              = 17;
     public static final int  CONSTANT_InvokeDynamic        = 18;
+    public static final int  CONSTANT_Module               = 19;
+    public static final int  CONSTANT_Package              = 20;
 
     /**
      * Tag denotes the type of pool entry. It will be one of CONSTANT_<...> types
@@ -166,10 +419,13 @@ public static class Constant
                 iReferenceIndex = dis.readUnsignedShort(); break;
             case CONSTANT_MethodType:
                 iDescriptorIndex = dis.readUnsignedShort(); break;
+            case CONSTANT_Dynamic:
             case CONSTANT_InvokeDynamic:
                 iBootstrapMethodAttrIndex = dis.readUnsignedShort();
                 iNameAndTypeIndex = dis.readUnsignedShort(); break;
-            default: System.out.println("Unknown constant pool type: " + iTag); break;
+            case CONSTANT_Module:
+            case CONSTANT_Package: iNameIndex = dis.readUnsignedShort(); break; // points to a UTF8
+            default: throw new IOException("Unknown constant pool type: " + iTag); // entry size unknown, can't go on
         }
     }
 
@@ -178,7 +434,9 @@ public static class Constant
         this.constPool = constPool;
         switch(iTag)
         {
-            case CONSTANT_Class: refUTF8 = constPool.getPoolInfo(iNameIndex); break;
+            case CONSTANT_Class:
+            case CONSTANT_Module:
+            case CONSTANT_Package: refUTF8 = constPool.getPoolInfo(iNameIndex); break;
             case CONSTANT_String: refUTF8 = constPool.getPoolInfo(iStringIndex); break;
             case CONSTANT_Fieldref:
             case CONSTANT_Methodref:
@@ -334,7 +592,7 @@ public class ClassNames {
         iThisClass   = dis.readUnsignedShort();
         iSuperClass  = dis.readUnsignedShort();
         cpThisClass = constPool.getPoolInfo(iThisClass);
-        cpSuperClass = constPool.getPoolInfo(iSuperClass);
+        cpSuperClass = iSuperClass>0? constPool.getPoolInfo(iSuperClass) : null; // Only zero for Object
     }
     
     public String getThisClassName()  { return convertClassStrToStr(cpThisClass.refUTF8.sUTFStr); }
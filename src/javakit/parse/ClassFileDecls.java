@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import javakit.parse.ClassFileData.MemberInfo;
+
+/**
+ * Reads JavaDeclClass supertypes and members from class file bytes (ClassFileData) instead of reflection, so classes
+ * are never loaded, linked or defined (and classes with missing dependencies still work). Types come from generic
+ * Signature attributes (or descriptors if absent). Decls get the same ids as decls from Class (JavaKitUtils.getId), so
+ * both can be mixed in one JavaDeclOwner. Turned on with -Dsnapcode.declClassFiles=true.
+ */
+class ClassFileDecls {
+
+    // The class decl, owner and class file
+    JavaDeclClass      _cdecl;
+    JavaDeclOwner      _owner;
+    ClassFileData      _cfd;
+
+    // The type vars of the method being read (searched before class type vars)
+    JavaDecl           _mtvars[] = new JavaDecl[0];
+
+    // The signature being read and the char index
+    String             _sig;
+    int                _index;
+
+/**
+ * Creates a new ClassFileDecls for given class decl and class file.
+ */
+public ClassFileDecls(JavaDeclClass aClassDecl, ClassFileData aCFD)
+{
+    _cdecl = aClassDecl; _owner = aClassDecl._owner; _cfd = aCFD;
+}
+
+/**
+ * Returns the super type (ParamType if generic Signature has type args).
+ */
+public JavaDecl getSuperType()
+{
+    // If no Signature, just return super class decl
+    String sig = _cfd.getSignature(_cfd.attributes);
+    if(sig==null) return getClassDecl(_cfd.getSuperClassName());
+
+    // Skip type params and read super class type
+    _sig = sig; _index = 0; readTypeParamNames();
+    return readType();
+}
+
+/**
+ * Updates interfaces and adds JavaDecls from class file for given class decl (removing existing decls from given set).
+ *
+ * @return the number of decls added (or -1 if class file couldn't be found or read).
+ */
+public static int updateDecls(JavaDeclClass aClassDecl, Set <JavaDecl> removedDecls)
+{
+    // Get class file
+    String cname = aClassDecl.getClassName();
+    ClassFileData cfd = aClassDecl._owner.getClassFileData(cname);
+    if(cfd==null) {
+        System.err.println("JavaDeclClass: Failed to read class file: " + cname); return -1; }
+
+    // Read decls
+    try { return new ClassFileDecls(aClassDecl, cfd).updateDecls(removedDecls); }
+    catch(RuntimeException e) { System.err.println(e + " in " + cname); return -1; }
+}
+
+/**
+ * Updates interfaces and adds JavaDecls from class file (removing existing decls from given set).
+ */
+private int updateDecls(Set <JavaDecl> removedDecls)
+{
+    // Get interfaces
+    String inames[] = _cfd.getInterfaceNames();
+    JavaDeclClass interfaces[] = new JavaDeclClass[inames.length];
+    for(int i=0,iMax=inames.length;i<iMax;i++) interfaces[i] = getClassDecl(inames[i]);
+    _cdecl._interfaces = interfaces;
+
+    // Create count for added decls and make sure class decl is up to date
+    int addedDecls = 0;
+    _cdecl._mods = _cfd.getModifiers();
+
+    // TypeVariables: Add JavaDecl for each Type parameter (then set bounds, since they can refer to each other)
+    _sig = _cfd.getSignature(_cfd.attributes); _index = 0;
+    List <String> tvnames = _sig!=null? readTypeParamNames() : Collections.EMPTY_LIST;
+    for(String name : tvnames) {
+        JavaDecl decl = _cdecl.getTypeVar(name);
+        if(decl==null) { decl = createTypeVar(_cdecl, name); _cdecl.addDecl(decl); addedDecls++; }
+        else removedDecls.remove(decl);
+    }
+    if(tvnames.size()>0) { _index = 0; readTypeVarBounds(_cdecl.getTypeVars2()); }
+
+    // Inner Classes: Add JavaDecl for each member class
+    for(String iname : _cfd.getMemberClassNames()) {
+        JavaDeclClass decl = _owner.getClassDeclForName(iname); if(decl==null) continue;
+        JavaDecl old = _cdecl.getClassDecl(decl.getSimpleName());
+        if(old==null) { _cdecl.addDecl(decl); addedDecls++; }
+        else removedDecls.remove(old);
+    }
+
+    // Fields: add JavaDecl for each declared field
+    for(MemberInfo field : _cfd.fields) {
+        JavaDecl decl = _cdecl.getField(field.name);
+        if(decl!=null && decl.getModifiers()==field.accessFlags) { removedDecls.remove(decl); continue; }
+        decl = createField(field); _cdecl.addDecl(decl); addedDecls++;
+    }
+
+    // Methods: Add JavaDecl for each declared method (skip synthetic/bridge methods and static initializer)
+    for(MemberInfo meth : _cfd.methods) {
+        if((meth.accessFlags & ClassFileData.ACC_SYNTHETIC)!=0 || meth.name.equals("<init>") ||
+            meth.name.equals("<clinit>")) continue;
+        JavaDecl decl = _cdecl.getMethodDecl(getMethodId(meth));
+        if(decl!=null && decl.getModifiers()==meth.accessFlags) { removedDecls.remove(decl); continue; }
+        decl = createExecutable(meth); _cdecl.addDecl(decl); addedDecls++;
+    }
+
+    // Constructors: Add JavaDecl for each constructor
+    for(MemberInfo constr : _cfd.methods) {
+        if((constr.accessFlags & ClassFileData.ACC_SYNTHETIC)!=0 || !constr.name.equals("<init>")) continue;
+        JavaDecl decl = _cdecl.getConstructorDecl(getMethodId(constr));
+        if(decl!=null && decl.getModifiers()==constr.accessFlags) { removedDecls.remove(decl); continue; }
+        decl = createExecutable(constr); _cdecl.addDecl(decl); addedDecls++;
+    }
+
+    // Return number of added decls
+    return addedDecls;
+}
+
+/**
+ * Creates a TypeVar decl for given parent (Class, Method, Constructor) and name (bounds are set later).
+ */
+private JavaDecl createTypeVar(JavaDecl aPar, String aName)
+{
+    JavaDecl decl = new JavaDecl(_owner, aPar, JavaDecl.DeclType.TypeVar, aName, aPar.getId() + '.' + aName);
+    _owner.putDecl(decl._id, decl);
+    return decl;
+}
+
+/**
+ * Creates a Field decl for given field info.
+ */
+private JavaDecl createField(MemberInfo aField)
+{
+    // Get id (Field id uses Class.toString(), so it starts with "class " or "interface ")
+    String id = (_cdecl.isInterface()? "interface " : "class ") + _cdecl.getId() + '.' + aField.name;
+
+    // Create decl and set modifiers and type (from Signature, if available)
+    JavaDecl decl = new JavaDecl(_owner, _cdecl, JavaDecl.DeclType.Field, aField.name, id);
+    decl._mods = aField.accessFlags;
+    String sig = _cfd.getSignature(aField.attributes);
+    _sig = sig!=null? sig : aField.descriptor; _index = 0; _mtvars = new JavaDecl[0];
+    decl._evalType = readType();
+    return decl;
+}
+
+/**
+ * Creates a Method or Constructor decl for given method info.
+ */
+private JavaDecl createExecutable(MemberInfo aMeth)
+{
+    // Create decl and set modifiers (and reset name for constructor)
+    boolean isConstr = aMeth.name.equals("<init>");
+    String name = isConstr? _cdecl.getSimpleName() : aMeth.name;
+    JavaDecl.DeclType type = isConstr? JavaDecl.DeclType.Constructor : JavaDecl.DeclType.Method;
+    JavaDecl decl = new JavaDecl(_owner, _cdecl, type, name, getMethodId(aMeth));
+    decl._mods = aMeth.accessFlags;
+    decl._varArgs = (aMeth.accessFlags & ClassFileData.ACC_VARARGS)!=0;
+
+    // Get TypeVars (then set bounds, since they can refer to each other)
+    String sig = _cfd.getSignature(aMeth.attributes);
+    _sig = sig; _index = 0; _mtvars = new JavaDecl[0];
+    List <String> tvnames = sig!=null? readTypeParamNames() : Collections.EMPTY_LIST;
+    _mtvars = decl._typeVars = new JavaDecl[tvnames.size()];
+    for(int i=0,iMax=tvnames.size();i<iMax;i++) _mtvars[i] = createTypeVar(decl, tvnames.get(i));
+    if(tvnames.size()>0) { _index = 0; readTypeVarBounds(Arrays.asList(_mtvars)); }
+
+    // Get parameter types (from descriptor if no Signature, or if Signature omits synthetic params, like the outer
+    // instance of inner class constructor - https://bugs.openjdk.java.net/browse/JDK-8075483)
+    List <JavaDecl> ptypes = sig!=null? readParamTypes() : null;
+    JavaDecl rtype = sig!=null? readType() : null;
+    if(sig==null || ptypes.size()<getDescParamCount(aMeth.descriptor)) {
+        _sig = aMeth.descriptor; _index = 0;
+        ptypes = readParamTypes(); if(rtype==null) rtype = readType();
+    }
+    decl._paramTypes = ptypes.toArray(new JavaDecl[ptypes.size()]);
+
+    // Set return type (constructor returns class) and default
+    decl._evalType = isConstr? _cdecl : rtype;
+    decl._default = !isConstr && _cdecl.isInterface() &&
+        (aMeth.accessFlags & (Modifier.ABSTRACT | Modifier.PUBLIC | Modifier.STATIC))==Modifier.PUBLIC;
+    _mtvars = new JavaDecl[0];
+    return decl;
+}
+
+/**
+ * Returns the id for given method info (as JavaKitUtils.getId(Method/Constructor): uses erased descriptor types).
+ */
+private String getMethodId(MemberInfo aMeth)
+{
+    // Append class id and name (if method)
+    StringBuffer sb = new StringBuffer(_cdecl.getId());
+    if(!aMeth.name.equals("<init>")) sb.append('.').append(aMeth.name);
+
+    // Append erased parameter type ids
+    sb.append('(');
+    String desc = aMeth.descriptor;
+    for(int i=1, acount=0, pcount=0; desc.charAt(i)!=')'; i++) { char c = desc.charAt(i);
+        if(c=='[') { acount++; continue; }
+        if(pcount++>0) sb.append(',');
+        if(c=='L') { int end = desc.indexOf(';', i); sb.append(desc, i+1, end); i = end; }
+        else sb.append(getPrimitiveName(c));
+        for(; acount>0; acount--) sb.append("[]");
+    }
+    return sb.append(')').toString().replace('/', '.');
+}
+
+/**
+ * Returns the number of parameters in given method descriptor.
+ */
+private static int getDescParamCount(String aDesc)
+{
+    int count = 0;
+    for(int i=1; aDesc.charAt(i)!=')'; i++) { char c = aDesc.charAt(i);
+        if(c=='[') continue; count++;
+        if(c=='L') i = aDesc.indexOf(';', i);
+    }
+    return count;
+}
+
+/**
+ * Reads formal type parameter names at index (if present), skipping bounds.
+ */
+private List <String> readTypeParamNames()
+{
+    // If no type params, just return
+    if(_sig.charAt(_index)!='<') return Collections.EMPTY_LIST;
+
+    // Read names (and skip bounds) up to closing bracket
+    List <String> names = new ArrayList(); _index++;
+    while(_sig.charAt(_index)!='>') {
+        int end = _sig.indexOf(':', _index); names.add(_sig.substring(_index, end)); _index = end;
+        while(_sig.charAt(_index)==':') { _index++; if(_sig.charAt(_index)!=':') skipType(); }
+    }
+    _index++;
+    return names;
+}
+
+/**
+ * Reads formal type parameters at index and sets bounds of given type vars (first bound erasure, as for Class).
+ */
+private void readTypeVarBounds(List <JavaDecl> theTypeVars)
+{
+    _index++;
+    for(int i=0; _sig.charAt(_index)!='>'; i++) {
+        _index = _sig.indexOf(':', _index); JavaDecl bound = null;
+        while(_sig.charAt(_index)==':') { _index++;
+            if(_sig.charAt(_index)==':') continue;
+            if(bound==null) bound = readType(); else skipType();
+        }
+        JavaDecl tvar = i<theTypeVars.size()? theTypeVars.get(i) : null;
+        if(tvar!=null && tvar._evalType==null) {
+            JavaDeclClass ctype = bound!=null && (!bound.isTypeVar() || bound._evalType!=null)?
+                bound.getClassType() : null;
+            tvar._evalType = ctype!=null? ctype : getClassDecl("java.lang.Object");
+        }
+    }
+    _index++;
+}
+
+/**
+ * Reads parameter types at index (from open paren to close paren).
+ */
+private List <JavaDecl> readParamTypes()
+{
+    List <JavaDecl> types = new ArrayList(); _index++;
+    while(_sig.charAt(_index)!=')') types.add(readType());
+    _index++;
+    return types;
+}
+
+/**
+ * Reads a type at index: Primitive, Class, ParamType, TypeVar or Array (of erased component type, as for Class).
+ */
+private JavaDecl readType()
+{
+    char c = _sig.charAt(_index++);
+    switch(c) {
+
+        // Handle Array
+        case '[': { JavaDecl itype = readType();
+            return getClassDecl(itype.getClassType().getName() + "[]"); }
+
+        // Handle TypeVar
+        case 'T': { int end = _sig.indexOf(';', _index); String name = _sig.substring(_index, end); _index = end + 1;
+            return getTypeVar(name); }
+
+        // Handle Class or ParamType
+        case 'L': return readClassType();
+
+        // Handle primitive
+        default: return getClassDecl(getPrimitiveName(c));
+    }
+}
+
+/**
+ * Reads a class type at index (after 'L'): Returns ParamType if last class name part has type args.
+ */
+private JavaDecl readClassType()
+{
+    // Read class name parts (inner classes separated by '.') and type args
+    StringBuffer sb = new StringBuffer(); List <JavaDecl> args = null;
+    while(true) {
+        int end = _index; while(";<.".indexOf(_sig.charAt(end))<0) end++;
+        sb.append(_sig, _index, end); _index = end; args = null;
+        if(_sig.charAt(_index)=='<') { args = new ArrayList(); _index++;
+            while(_sig.charAt(_index)!='>') args.add(readTypeArg());
+            _index++;
+        }
+        if(_sig.charAt(_index++)==';') break;
+        sb.append('$');
+    }
+
+    // Get class decl and return ParamType if type args
+    JavaDeclClass cdecl = getClassDecl(sb.toString().replace('/', '.'));
+    if(args==null || args.size()==0) return cdecl;
+    return _owner.getParamTypeDecl(cdecl, args.toArray(new JavaDecl[args.size()]));
+}
+
+/**
+ * Reads a type arg at index: Wildcard returns bound type (or Object for unbounded).
+ */
+private JavaDecl readTypeArg()
+{
+    char c = _sig.charAt(_index);
+    if(c=='*') { _index++; return getClassDecl("java.lang.Object"); }
+    if(c=='+' || c=='-') _index++;
+    return readType();
+}
+
+/**
+ * Skips a type at index.
+ */
+private void skipType()
+{
+    while(_sig.charAt(_index)=='[') _index++;
+    char c = _sig.charAt(_index++); if(c!='L' && c!='T') return;
+    for(int depth=0;;_index++) { char c2 = _sig.charAt(_index);
+        if(c2=='<') depth++; else if(c2=='>') depth--;
+        else if(c2==';' && depth==0) { _index++; return; }
+    }
+}
+
+/**
+ * Returns the TypeVar for given name from method being read, class or enclosing classes (or Object if not found).
+ */
+private JavaDecl getTypeVar(String aName)
+{
+    for(JavaDecl tvar : _mtvars) if(tvar.getName().equals(aName)) return tvar;
+    for(JavaDecl par=_cdecl; par instanceof JavaDeclClass; par=par._par) {
+        JavaDecl tvar = ((JavaDeclClass)par).getTypeVar(aName); if(tvar!=null) return tvar; }
+    return getClassDecl("java.lang.Object");
+}
+
+/**
+ * Returns the class decl for given class name (or Object, if class is missing from class path).
+ */
+private JavaDeclClass getClassDecl(String aName)
+{
+    JavaDeclClass cdecl = _owner.getClassDeclForName(aName);
+    return cdecl!=null? cdecl : _owner.getClassDeclForName("java.lang.Object");
+}
+
+/**
+ * Returns the primitive class name for given descriptor char.
+ */
+private static String getPrimitiveName(char aChar)
+{
+    switch(aChar) {
+        case 'B': return "byte";
+        case 'C': return "char";
+        case 'D': return "double";
+        case 'F': return "float";
+        case 'I': return "int";
+        case 'J': return "long";
+        case 'S': return "short";
+        case 'Z': return "boolean";
+        case 'V': return "void";
+        default: throw new RuntimeException("ClassFileDecls: Invalid descriptor char: " + aChar);
+    }
+}
+
+/**
+ * Returns the primitive class for given name (or null if not primitive).
+ */
+static Class getPrimitiveClass(String aName)
+{
+    switch(aName) {
+        case "boolean": return boolean.class;
+        case "byte": return byte.class;
+        case "char": return char.class;
+        case "short": return short.class;
+        case "int": return int.class;
+        case "long": return long.class;
+        case "float": return float.class;
+        case "double": return double.class;
+        case "void": return void.class;
+        default: return null;
+    }
+}
+
+/**
+ * Returns the Class.getName() of array of given item type (e.g. "[Ljava.lang.String;" or "[[I").
+ */
+static String getArrayClassName(JavaDeclClass anItemType)
+{
+    if(anItemType.isArray()) return '[' + getArrayClassName(anItemType.getArrayItemType().getClassType());
+    if(!anItemType.isPrimitive()) return "[L" + anItemType.getName() + ';';
+    switch(anItemType.getName()) {
+        case "boolean": return "[Z";
+        case "long": return "[J";
+        default: return "[" + Character.toUpperCase(anItemType.getName().charAt(0));
+    }
+}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.util.*;
+
+/**
+ * A compact, sorted index of class names for class name completion: Full names are stored once in a shared char table
+ * (with start offsets), and name indexes are sorted by lowercase simple name and by lowercase camel-hump initials
+ * ("al" for ArrayList), so prefix and camel-case lookups are binary searches instead of scans of class files.
+ */
+public class ClassNameIndex {
+
+    // The shared table of full class names (back to back) and the start of each name and its simple name
+    char              _chars[];
+    int               _starts[], _simpleStarts[];
+
+    // The name count
+    int               _count;
+
+    // The name indexes sorted by lowercase simple name
+    int               _bySimple[];
+
+    // The table of lowercase camel-hump initials, the start of initials for each name and the name indexes sorted
+    char              _humps[];
+    int               _humpStarts[], _byHumps[];
+
+/**
+ * Creates a new ClassNameIndex for given full class names (inner classes with '$').
+ */
+public ClassNameIndex(Collection <String> theNames)
+{
+    // Get sorted unique names and add to table
+    Set <String> nset = new TreeSet(theNames); String names[] = nset.toArray(new String[0]); _count = names.length;
+    int len = 0; for(String name : names) len += name.length();
+    _chars = new char[len]; _starts = new int[_count+1]; _simpleStarts = new int[_count];
+    StringBuffer humps = new StringBuffer(); _humpStarts = new int[_count+1];
+    for(int i=0, start=0; i<_count; i++) { String name = names[i];
+        name.getChars(0, name.length(), _chars, start); _starts[i] = start;
+        _simpleStarts[i] = start + Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1;
+        _humpStarts[i] = humps.length(); appendHumps(name, _simpleStarts[i] - start, humps);
+        start += name.length();
+    }
+    _starts[_count] = len; _humpStarts[_count] = humps.length();
+    _humps = new char[humps.length()]; humps.getChars(0, _humps.length, _humps, 0);
+
+    // Get name indexes sorted by lowercase simple name and by humps
+    String simples[] = new String[_count], hkeys[] = new String[_count];
+    for(int i=0; i<_count; i++) { simples[i] = getSimpleName(i).toLowerCase(Locale.ROOT);
+        hkeys[i] = new String(_humps, _humpStarts[i], _humpStarts[i+1] - _humpStarts[i]); }
+    _bySimple = getSorted(simples); _byHumps = getSorted(hkeys);
+}
+
+/**
+ * Returns the number of class names.
+ */
+public int getCount()  { return _count; }
+
+/**
+ * Returns the full class name at given index.
+ */
+public String getName(int anIndex)
+{
+    return new String(_chars, _starts[anIndex], _starts[anIndex+1] - _starts[anIndex]);
+}
+
+/**
+ * Returns the simple class name at given index (after last '.' or '$').
+ */
+public String getSimpleName(int anIndex)
+{
+    return new String(_chars, _simpleStarts[anIndex], _starts[anIndex+1] - _simpleStarts[anIndex]);
+}
+
+/**
+ * Returns the class names whose simple name starts with given prefix (ignoring case) or, if prefix has inner upper
+ * case letters, whose simple name matches prefix camel humps ("HaMa" or "HM" for HashMap).
+ */
+public List <String> getClassNames(String aPrefix)
+{
+    // Get names with simple name prefix
+    List <String> names = new ArrayList(); String prefix = aPrefix.toLowerCase(Locale.ROOT);
+    BitSet added = new BitSet(_count);
+    for(int i=lowerBound(_bySimple, prefix, false); i<_count && startsWith(_bySimple[i], prefix, false); i++) {
+        names.add(getName(_bySimple[i])); added.set(_bySimple[i]); }
+
+    // If prefix has humps, add names with matching humps
+    StringBuffer sb = new StringBuffer(); appendHumps(aPrefix, 0, sb); String hprefix = sb.toString();
+    if(hprefix.length()>1)
+    for(int i=lowerBound(_byHumps, hprefix, true); i<_count && startsWith(_byHumps[i], hprefix, true); i++) {
+        int ind = _byHumps[i];
+        if(!added.get(ind) && isCamelMatch(ind, aPrefix)) { names.add(getName(ind)); added.set(ind); }
+    }
+    return names;
+}
+
+/**
+ * Returns the class names in given package (not including sub packages).
+ */
+public List <String> getPackageClassNames(String aPkgName)
+{
+    // Get range of names that start with package name + '.' and add those without further '.'
+    List <String> names = new ArrayList(); String pfx = aPkgName.length()>0? aPkgName + '.' : "";
+    int lo = 0, hi = _count;
+    while(lo<hi) { int mid = (lo + hi)>>>1; if(compareName(mid, pfx)<0) lo = mid + 1; else hi = mid; }
+    for(int i=lo; i<_count && compareName(i, pfx)==0; i++)
+        if(indexOf('.', _starts[i] + pfx.length(), _starts[i+1])<0)
+            names.add(getName(i));
+    return names;
+}
+
+/**
+ * Returns the first position in sorted indexes whose key (lowercase simple name or humps) is not less than given key.
+ */
+private int lowerBound(int theIndexes[], String aKey, boolean isHumps)
+{
+    int lo = 0, hi = _count;
+    while(lo<hi) { int mid = (lo + hi)>>>1;
+        if(compareKey(theIndexes[mid], aKey, isHumps)<0) lo = mid + 1; else hi = mid; }
+    return lo;
+}
+
+/**
+ * Compares key (lowercase simple name or humps) of name at given index with given key.
+ */
+private int compareKey(int anIndex, String aKey, boolean isHumps)
+{
+    char chars[] = isHumps? _humps : _chars;
+    int start = isHumps? _humpStarts[anIndex] : _simpleStarts[anIndex];
+    int end = isHumps? _humpStarts[anIndex+1] : _starts[anIndex+1];
+    for(int i=0, iMax=Math.min(end - start, aKey.length()); i<iMax; i++) {
+        char c = Character.toLowerCase(chars[start+i]), c2 = aKey.charAt(i);
+        if(c!=c2) return c - c2;
+    }
+    return (end - start) - aKey.length();
+}
+
+/**
+ * Returns whether key (lowercase simple name or humps) of name at given index starts with given key.
+ */
+private boolean startsWith(int anIndex, String aKey, boolean isHumps)
+{
+    char chars[] = isHumps? _humps : _chars;
+    int start = isHumps? _humpStarts[anIndex] : _simpleStarts[anIndex];
+    int end = isHumps? _humpStarts[anIndex+1] : _starts[anIndex+1];
+    if(end - start<aKey.length()) return false;
+    for(int i=0, iMax=aKey.length(); i<iMax; i++)
+        if(Character.toLowerCase(chars[start+i])!=aKey.charAt(i)) return false;
+    return true;
+}
+
+/**
+ * Compares the start of full name at given index with given prefix (0 if name starts with prefix).
+ */
+private int compareName(int anIndex, String aPrefix)
+{
+    int start = _starts[anIndex], len = _starts[anIndex+1] - start;
+    for(int i=0, iMax=Math.min(len, aPrefix.length()); i<iMax; i++) {
+        char c = _chars[start+i], c2 = aPrefix.charAt(i);
+        if(c!=c2) return c - c2;
+    }
+    return len>=aPrefix.length()? 0 : -1;
+}
+
+/**
+ * Returns whether simple name at given index matches camel humps of given prefix: Each prefix hump (upper case
+ * letter and following lower case letters) starts the corresponding simple name hump, ignoring case.
+ */
+private boolean isCamelMatch(int anIndex, String aPrefix)
+{
+    int i = _simpleStarts[anIndex], end = _starts[anIndex+1], j = 0, plen = aPrefix.length();
+    while(j<plen) {
+        if(i>=end) return false;
+        if(Character.toLowerCase(_chars[i])!=Character.toLowerCase(aPrefix.charAt(j))) return false;
+        i++; j++;
+        while(j<plen && !Character.isUpperCase(aPrefix.charAt(j))) {
+            if(i>=end || Character.toLowerCase(_chars[i])!=Character.toLowerCase(aPrefix.charAt(j))) return false;
+            i++; j++;
+        }
+        while(i<end && !Character.isUpperCase(_chars[i])) i++;
+    }
+    return true;
+}
+
+/** Returns the index of given char in table between given start and end (or -1). */
+private int indexOf(char aChar, int aStart, int anEnd)
+{
+    for(int i=aStart; i<anEnd; i++) if(_chars[i]==aChar) return i;
+    return -1;
+}
+
+/**
+ * Appends lowercase camel-hump initials (first char and upper case letters) of simple name at given index in string.
+ */
+private static void appendHumps(String aName, int aStart, StringBuffer aSB)
+{
+    for(int i=aStart; i<aName.length(); i++) { char c = aName.charAt(i);
+        if(i==aStart || Character.isUpperCase(c)) aSB.append(Character.toLowerCase(c)); }
+}
+
+/**
+ * Returns name indexes sorted by given keys.
+ */
+private static int[] getSorted(String theKeys[])
+{
+    Integer inds[] = new Integer[theKeys.length]; for(int i=0; i<inds.length; i++) inds[i] = i;
+    Arrays.sort(inds, (i1,i2) -> theKeys[i1].compareTo(theKeys[i2]));
+    int sorted[] = new int[inds.length]; for(int i=0; i<inds.length; i++) sorted[i] = inds[i];
+    return sorted;
+}
+
+}
@@ -18,6 +18,10 @@ public class ClassPathInfo {
     // The list of all package files and class files
     List <WebFile>      _apkgs, _acls;
     
+    // The index of all class names (for prefix/camel-case lookup) and the sites for each package name
+    volatile ClassNameIndex              _clsIndex;
+    volatile Map <String,List<WebSite>>  _pkgSites;
+    
     // A listener for ClassPath PropChange
     PropChangeListener  _classPathPCL = pc -> classPathDidPropChange(pc);
     
@@ -87,13 +91,14 @@ public List <String> getAllPackageNames(String aPrefix)
 }
 
 /**
- * Returns all classes with prefix.
+ * Returns all classes with prefix (or that match prefix camel humps, like "HM" for HashMap).
  */
-public List <String> getAllClassNames(String aPrefix)
-{
-    List <WebFile> cfiles = getClassFiles(getAllClasses(), aPrefix);
-    return getClassNames(cfiles);
-}
+public List <String> getAllClassNames(String aPrefix)  { return getClassNameIndex().getClassNames(aPrefix); }
+
+/**
+ * Returns the index of all class names.
+ */
+public ClassNameIndex getClassNameIndex()  { if(_clsIndex==null) createAll(); return _clsIndex; }
 
 /**
  * Returns class names for entries list.
@@ -140,13 +145,21 @@ private List <String> getPackageNames(List <WebFile> theFiles)
  */
 public WebFile getPackageDir(String aName)
 {
+    // Get sites with package (just return if none)
+    List <WebSite> sites = getPackageSites(aName); if(sites==null) return null;
+    
+    // Return package dir from first site
     String path = "/" + aName.replace('.', '/');
-    List <WebSite> sites = getSites();
     for(WebSite site : sites) { WebFile file = site.getFile(path);
         if(file!=null) return file; }
     return null;
 }
 
+/**
+ * Returns the sites that have a package dir for a package name (or null if none).
+ */
+public List <WebSite> getPackageSites(String aName)  { if(_pkgSites==null) createAll(); return _pkgSites.get(aName); }
+
 /**
  * Returns a list of class files for a package dir and a prefix.
  */
@@ -183,19 +196,38 @@ public List <WebFile> getAllPackages()  { if(_apkgs==null) createAll(); return _
  */
 public List <WebFile> getAllClasses()  { if(_acls==null) createAll(); return _acls; }
 
-protected void createAll()
+/**
+ * Creates lists of all classes and top level packages, class name index and package sites.
+ */
+protected synchronized void createAll()
 {
-    _acls = new ArrayList(); _apkgs = new ArrayList();
-    for(WebSite site : getSites()) getAll(site.getRootDir(), _acls, _apkgs);
+    // If already created, just return
+    if(_acls!=null) return;
+    
+    // Get all classes, top level packages and sites for each package
+    List <WebFile> acls = new ArrayList(), apkgs = new ArrayList();
+    Map <String,List<WebSite>> pkgSites = new HashMap();
+    for(WebSite site : getSites()) getAll(site, site.getRootDir(), acls, apkgs, pkgSites);
+    
+    // Create class name index, then set all (all classes last, so a failure here leaves nothing marked as created)
+    ClassNameIndex clsIndex = new ClassNameIndex(getClassNames(acls));
+    _apkgs = apkgs; _pkgSites = pkgSites; _clsIndex = clsIndex; _acls = acls;
 }
 
-private void getAll(WebFile aDir, List <WebFile> theClasses, List <WebFile> thePkgs)
+private void getAll(WebSite aSite, WebFile aDir, List <WebFile> theClasses, List <WebFile> thePkgs,
+    Map <String,List<WebSite>> thePkgSites)
 {
+    // Add site for dir package name
+    String pname = aDir.getPath().substring(1).replace('/', '.');
+    List <WebSite> sites = thePkgSites.get(pname);
+    if(sites==null) thePkgSites.put(pname, sites = new ArrayList(1)); sites.add(aSite);
+    
+    // Add classes and packages
     for(WebFile file : aDir.getFiles()) {
         if(file.isDir()) {
             if(file.getName().indexOf('.')>0) continue;
             if(thePkgs!=null) thePkgs.add(file);
-            getAll(file, theClasses, null); // Send null because we only want top level packages
+            getAll(aSite, file, theClasses, null, thePkgSites); // Send null because we only want top level packages
         }
         else {
             String path = file.getPath();
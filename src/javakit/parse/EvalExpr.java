@@ -14,18 +14,16 @@ public class EvalExpr {
     
     // A map of local variables
     Map <String,Object>  _locals = new HashMap();
-
-    // A parser to parse expressions
-    static Parser        _exprParser = JavaParser.getShared().getExprParser();
     
 /**
  * Evaluate expression.
  */
 public Object eval(String anExpr)
 {
-    // Get JExpr for string
-    _exprParser.setInput(anExpr);
-    JExpr expr = _exprParser.parseCustom(JExpr.class);
+    // Get JExpr for string (with expression parser for current thread)
+    Parser exprParser = JavaParser.get().getExprParser();
+    exprParser.setInput(anExpr);
+    JExpr expr = exprParser.parseCustom(JExpr.class);
     
     // Eval expression
     Object value; try { value = evalExpr(expr); }
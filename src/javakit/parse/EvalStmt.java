@@ -11,8 +11,8 @@ public class EvalStmt {
     // The Expression evaluator
     EvalExpr            _exprEval = EvalExpr.get(null);
 
-    // A parser to parse expressions
-    static Parser       _stmtParser = new StmtParser();
+    // The parser to parse statements for each thread
+    static ThreadLocal <Parser>  _stmtParser = ThreadLocal.withInitial(() -> new StmtParser());
     
 /**
  * Evaluate expression.
@@ -20,8 +20,9 @@ public class EvalStmt {
 public Object eval(Object aOR, String anExpr)
 {
     // Parse string to statement
-    _stmtParser.setInput(anExpr);
-    JStmt stmt = _stmtParser.parseCustom(JStmt.class);
+    Parser stmtParser = _stmtParser.get();
+    stmtParser.setInput(anExpr);
+    JStmt stmt = stmtParser.parseCustom(JStmt.class);
     
     // Set ObjectRef and eval statement
     _exprEval._thisObj = aOR;
@@ -113,7 +114,7 @@ protected static class StmtParser extends Parser {
     /** Creates a new StmtParser. */
     public StmtParser()
     {
-        super(JavaParser.getShared().getRule("BlockStatement"));
+        super(JavaParser.get().getRule("BlockStatement"));
     }
     
     /** Override to ignore exception. */
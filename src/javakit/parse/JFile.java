@@ -303,6 +303,11 @@ public Exception getException()  { return _exception; }
  */
 public void setException(Exception anException)  { _exception = anException; }
 
+/**
+ * Returns the packed table of node tokens (if compacted).
+ */
+public JTokenTable getTokenTable()  { return _tokenTable; }
+
 /**
  * Init from another JFile.
  */
@@ -310,6 +315,7 @@ protected void init(JFile aJFile)
 {
     _name = aJFile._name;
     _startToken = aJFile._startToken; _endToken = aJFile._endToken;
+    _tokenTable = aJFile._tokenTable; _startIndex = aJFile._startIndex; _endIndex = aJFile._endIndex;
     _children = aJFile._children; for(JNode c : _children) c._parent = this;
 
     _sourceFile = aJFile._sourceFile; _proj = aJFile._proj; _packageDecl = aJFile._packageDecl;
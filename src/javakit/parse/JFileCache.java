@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.util.*;
+
+/**
+ * A global cache of the JavaData parsed JFiles with a memory budget: JFiles are evicted in least recently used order
+ * when the estimated size of cached JFiles goes over budget (except for pinned files, which are open in an editor).
+ * Sizes are estimated from the source chars parsed so far (member bodies skipped by signature parse are added when
+ * they are parsed).
+ * Budget is set with -Dsnapcode.jfileCacheMB (default 64). Keeps hit, miss and eviction counts for sizing.
+ */
+public class JFileCache {
+
+    // The JavaDatas with cached JFiles and their estimated sizes (in access order)
+    LinkedHashMap <JavaData,Long>  _sizes = new LinkedHashMap(64, .75f, true);
+
+    // The estimated size of cached JFiles and the budget (in bytes)
+    long                           _size, _budget;
+
+    // The hit, miss and eviction counts
+    long                           _hits, _misses, _evictions;
+
+    // The estimated JFile bytes per source char
+    static final int               BYTES_PER_CHAR = 24;
+
+    // The shared cache
+    static JFileCache              _shared = new JFileCache();
+
+/**
+ * Creates a new JFileCache.
+ */
+public JFileCache()
+{
+    long mb = 64; try { mb = Long.parseLong(System.getProperty("snapcode.jfileCacheMB", "64")); }
+    catch(NumberFormatException e) { System.err.println("JFileCache: Invalid snapcode.jfileCacheMB: " + e); }
+    _budget = mb*1024*1024;
+}
+
+/**
+ * Returns the budget (in bytes).
+ */
+public synchronized long getBudget()  { return _budget; }
+
+/**
+ * Sets the budget (in bytes).
+ */
+public synchronized void setBudget(long aValue)  { _budget = aValue; evict(); }
+
+/**
+ * Returns the estimated size of cached JFiles (in bytes).
+ */
+public synchronized long getSize()  { return _size; }
+
+/**
+ * Returns the number of cached JFiles.
+ */
+public synchronized int getCount()  { return _sizes.size(); }
+
+/**
+ * Returns the number of times a cached JFile was returned.
+ */
+public synchronized long getHitCount()  { return _hits; }
+
+/**
+ * Returns the number of times a JFile had to be parsed.
+ */
+public synchronized long getMissCount()  { return _misses; }
+
+/**
+ * Returns the number of JFiles evicted.
+ */
+public synchronized long getEvictionCount()  { return _evictions; }
+
+/**
+ * Returns whether a JFile for given source length can be added without going over budget (for background parse).
+ */
+public synchronized boolean hasRoom(int aLength)  { return _size + (long)aLength*BYTES_PER_CHAR<=_budget; }
+
+/**
+ * Called when cached JFile of given JavaData is returned (marks as most recently used).
+ */
+protected synchronized void hit(JavaData aData)  { _hits++; _sizes.get(aData); }
+
+/**
+ * Called when JFile of given JavaData is parsed and set for given source length.
+ */
+protected synchronized void added(JavaData aData, int aLength)
+{
+    // Add size (replacing old entry if present)
+    long size = (long)aLength*BYTES_PER_CHAR;
+    Long old = _sizes.put(aData, size); if(old!=null) _size -= old;
+    _size += size; _misses++;
+
+    // Evict files if over budget
+    evict();
+}
+
+/**
+ * Called when more of cached JFile of given JavaData is parsed (member body skipped by signature parse) for given
+ * source length.
+ */
+protected synchronized void grown(JavaData aData, int aLength)
+{
+    // Add size to entry (just return if not cached)
+    Long size = _sizes.get(aData); if(size==null) return;
+    long delta = (long)aLength*BYTES_PER_CHAR;
+    _sizes.put(aData, size + delta); _size += delta;
+
+    // Evict files if over budget
+    evict();
+}
+
+/**
+ * Called when JFile of given JavaData is cleared.
+ */
+protected synchronized void removed(JavaData aData)
+{
+    Long old = _sizes.remove(aData); if(old!=null) _size -= old;
+}
+
+/**
+ * Evicts least recently used JFiles (that aren't pinned) until size is under budget.
+ */
+protected void evict()
+{
+    for(Iterator <Map.Entry<JavaData,Long>> i=_sizes.entrySet().iterator(); i.hasNext() && _size>_budget;) {
+        Map.Entry <JavaData,Long> entry = i.next(); JavaData data = entry.getKey();
+        if(data.isPinned()) continue;
+        i.remove(); _size -= entry.getValue(); _evictions++;
+        data.clearJFile();
+    }
+}
+
+/**
+ * Standard toString implementation.
+ */
+public synchronized String toString()
+{
+    return String.format("JFileCache { Count=%d, Size=%dK, Budget=%dK, Hits=%d, Misses=%d, Evictions=%d }",
+        _sizes.size(), _size/1024, _budget/1024, _hits, _misses, _evictions);
+}
+
+/**
+ * Returns the shared cache.
+ */
+public static JFileCache get()  { return _shared; }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.util.*;
+import snap.parse.*;
+
+/**
+ * The names in a Java file, from the tokenizer alone (no parse): The sorted names of all identifiers in file, for a
+ * quick prefilter before a file is parsed or its refs are loaded (reference search), and the names of types declared
+ * in file (to find files a source could reference before it is compiled). This is not a compact form of the AST -
+ * it can't be expanded to nodes. Names are interned, so files share name strings (and unused names can still be
+ * collected).
+ */
+public class JFileNames {
+
+    // The sorted names of all identifiers in file (null if tokenizer failed, so any name might be present)
+    String            _identNames[];
+    
+    // The sorted names of types declared in file (class, interface and enum names, including inner types)
+    String            _typeNames[];
+
+    // The length and hash code of source (to tell if source has changed since)
+    int               _srcLength, _srcHash;
+
+/**
+ * Creates a new JFileNames for given source.
+ */
+public JFileNames(CharSequence aSource)
+{
+    readNames(aSource);
+    _srcLength = aSource.length(); _srcHash = aSource.toString().hashCode();
+}
+
+/**
+ * Returns whether file contains an identifier with given name (for quick reference search filter). Always true if
+ * tokenizer failed, since names after the failure are unknown.
+ */
+public boolean containsName(String aName)
+{
+    return _identNames==null || Arrays.binarySearch(_identNames, aName)>=0;
+}
+
+/**
+ * Returns the sorted identifier names in file (or null if tokenizer failed).
+ */
+public String[] getNames()  { return _identNames; }
+
+/**
+ * Returns the sorted names of types declared in file, including inner types (or null if tokenizer failed).
+ */
+public String[] getTypeNames()  { return _typeNames; }
+
+/**
+ * Returns whether this compact file was created from given source (same length and hash code).
+ */
+public boolean isSource(CharSequence aSource)
+{
+    return aSource!=null && aSource.length()==_srcLength && aSource.toString().hashCode()==_srcHash;
+}
+
+/**
+ * Reads the identifier names and declared type names in given source (from tokens). If tokenizer fails (bad char or
+ * unterminated literal), names are left null.
+ */
+private void readNames(CharSequence aSource)
+{
+    // Iterate over tokens and add identifiers (and identifiers after class/interface/enum keywords to type names)
+    Set <String> names = new HashSet(), typeNames = new HashSet(); String lastPattern = null, lastPattern2 = null;
+    Tokenizer tokenizer = JavaParser.get().getTokenizer(); tokenizer.setInput(aSource);
+    try {
+        for(Token token=tokenizer.getNextToken(); token!=null; token=tokenizer.getNextToken()) {
+            if(token.getName()=="Identifier") { names.add(token.getString());
+                if((lastPattern=="class" || lastPattern=="interface" || lastPattern=="enum") && lastPattern2!=".")
+                    typeNames.add(token.getString());
+            }
+            lastPattern2 = lastPattern; lastPattern = token.getPattern();
+        }
+    }
+    catch(Exception e) { System.err.println("JFileNames.readNames: Tokenizer failed: " + e); return; }
+    _identNames = getSortedNames(names); _typeNames = getSortedNames(typeNames);
+}
+
+/**
+ * Returns given names as sorted array of interned strings.
+ */
+private static String[] getSortedNames(Set <String> theNames)
+{
+    String array[] = new String[theNames.size()]; int i = 0; for(String name : theNames) array[i++] = name.intern();
+    Arrays.sort(array);
+    return array;
+}
+
+}
@@ -17,6 +17,9 @@ public class JNode {
     // The start/end tokens for this node
     Token               _startToken, _endToken;
     
+    // The packed token table and start/end token indexes in it, if tokens were compacted (start/end tokens are null)
+    JTokenTable         _tokenTable; int _startIndex = -1, _endIndex = -1;
+    
     // The parent node
     JNode               _parent;
 
@@ -156,44 +159,92 @@ public JNode getEnclosingDeclNode()
 }
 
 /**
- * Returns the start token of this node.
+ * Returns the start token of this node (a new token view, if tokens were compacted).
  */
-public Token getStartToken()  { return _startToken; }
+public Token getStartToken()
+{
+    return _startToken!=null || _startIndex<0? _startToken : _tokenTable.getToken(_startIndex);
+}
 
 /**
  * Sets the start token of this node.
  */
-public void setStartToken(Token aToken)  { _startToken = aToken; }
+public void setStartToken(Token aToken)
+{
+    int index = getTableIndex(aToken);
+    _startToken = index<0? aToken : null; _startIndex = index;
+}
 
 /**
  * Returns the start char index of this node.
  */
-public int getStart()  { return _startToken!=null? _startToken.getInputStart() : 0; }
+public int getStart()
+{
+    return _startToken!=null? _startToken.getInputStart() : _startIndex>=0? _tokenTable.getStart(_startIndex) : 0;
+}
 
 /**
- * Returns the end token of this node.
+ * Returns the end token of this node (a new token view, if tokens were compacted).
  */
-public Token getEndToken()  { return _endToken; }
+public Token getEndToken()
+{
+    return _endToken!=null || _endIndex<0? _endToken : _tokenTable.getToken(_endIndex);
+}
 
 /**
  * Sets the end token of this node.
  */
-public void setEndToken(Token aToken)  { _endToken = aToken; }
+public void setEndToken(Token aToken)
+{
+    int index = getTableIndex(aToken);
+    _endToken = index<0? aToken : null; _endIndex = index;
+}
 
 /**
  * Returns the end char index of this node.
  */
-public int getEnd()  { return _endToken!=null? _endToken.getInputEnd() : 0; }
+public int getEnd()
+{
+    return _endToken!=null? _endToken.getInputEnd() : _endIndex>=0? _tokenTable.getEnd(_endIndex) : 0;
+}
 
 /**
  * Returns the line index of this node.
  */
-public int getLineIndex()  { return _startToken.getLineIndex(); }
+public int getLineIndex()
+{
+    return _startToken!=null? _startToken.getLineIndex() : _tokenTable.getLineIndex(_startIndex);
+}
 
 /**
  * Returns the char index of this node in line.
  */
-public int getLineCharIndex()  { return _startToken.getColumnIndex(); }
+public int getLineCharIndex()
+{
+    return _startToken!=null? _startToken.getColumnIndex() : getStart() - _tokenTable.getLineStart(_startIndex);
+}
+
+/**
+ * Returns whether node has start token (without creating token view).
+ */
+boolean hasStartToken()  { return _startToken!=null || _startIndex>=0; }
+
+/**
+ * Returns whether node has end token (without creating token view).
+ */
+boolean hasEndToken()  { return _endToken!=null || _endIndex>=0; }
+
+/**
+ * Returns the index of given token in this node's token table, if it's a table token view (setting table if not yet
+ * set), otherwise -1.
+ */
+private int getTableIndex(Token aToken)
+{
+    if(!(aToken instanceof JTokenTable.TableToken)) return -1;
+    JTokenTable.TableToken ttoken = (JTokenTable.TableToken)aToken;
+    if(_tokenTable==null) _tokenTable = ttoken._table;
+    return ttoken._table==_tokenTable? ttoken._index : -1;
+}
 
 /**
  * Returns the parent node.
@@ -241,12 +292,12 @@ protected void addChild(JNode aNode, int anIndex)
     if(aNode==null) return; if(anIndex<0) anIndex = _children.size();
     if(_children==Collections.EMPTY_LIST) _children = new ArrayList();
     _children.add(anIndex, aNode); aNode.setParent(this);
-    if(getStartToken()==null || getStart()>aNode.getStart()) {
-        if(aNode.getStartToken()==null) System.err.println("JNode.addChild: Bogus start token");
+    if(!hasStartToken() || getStart()>aNode.getStart()) {
+        if(!aNode.hasStartToken()) System.err.println("JNode.addChild: Bogus start token");
         else setStartToken(aNode.getStartToken());
     }
     
-    if(getEndToken()==null || getEnd()<aNode.getEnd()) setEndToken(aNode.getEndToken());
+    if(!hasEndToken() || getEnd()<aNode.getEnd()) setEndToken(aNode.getEndToken());
     //for(JNode n=this; n!=null; n=n.getParent()) n._string = null;
 }
 
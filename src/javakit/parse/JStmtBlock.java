@@ -4,16 +4,63 @@
 package javakit.parse;
 import java.util.*;
 import snap.util.*;
+import snap.web.WebFile;
 
 /**
  * A Java statement for a block of statements.
  */
 public class JStmtBlock extends JStmt {
 
+    // The source of file, if this is a member body skipped by signature parse (parsed on first access)
+    volatile CharSequence  _bodySource;
+
 /**
  * Returns the list of statements.
  */
-public List <JStmt> getStatements()  { return (List)_children; }
+public List <JStmt> getStatements()  { return (List)getChildren(); }
+
+/**
+ * Override to parse skipped body on first access.
+ */
+public List <JNode> getChildren()
+{
+    if(_bodySource!=null) parseBody();
+    return _children;
+}
+
+/**
+ * Returns whether block is a member body skipped by signature parse that hasn't been parsed yet.
+ */
+public boolean isBodySkipped()  { return _bodySource!=null; }
+
+/**
+ * Sets the file source, to mark block as member body skipped by signature parse.
+ */
+void setBodySource(CharSequence aSource)  { _bodySource = aSource; }
+
+/**
+ * Parses skipped member body: Re-parses member from source and adds body statements to this block.
+ */
+protected synchronized void parseBody()
+{
+    // If already parsed, just return
+    CharSequence source = _bodySource; if(source==null) return;
+
+    // Parse member from source (on current thread parser) and add statements
+    JMemberDecl member = getParent(JMemberDecl.class);
+    JNode member2 = member!=null? JavaParser.get().parseMember(source, member.getStart()) : null;
+    JStmtBlock block2 = member2!=null? member2.getBlock() : null;
+    if(block2!=null) for(JStmt stmt : new ArrayList <JStmt> ((List)block2._children)) addChild(stmt, -1);
+
+    // If file tokens are compacted, add statement tokens to table
+    JFile jfile = getFile(); JTokenTable table = jfile!=null? jfile.getTokenTable() : null;
+    if(table!=null) table.compact(this);
+    _bodySource = null;
+    
+    // If file is cached by JavaData, report body size to JFileCache
+    WebFile sfile = jfile!=null? jfile.getSourceFile() : null;
+    if(sfile!=null) JavaData.get(sfile).bodyParsed(jfile, getEnd() - getStart());
+}
 
 /**
  * Adds a statement.
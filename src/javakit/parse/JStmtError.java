@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+
+/**
+ * A Java statement for source that couldn't be parsed (tokens skipped by JavaParser error recovery to resync at the
+ * next statement or member boundary).
+ */
+public class JStmtError extends JStmt {
+
+    // The parse exception
+    Exception      _exception;
+
+    // The skipped source text
+    String         _text;
+
+/**
+ * Returns the parse exception.
+ */
+public Exception getException()  { return _exception; }
+
+/**
+ * Sets the parse exception.
+ */
+public void setException(Exception anException)  { _exception = anException; }
+
+/**
+ * Returns the skipped source text.
+ */
+public String getText()  { return _text; }
+
+/**
+ * Sets the skipped source text.
+ */
+public void setText(String aString)  { _text = aString; }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.util.*;
+import snap.parse.*;
+
+/**
+ * A packed table of the tokens referenced by the nodes of a JFile: Parallel int arrays of input start, input end and
+ * kind (index of interned name/pattern), plus the start char index of each line that has tokens (for token line index
+ * and column). Compacted nodes reference tokens by index in table (JNode start/end index), so no object is kept per
+ * token - TableToken views are only created when a node is asked for its start/end token.
+ * 
+ * Lazy member body parses compact into the table of a JFile that other threads may be reading, so table arrays are
+ * copy-on-write: compact adds to a copy and publishes it, and readers get everything from the published copy.
+ */
+public class JTokenTable {
+
+    // The input (for token strings)
+    CharSequence            _input;
+
+    // The current table arrays (replaced by compact)
+    volatile Data           _data = new Data();
+
+    // The kind index for name/pattern key (only used by compact)
+    Map <String,Integer>    _kindIndexes = new HashMap();
+
+/**
+ * Creates a new JTokenTable for given input.
+ */
+public JTokenTable(CharSequence anInput)  { _input = anInput; }
+
+/**
+ * Returns the number of tokens.
+ */
+public int getCount()  { return _data.count; }
+
+/**
+ * Returns a token view for token at given index.
+ */
+public Token getToken(int anIndex)  { return new TableToken(this, anIndex); }
+
+/**
+ * Returns the input start of token at given index.
+ */
+public int getStart(int anIndex)  { return _data.starts[anIndex]; }
+
+/**
+ * Returns the input end of token at given index.
+ */
+public int getEnd(int anIndex)  { return _data.ends[anIndex]; }
+
+/**
+ * Returns the line index of token at given index.
+ */
+public int getLineIndex(int anIndex)
+{
+    Data data = _data;
+    return data.lineIndexes[data.getLine(data.starts[anIndex])];
+}
+
+/**
+ * Returns the line start char index of token at given index.
+ */
+public int getLineStart(int anIndex)
+{
+    Data data = _data;
+    return data.lineStarts[data.getLine(data.starts[anIndex])];
+}
+
+/**
+ * Replaces the tokens of given node and its children with indexes in table.
+ */
+public synchronized void compact(JNode aNode)
+{
+    // Add node tokens to copy of table arrays (getting node indexes)
+    Data data = _data.copy();
+    Map <Token,Integer> indexes = new IdentityHashMap(); List <JNode> nodes = new ArrayList();
+    addTokens(aNode, data, indexes, nodes);
+
+    // Publish table arrays, then replace node tokens with indexes
+    _data = data;
+    for(JNode node : nodes) { node._tokenTable = this;
+        if(node._startToken!=null) { node._startIndex = indexes.get(node._startToken); node._startToken = null; }
+        if(node._endToken!=null) { node._endIndex = indexes.get(node._endToken); node._endToken = null; }
+    }
+}
+
+/**
+ * Adds the tokens of given node and its children to given table arrays and index map (and nodes to given list).
+ */
+private void addTokens(JNode aNode, Data theData, Map <Token,Integer> theIndexes, List <JNode> theNodes)
+{
+    // If node tokens are indexes in another table, just leave them
+    if(aNode._tokenTable!=null && aNode._tokenTable!=this) return;
+
+    // Add start/end tokens and children
+    if(aNode._startToken!=null) addToken(aNode._startToken, theData, theIndexes);
+    if(aNode._endToken!=null) addToken(aNode._endToken, theData, theIndexes);
+    theNodes.add(aNode);
+    for(JNode child : aNode._children) addTokens(child, theData, theIndexes, theNodes);
+}
+
+/**
+ * Adds given token to given table arrays and index map (if not already there).
+ */
+private void addToken(Token aToken, Data theData, Map <Token,Integer> theIndexes)
+{
+    // If token view from this table or already added, just return
+    if(theIndexes.containsKey(aToken)) return;
+    if(aToken instanceof TableToken && ((TableToken)aToken)._table==this) {
+        theIndexes.put(aToken, ((TableToken)aToken)._index); return; }
+
+    // Add token values and line and add index to map
+    int index = theData.addToken(aToken.getInputStart(), aToken.getInputEnd(), getKind(aToken, theData));
+    theData.addLine(aToken.getLineStart(), aToken.getLineIndex());
+    theIndexes.put(aToken, index);
+}
+
+/**
+ * Returns the kind index for given token name and pattern (adding to given table arrays if needed).
+ */
+private int getKind(Token aToken, Data theData)
+{
+    String name = aToken.getName(), pattern = aToken.getPattern(), key = name + '\n' + pattern;
+    Integer index = _kindIndexes.get(key); if(index!=null) return index;
+    _kindIndexes.put(key, index = theData.addKind(name, pattern));
+    return index;
+}
+
+/**
+ * Compacts tokens of given JFile into a new table.
+ */
+public static void compactFile(JFile aJFile, CharSequence anInput)
+{
+    JTokenTable table = new JTokenTable(anInput);
+    table.compact(aJFile);
+}
+
+/**
+ * A token view that gets its values from a JTokenTable (created on demand - nodes keep only the index).
+ */
+public static class TableToken implements Token {
+
+    // The table and the index in table
+    JTokenTable   _table; int _index;
+
+    /** Creates a new TableToken. */
+    TableToken(JTokenTable aTable, int anIndex)  { _table = aTable; _index = anIndex; }
+
+    /** Token method: Returns null (tokenizer not kept). */
+    public Tokenizer getTokenizer()  { return null; }
+
+    /** Token method. */
+    public String getName()  { Data data = _table._data; return data.names[data.kinds[_index]]; }
+
+    /** Token method. */
+    public String getPattern()  { Data data = _table._data; return data.patterns[data.kinds[_index]]; }
+
+    /** Token method. */
+    public int getInputStart()  { return _table.getStart(_index); }
+
+    /** Token method. */
+    public int getInputEnd()  { return _table.getEnd(_index); }
+
+    /** Token method. */
+    public int getLineIndex()  { return _table.getLineIndex(_index); }
+
+    /** Token method. */
+    public int getLineStart()  { return _table.getLineStart(_index); }
+
+    /** Token method. */
+    public int getColumnIndex()  { return getInputStart() - getLineStart(); }
+
+    /** Token method: Returns null (special tokens not kept). */
+    public Token getSpecialToken()  { return null; }
+
+    /** Token method. */
+    public String getString()
+    {
+        Data data = _table._data;
+        return _table._input.subSequence(data.starts[_index], data.ends[_index]).toString();
+    }
+
+    /** Standard toString implementation. */
+    public String toString()  { return getString(); }
+
+    /** Standard equals implementation (views of same table token are equal). */
+    public boolean equals(Object anObj)
+    {
+        if(anObj==this) return true;
+        if(!(anObj instanceof TableToken)) return false;
+        TableToken other = (TableToken)anObj; return other._table==_table && other._index==_index;
+    }
+
+    /** Standard hashCode implementation. */
+    public int hashCode()  { return System.identityHashCode(_table)*31 + _index; }
+}
+
+/**
+ * The arrays of a table. Token and kind arrays are append-only (entries below count never change), so a copy shares
+ * them and appends in place while there's room. Line arrays are copied, since adding a line shifts them.
+ */
+private static class Data {
+
+    // The token input starts, input ends and kinds, and the token count
+    int       starts[] = new int[64], ends[] = new int[64], kinds[] = new int[64], count;
+
+    // The start char indexes of lines with tokens (sorted) and their line indexes, and the line count
+    int       lineStarts[] = new int[16], lineIndexes[] = new int[16], lineCount;
+
+    // The kind names and patterns, and the kind count
+    String    names[] = new String[16], patterns[] = new String[16]; int kindCount;
+
+    /** Returns a copy to add to (sharing append-only arrays). */
+    Data copy()
+    {
+        Data data = new Data();
+        data.starts = starts; data.ends = ends; data.kinds = kinds; data.count = count;
+        data.lineStarts = lineStarts.clone(); data.lineIndexes = lineIndexes.clone(); data.lineCount = lineCount;
+        data.names = names; data.patterns = patterns; data.kindCount = kindCount;
+        return data;
+    }
+
+    /** Adds a token and returns its index. */
+    int addToken(int aStart, int anEnd, int aKind)
+    {
+        if(count==starts.length) { int len = count*2;
+            starts = Arrays.copyOf(starts, len); ends = Arrays.copyOf(ends, len); kinds = Arrays.copyOf(kinds, len); }
+        starts[count] = aStart; ends[count] = anEnd; kinds[count] = aKind;
+        return count++;
+    }
+
+    /** Adds a kind and returns its index. */
+    int addKind(String aName, String aPattern)
+    {
+        if(kindCount==names.length) { int len = kindCount*2;
+            names = Arrays.copyOf(names, len); patterns = Arrays.copyOf(patterns, len); }
+        names[kindCount] = aName; patterns[kindCount] = aPattern;
+        return kindCount++;
+    }
+
+    /** Adds given line start and line index (if not yet added). */
+    void addLine(int aLineStart, int aLineIndex)
+    {
+        // Get insertion index (just return if line already added)
+        int index = Arrays.binarySearch(lineStarts, 0, lineCount, aLineStart); if(index>=0) return;
+        index = -index - 1;
+
+        // Grow arrays if needed and insert
+        if(lineCount==lineStarts.length) { int len = lineCount*2;
+            lineStarts = Arrays.copyOf(lineStarts, len); lineIndexes = Arrays.copyOf(lineIndexes, len); }
+        System.arraycopy(lineStarts, index, lineStarts, index+1, lineCount - index);
+        System.arraycopy(lineIndexes, index, lineIndexes, index+1, lineCount - index);
+        lineStarts[index] = aLineStart; lineIndexes[index] = aLineIndex; lineCount++;
+    }
+
+    /**
+     * Returns the index of line containing given char index: the last line with tokens that starts at or before it
+     * (each token's own line is added with token, so this is always the token's line).
+     */
+    int getLine(int aCharIndex)
+    {
+        int index = Arrays.binarySearch(lineStarts, 0, lineCount, aCharIndex);
+        return index>=0? index : Math.max(-index - 2, 0);
+    }
+}
+
+}
\ No newline at end of file
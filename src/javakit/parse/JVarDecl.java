@@ -43,7 +43,8 @@ public JType getType()
     
     // If array count is set, replace with type to account for it
     if(_arrayCount>0) {
-        JType type2 = new JType(); type2._name = _type._name; type2._startToken = type2._endToken = _startToken;
+        JType type2 = new JType(); type2._name = _type._name;
+        type2.setStartToken(getStartToken()); type2.setEndToken(getStartToken());
         type2._primitive = _type._primitive; type2._arrayCount = _type._arrayCount + _arrayCount;
         _type = type2; _type._parent = this;
     }
@@ -81,7 +82,7 @@ private JType getParentType()
         
         // Create type for type decl and return
         JType type = new JType(); type._name = tdecl.getSimpleName();
-        type._startToken = type._endToken = _startToken;
+        type.setStartToken(getStartToken()); type.setEndToken(getStartToken());
         type._decl = tdecl; type._primitive = tdecl.isPrimitive(); type._parent = this;
         return type;
     }
@@ -72,7 +72,7 @@ private void getSuggestions(JType aJType)
     ClassPathInfo cpinfo = ClassPathInfo.get(aJType);
     String prefix = aJType.getName();
 
-    List <String> cnames = prefix.length()>3? cpinfo.getAllClassNames(prefix) : cpinfo.getCommonClassNames(prefix);
+    List <String> cnames = getClassNames(cpinfo, prefix);
     for(String cname : cnames) {
         if(aJType.getParent() instanceof JExprAlloc) {
             Class cls = cpinfo.getClass(cname);
@@ -85,6 +85,16 @@ private void getSuggestions(JType aJType)
     }
 }
 
+/**
+ * Returns class names for given prefix: All class names if prefix is long or is camel humps ("HM" or "NPE" for
+ * HashMap or NullPointerException), otherwise common class names.
+ */
+private static List <String> getClassNames(ClassPathInfo aCPI, String aPrefix)
+{
+    boolean humps = aPrefix.length()>1 && aPrefix.chars().allMatch(c -> Character.isUpperCase(c));
+    return aPrefix.length()>3 || humps? aCPI.getAllClassNames(aPrefix) : aCPI.getCommonClassNames(aPrefix);
+}
+
 /**
  * Find suggestions for JExprId.
  */
@@ -134,7 +144,7 @@ private void getSuggestions(JExprId anId)
         }
 
         // If starts with upper case or is greater than 3 chars, add classes with prefix that are public
-        List <String> cnames = prefix.length()>3? cpinfo.getAllClassNames(prefix) : cpinfo.getCommonClassNames(prefix);
+        List <String> cnames = getClassNames(cpinfo, prefix);
         for(String cname : cnames) {
             Class cls = cpinfo.getClass(cname);
             if(cls==null || !Modifier.isPublic(cls.getModifiers())) continue;
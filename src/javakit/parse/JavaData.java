@@ -20,15 +20,32 @@ public class JavaData {
     
     // The set of references in this JavaFile
     Set <JavaDecl>   _refs = new HashSet();
-
+    
+    // The keys of references restored from JavaDataFile (resolved to Refs on first use)
+    String           _refKeys[];
+    
     // The set of files that our file depends on
     Set <WebFile>    _dependencies = new HashSet();
     
-    // The set of files that depend on our file
-    Set <WebFile>    _dependents = new HashSet();
+    // The set of files that depend on our file (synchronized, since projects can build in parallel)
+    Set <WebFile>    _dependents = Collections.synchronizedSet(new HashSet());
 
-    // The parsed version of this JavaFile
-    JFile            _jfile;
+    // The parsed version of this JavaFile (and lock so threads asking at same time share one parse), its text and
+    // whether it was fully parsed (member bodies weren't skipped)
+    volatile JFile   _jfile;
+    String           _jfileText;
+    volatile boolean _jfileFull;
+    Object           _jfileLock = new Object();
+    
+    // The identifier and declared type names of Java file (for reference search prefilter)
+    volatile JFileNames _fileNames;
+    
+    // Whether JFile is pinned in JFileCache (file is open in editor)
+    volatile boolean _pinned;
+    
+    // The fingerprints of class files public API and all members (from last update) and whether they are set
+    long             _apiHash, _allHash;
+    boolean          _hashesSet;
     
 /**
  * Creates a new JavaData for given file.
@@ -73,9 +90,46 @@ public synchronized Set <JavaDecl> getDecls()
 }
 
 /**
- * Returns the references in this JavaFile.
+ * Returns the references in this JavaFile. Refs restored from JavaDataFile are resolved from their keys on first use -
+ * if any key no longer resolves, restored info is stale, so dependencies are updated from class files and file is
+ * added to build files.
  */
-public Set <JavaDecl> getRefs()  { return _refs; }
+public Set <JavaDecl> getRefs()
+{
+    // If refs were restored from JavaDataFile, resolve keys (if any fail, just mark stale)
+    boolean stale = false;
+    synchronized(this) {
+        if(_refKeys!=null) {
+            Set <JavaDecl> refs = JavaDataFile.getRefs(getProject(), _refKeys);
+            if(refs!=null) { _refs = refs; _refKeys = null; }
+            else stale = true;
+        }
+    }
+    
+    // If stale, update dependencies from class files and rebuild file
+    if(stale) {
+        updateDependencies();
+        getProject().addBuildFileForce(_file);
+    }
+    
+    // Return refs
+    return _refs;
+}
+
+/**
+ * Returns the keys for references (for JavaDataFile), or null if any reference has no key.
+ */
+synchronized String[] getRefKeys()
+{
+    // If restored refs not yet resolved, just return keys
+    if(_refKeys!=null) return _refKeys;
+    
+    // Get keys for refs and return
+    String keys[] = new String[_refs.size()]; int i = 0;
+    for(JavaDecl ref : _refs) { String key = JavaDataFile.getRefKey(ref); if(key==null) return null;
+        keys[i++] = key; }
+    return keys;
+}
     
 /**
  * Returns the set of files that our file depends on.
@@ -83,9 +137,9 @@ public Set <JavaDecl> getRefs()  { return _refs; }
 public Set <WebFile> getDependencies()  { return _dependencies; }
 
 /**
- * Returns the set of files that depend on our file.
+ * Returns a copy of the set of files that depend on our file (set is updated by other files on build threads).
  */
-public Set <WebFile> getDependents()  { return _dependents; }
+public Set <WebFile> getDependents()  { synchronized(_dependents) { return new HashSet(_dependents); } }
 
 /**
  * Returns whether dependencies are set.
@@ -95,7 +149,7 @@ public boolean isDependenciesSet()  { return _dset; } boolean _dset;
 /**
  * Updates dependencies for a given file and list of new/old dependencies.
  * 
- * @return whether any dependencies (the declarations or references) have changed since last update.
+ * @return whether the public API fingerprint of class files has changed since last update (dependents need update).
  */
 public synchronized boolean updateDependencies()
 {
@@ -104,9 +158,14 @@ public synchronized boolean updateDependencies()
     Project proj = getProject();
     WebFile cfiles[] = getClassFiles();
     
-    // Get new declarations
+    // Get class file fingerprints and whether public API or any members changed since last update
+    long apiHash = getApiHash(cfiles, false), allHash = getApiHash(cfiles, true);
+    boolean apiChanged = !_hashesSet || apiHash!=_apiHash, membersChanged = !_hashesSet || allHash!=_allHash;
+    _apiHash = apiHash; _allHash = allHash; _hashesSet = true;
+    
+    // If members changed, get new declarations
     boolean declsChanged = false;
-    if(cfiles!=null) for(WebFile cfile : cfiles) {
+    if(membersChanged && cfiles!=null) for(WebFile cfile : cfiles) {
         String cname = proj.getClassName(cfile);
         JavaDeclClass cdecl = proj.getClassDecl(cname); if(cdecl==null) return false;
         try { declsChanged = declsChanged || cdecl.updateDecls(); }
@@ -118,20 +177,27 @@ public synchronized boolean updateDependencies()
         _decls.clear();
     
     // Get new refs
-    Set <JavaDecl> nrefs = new HashSet(); _dset = true; _jfile = null;
+    Set <JavaDecl> nrefs = new HashSet(); _dset = true; clearJFile(); JFileCache.get().removed(this);
     if(cfiles!=null) for(WebFile cfile : cfiles) {
         ClassData cdata = ClassData.get(cfile);
         try { cdata.getRefs(nrefs); }
         catch(Throwable t) { System.err.printf("JavaData.updateDepends failed to get refs in %s: %s\n", cfile, t); }
     }
     
+    // If restored refs weren't resolved, clear dependencies (they're added again from new refs)
+    if(_refKeys!=null) {
+        for(WebFile dep : _dependencies) JavaData.get(dep)._dependents.remove(jfile);
+        _dependencies.clear(); _refs = new HashSet(); _refKeys = null;
+    }
+    
     // If references haven't changed, just return
-    if(nrefs.equals(_refs))
-        return declsChanged;
+    Set <JavaDecl> orefs = _refs;
+    if(nrefs.equals(orefs))
+        return apiChanged;
     
     // Get set of added/removed refs
-    Set <JavaDecl> refsAdded = new HashSet(_refs); refsAdded.addAll(nrefs);
-    Set <JavaDecl> refsRemoved = new HashSet(refsAdded); refsRemoved.removeAll(nrefs); refsAdded.removeAll(_refs);
+    Set <JavaDecl> refsAdded = new HashSet(orefs); refsAdded.addAll(nrefs);
+    Set <JavaDecl> refsRemoved = new HashSet(refsAdded); refsRemoved.removeAll(nrefs); refsAdded.removeAll(orefs);
     _refs = nrefs;
     
     // Iterate over added refs and add dependencies
@@ -160,8 +226,62 @@ public synchronized boolean updateDependencies()
         }
     }
     
-    // Return true since references changed
-    return true;
+    // Return whether public API changed (dependents only need update if so)
+    return apiChanged;
+}
+
+/**
+ * Restores dependency info saved by JavaDataFile (refs are resolved from keys on first use - see getRefs).
+ */
+synchronized void restoreDependencies(long anApiHash, long anAllHash, String theRefKeys[], List <WebFile> theDeps,
+    List <WebFile> theDependents)
+{
+    // Set hashes and ref keys
+    _apiHash = anApiHash; _allHash = anAllHash; _hashesSet = true;
+    _refs = new HashSet(); _refKeys = theRefKeys;
+    
+    // Add dependencies (and this file to their dependents) and dependents
+    for(WebFile file : theDeps) {
+        if(file==_file) continue;
+        _dependencies.add(file); JavaData.get(file)._dependents.add(_file); }
+    for(WebFile file : theDependents)
+        if(file!=_file) _dependents.add(file);
+    _dset = true;
+}
+
+/**
+ * Sets the class file fingerprints from current class files, if not yet set (so that the next updateDependencies
+ * can tell whether public API changed).
+ */
+public synchronized void initApiHash()
+{
+    if(_hashesSet) return;
+    WebFile cfiles[] = getClassFiles(); if(cfiles==null) return;
+    _apiHash = getApiHash(cfiles, false); _allHash = getApiHash(cfiles, true); _hashesSet = true;
+}
+
+/**
+ * Returns a combined fingerprint of the public API (or all members) of given class files. Anonymous and local
+ * classes are skipped, since they come and go with method body edits.
+ */
+private long getApiHash(WebFile theClassFiles[], boolean includePrivate)
+{
+    // If no class files, return 0
+    if(theClassFiles==null) return 0;
+    
+    // Get class file hashes sorted by name
+    Map <String,Long> hashes = new TreeMap();
+    for(WebFile cfile : theClassFiles) { String name = cfile.getName();
+        int dollar = name.lastIndexOf('$');
+        if(dollar>0 && dollar+1<name.length() && Character.isDigit(name.charAt(dollar+1))) continue;
+        hashes.put(name, ClassData.get(cfile).getApiHash(includePrivate));
+    }
+    
+    // Combine and return
+    long hash = 0;
+    for(Map.Entry <String,Long> entry : hashes.entrySet())
+        hash = hash*31 + entry.getKey().hashCode()*31 + entry.getValue();
+    return hash;
 }
 
 /**
@@ -170,23 +290,90 @@ public synchronized boolean updateDependencies()
 public void removeDependencies()
 {
     for(WebFile dep : _dependencies) JavaData.get(dep)._dependents.remove(_file);
-    _dependencies.clear(); _decls.clear(); _refs.clear(); _dset = false;
+    _dependencies.clear(); _decls.clear(); _refs.clear(); _refKeys = null; _dset = false; _hashesSet = false;
 }
 
 /**
- * Returns the parsed Java file.
+ * Returns the parsed Java file (member bodies are parsed on first access, if not already parsed).
  */
-public JFile getJFile()  { return _jfile!=null? _jfile : (_jfile=createJFile()); }
+public JFile getJFile()  { return getJFile(false); }
 
 /**
- * Returns the parsed Java file.
+ * Returns the parsed Java file, with option to make sure all member bodies are parsed in a single full parse (for
+ * callers that walk whole tree, like unused imports and reference search).
  */
-protected JFile createJFile()
+public JFile getJFile(boolean isFull)
 {
-    // Get Java string and parser and generate JavaFile
-    String string = _file.getText();
-    JavaParser javaParser = JavaParser.getShared();
-    JFile jfile = javaParser.getJavaFile(string);
+    // If already parsed (fully, if requested), mark used in cache and return
+    JFile jfile = _jfile; if(jfile!=null && (_jfileFull || !isFull)) { JFileCache.get().hit(this); return jfile; }
+    
+    // Parse (unless another thread just did) and add to cache
+    synchronized(_jfileLock) {
+        if(_jfile!=null && (_jfileFull || !isFull)) { JFileCache.get().hit(this); return _jfile; }
+        _jfile = jfile = createJFile(isFull); _jfileFull = isFull;
+        JFileCache.get().added(this, jfile.getEnd() - getSkippedLength(jfile.getClassDecls()));
+        return jfile;
+    }
+}
+
+/**
+ * Called when member body skipped by signature parse of given JFile is parsed (so JFileCache can add its size).
+ */
+void bodyParsed(JFile aJFile, int aLength)  { if(aJFile==_jfile) JFileCache.get().grown(this, aLength); }
+
+/**
+ * Returns the total source length of member bodies skipped by signature parse in given classes (and inner classes).
+ */
+private static int getSkippedLength(List <JClassDecl> theClassDecls)
+{
+    int length = 0;
+    for(JClassDecl cdecl : theClassDecls)
+        for(JMemberDecl member : cdecl.getMemberDecls()) {
+            if(member instanceof JClassDecl) length += getSkippedLength(Collections.singletonList((JClassDecl)member));
+            JStmtBlock block = member.getBlock();
+            if(block!=null && block.isBodySkipped()) length += block.getEnd() - block.getStart();
+        }
+    return length;
+}
+
+/**
+ * Clears the parsed Java file (called by JFileCache on evict).
+ */
+void clearJFile()  { _jfile = null; _jfileText = null; _jfileFull = false; }
+
+/**
+ * Returns whether JFile is pinned in JFileCache (file is open in editor).
+ */
+public boolean isPinned()  { return _pinned; }
+
+/**
+ * Sets whether JFile is pinned in JFileCache (file is open in editor).
+ */
+public void setPinned(boolean aValue)  { _pinned = aValue; }
+
+/**
+ * Returns the identifier and declared type names of Java file (from tokenizer only - file isn't parsed). Recreated if
+ * file text has changed since it was created.
+ */
+public JFileNames getFileNames()
+{
+    String text = _file.getText();
+    JFileNames fnames = _fileNames; if(fnames!=null && fnames.isSource(text)) return fnames;
+    return _fileNames = new JFileNames(text!=null? text : "");
+}
+
+/**
+ * Returns the parsed Java file (if not full parse, member bodies are parsed on first access).
+ */
+protected JFile createJFile(boolean isFull)
+{
+    // Get Java string and parser (for current thread) and generate JavaFile (or JavaFile with signatures)
+    String string = _jfileText = _file.getText();
+    JavaParser javaParser = JavaParser.get();
+    JFile jfile = isFull? javaParser.getJavaFile(string) : javaParser.getJavaFileSignatures(string);
+    
+    // Replace parser tokens with packed token table
+    JTokenTable.compactFile(jfile, string);
     jfile.setSourceFile(_file);
     return jfile;
 }
@@ -197,7 +384,7 @@ protected JFile createJFile()
 public List <BuildIssue> getUnusedImports()
 {
     String string = _file.getText();
-    Parser ip = JavaParser.getShared().getImportsParser();
+    Parser ip = JavaParser.get().getImportsParser();
     ParseNode node = null; try { node = string!=null && string.length()>0? ip.parse(string) : null; }
     catch(ParseException e) { System.err.println("JavaData.getUnusedImports Parse Exception"); e.printStackTrace(); }
     if(node==null) return Collections.EMPTY_LIST;
@@ -224,7 +411,7 @@ public List <BuildIssue> getUnusedImports()
         if(idecl!=null) { iset.remove(idecl); if(iset.size()==0) return Collections.EMPTY_LIST; } }*/
     
     // Do full parse and eval
-    iset = getJFile().getUnusedImports();
+    iset = getJFile(true).getUnusedImports();
     if(iset.size()==0) return Collections.EMPTY_LIST;
     
     // Create BuildIssues and return
@@ -239,7 +426,7 @@ public List <BuildIssue> getUnusedImports()
 /**
  * Returns the JavaData for given file.
  */
-public static JavaData get(WebFile aFile)
+public static synchronized JavaData get(WebFile aFile)
 {
     JavaData data = (JavaData)aFile.getProp(JavaData.class.getName());
     if(data==null) aFile.setProp(JavaData.class.getName(), data = new JavaData(aFile));
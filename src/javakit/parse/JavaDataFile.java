@@ -0,0 +1,343 @@
+package javakit.parse;
+import java.io.*;
+import java.util.*;
+import snap.project.*;
+import snap.web.*;
+
+/**
+ * A class to save JavaData dependency info (refs, dependencies, dependents and class file API hashes) for project Java
+ * files in a compact binary file in the build directory, so it can be restored when project is reopened instead of
+ * being re-derived from class files. Entries are only restored if Java file and class files haven't changed since save.
+ * Refs are restored as keys and resolved on first use (so classes aren't loaded when project opens) - if any key no
+ * longer resolves, the entry is stale and the file is rebuilt (see JavaData.getRefs). Decls aren't saved: JavaData
+ * gets them from the file's own class decls only when asked (build doesn't need them).
+ */
+public class JavaDataFile {
+
+    // The project
+    Project               _proj;
+
+    // The entries read from file (keyed by Java file path)
+    Map <String,Entry>    _entries;
+
+    // Constants for file path, magic number and version
+    static final String   FILE_PATH = "/.javadata";
+    static final int      MAGIC = 0x534A4446, VERSION = 3;
+
+/**
+ * Creates a new JavaDataFile for project.
+ */
+public JavaDataFile(Project aProj)  { _proj = aProj; }
+
+/**
+ * Returns the project.
+ */
+public Project getProject()  { return _proj; }
+
+/**
+ * Returns the file in build directory.
+ */
+public WebFile getFile(boolean doCreate)  { return _proj.getBuildFile(FILE_PATH, doCreate, false); }
+
+/**
+ * Restores dependency info for given JavaData from saved file, if its Java file and class files haven't changed since
+ * save.
+ *
+ * @return whether dependency info was restored.
+ */
+public synchronized boolean restore(JavaData aJD)
+{
+    // Get entry for Java file and class files - if Java file changed or class files missing or changed, just return
+    Entry entry = getEntries().get(aJD._file.getPath()); if(entry==null) return false;
+    if(aJD._file.getLastModTime()!=entry._srcModTime) return false;
+    WebFile cfiles[] = aJD.getClassFiles(); if(cfiles==null) return false;
+    if(cfiles.length!=entry._classCount || getModTime(cfiles)!=entry._modTime) return false;
+
+    // Restore JavaData and return true
+    aJD.restoreDependencies(entry._apiHash, entry._allHash, entry._refKeys, getJavaFiles(entry._deps),
+        getJavaFiles(entry._dependents));
+    return true;
+}
+
+/**
+ * Saves dependency info for given compiled Java files (and the files whose dependents changed with them). Entries for
+ * other files are kept from last save.
+ */
+public synchronized void save(Collection <WebFile> theFiles)
+{
+    // Get changed files: compiled files, plus their old and new dependencies (since those have changed dependents)
+    Map <String,Entry> entries = new HashMap(getEntries());
+    Set <WebFile> jfiles = new HashSet();
+    for(WebFile jfile : theFiles) { jfiles.add(jfile);
+        jfiles.addAll(JavaData.get(jfile).getDependencies());
+        Entry old = entries.get(jfile.getPath());
+        if(old!=null) jfiles.addAll(getJavaFiles(old._deps));
+    }
+
+    // Update entry for each changed project Java file (or remove, if file deleted or dependencies not set)
+    for(WebFile jfile : jfiles) { if(Project.get(jfile)!=_proj) continue;
+        JavaData jdata = JavaData.get(jfile);
+        Entry entry = jfile.getExists() && jdata.isDependenciesSet()? createEntry(jdata) : null;
+        if(entry!=null) entries.put(jfile.getPath(), entry);
+        else entries.remove(jfile.getPath());
+    }
+
+    // Write entries to file
+    try {
+        WebFile file = getFile(true);
+        file.setBytes(getBytes(entries));
+        file.save();
+    }
+    catch(Exception e) { System.err.println("JavaDataFile.save: Failed to save " + e); return; }
+    _entries = entries;
+}
+
+/**
+ * Creates an entry for given JavaData.
+ */
+private Entry createEntry(JavaData aJD)
+{
+    // Get class files (just return if missing)
+    WebFile cfiles[] = aJD.getClassFiles(); if(cfiles==null) return null;
+
+    // Create entry and set class file count, ModTime and hashes
+    Entry entry = new Entry();
+    entry._classCount = cfiles.length; entry._modTime = getModTime(cfiles);
+    entry._srcModTime = aJD._file.getLastModTime();
+    synchronized(aJD) {
+        if(!aJD._hashesSet) return null;
+        entry._apiHash = aJD._apiHash; entry._allHash = aJD._allHash;
+        entry._refKeys = aJD.getRefKeys(); if(entry._refKeys==null) return null;
+        entry._deps = getClassNames(aJD.getDependencies());
+        entry._dependents = getClassNames(aJD.getDependents());
+    }
+    return entry;
+}
+
+/**
+ * Returns the entries read from file.
+ */
+private Map <String,Entry> getEntries()
+{
+    // If already set, just return
+    if(_entries!=null) return _entries;
+
+    // Read entries from file (if file missing or bogus, use empty map)
+    WebFile file = getFile(false);
+    byte bytes[] = file!=null && file.getExists()? file.getBytes() : null;
+    try { _entries = bytes!=null? getEntries(bytes) : new HashMap(); }
+    catch(Exception e) { System.err.println("JavaDataFile.getEntries: Failed to read " + e); _entries = new HashMap(); }
+    return _entries;
+}
+
+/**
+ * Returns the bytes for given entries (strings are written once in a string table and referenced by index).
+ */
+private static byte[] getBytes(Map <String,Entry> theEntries) throws IOException
+{
+    // Get string table
+    Map <String,Integer> strings = new LinkedHashMap();
+    for(Map.Entry <String,Entry> me : theEntries.entrySet()) { Entry entry = me.getValue();
+        getStringIndex(strings, me.getKey());
+        for(String str : entry._refKeys) getStringIndex(strings, str);
+        for(String str : entry._deps) getStringIndex(strings, str);
+        for(String str : entry._dependents) getStringIndex(strings, str);
+    }
+
+    // Write header and string table
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(bytes);
+    dos.writeInt(MAGIC); dos.writeInt(VERSION);
+    dos.writeInt(strings.size());
+    for(String str : strings.keySet()) dos.writeUTF(str);
+
+    // Write entries
+    dos.writeInt(theEntries.size());
+    for(Map.Entry <String,Entry> me : theEntries.entrySet()) { Entry entry = me.getValue();
+        dos.writeInt(strings.get(me.getKey()));
+        dos.writeInt(entry._classCount); dos.writeLong(entry._modTime); dos.writeLong(entry._srcModTime);
+        dos.writeLong(entry._apiHash); dos.writeLong(entry._allHash);
+        writeStrings(dos, entry._refKeys, strings);
+        writeStrings(dos, entry._deps, strings);
+        writeStrings(dos, entry._dependents, strings);
+    }
+
+    // Return bytes
+    dos.close();
+    return bytes.toByteArray();
+}
+
+/**
+ * Returns the entries for given bytes.
+ */
+private static Map <String,Entry> getEntries(byte theBytes[]) throws IOException
+{
+    // Read header (if wrong magic number or version, return empty map)
+    DataInputStream dis = new DataInputStream(new ByteArrayInputStream(theBytes));
+    if(dis.readInt()!=MAGIC || dis.readInt()!=VERSION) return new HashMap();
+
+    // Read string table
+    String strings[] = new String[dis.readInt()];
+    for(int i=0; i<strings.length; i++) strings[i] = dis.readUTF();
+
+    // Read entries
+    int count = dis.readInt();
+    Map <String,Entry> entries = new HashMap(count*2);
+    for(int i=0; i<count; i++) { String path = strings[dis.readInt()];
+        Entry entry = new Entry();
+        entry._classCount = dis.readInt(); entry._modTime = dis.readLong(); entry._srcModTime = dis.readLong();
+        entry._apiHash = dis.readLong(); entry._allHash = dis.readLong();
+        entry._refKeys = readStrings(dis, strings);
+        entry._deps = readStrings(dis, strings);
+        entry._dependents = readStrings(dis, strings);
+        entries.put(path, entry);
+    }
+
+    // Return entries
+    return entries;
+}
+
+/** Returns the index of given string in string table (adding it if missing). */
+private static int getStringIndex(Map <String,Integer> theStrings, String aStr)
+{
+    Integer index = theStrings.get(aStr);
+    if(index==null) theStrings.put(aStr, index = theStrings.size());
+    return index;
+}
+
+/** Writes given strings as string table indexes. */
+private static void writeStrings(DataOutputStream dos, String theStrs[], Map <String,Integer> theStrings)
+    throws IOException
+{
+    dos.writeInt(theStrs.length);
+    for(String str : theStrs) dos.writeInt(theStrings.get(str));
+}
+
+/** Reads strings as string table indexes. */
+private static String[] readStrings(DataInputStream dis, String theStrings[]) throws IOException
+{
+    String strs[] = new String[dis.readInt()];
+    for(int i=0; i<strs.length; i++) strs[i] = theStrings[dis.readInt()];
+    return strs;
+}
+
+/**
+ * Returns the latest modified time of given class files.
+ */
+private static long getModTime(WebFile theFiles[])
+{
+    long time = 0; for(WebFile file : theFiles) time = Math.max(time, file.getLastModTime());
+    return time;
+}
+
+/**
+ * Returns the class names for given Java files.
+ */
+private static String[] getClassNames(Set <WebFile> theFiles)
+{
+    List <String> names = new ArrayList(theFiles.size());
+    synchronized(theFiles) {
+        for(WebFile file : theFiles) { Project proj = Project.get(file);
+            if(proj!=null) names.add(proj.getClassName(file)); }
+    }
+    return names.toArray(new String[names.size()]);
+}
+
+/**
+ * Returns the Java files for given class names.
+ */
+private List <WebFile> getJavaFiles(String theNames[])
+{
+    ProjectSet projSet = _proj.getRootProject().getProjectSet();
+    List <WebFile> files = new ArrayList(theNames.length);
+    for(String name : theNames) { WebFile file = projSet.getJavaFile(name);
+        if(file!=null) files.add(file); }
+    return files;
+}
+
+/**
+ * Returns the ref decls for given ref keys, or null if any key doesn't resolve.
+ */
+static Set <JavaDecl> getRefs(Project aProj, String theKeys[])
+{
+    Set <JavaDecl> refs = new HashSet(theKeys.length*2);
+    for(String key : theKeys) { JavaDecl ref;
+        try { ref = getRef(aProj, key); }
+        catch(Throwable t) { System.err.printf("JavaDataFile.getRefs failed to resolve %s: %s\n", key, t); ref = null; }
+        if(ref==null) return null;
+        refs.add(ref);
+    }
+    return refs;
+}
+
+/**
+ * Returns a key string for given ref decl (Class, Field, Method or Constructor), or null if not supported.
+ */
+static String getRefKey(JavaDecl aDecl)
+{
+    // Handle Class: C<ClassName>
+    if(aDecl.isClass()) return "C" + aDecl.getName();
+
+    // Get class name (just return null if not found)
+    String cname = aDecl.getClassName(); if(cname==null) return null;
+
+    // Handle Field: F<ClassName> <Name>
+    if(aDecl.isField()) return "F" + cname + ' ' + aDecl.getName();
+
+    // Handle Method and Constructor: M<ClassName> <Id> and K<ClassName> <Id> (id has full erased param type
+    // descriptors, with array dimensions - see JavaKitUtils.getId)
+    if(aDecl.isMethod()) return "M" + cname + ' ' + aDecl.getId();
+    if(aDecl.isConstructor()) return "K" + cname + ' ' + aDecl.getId();
+
+    // Return null since unsupported
+    return null;
+}
+
+/**
+ * Returns the ref decl for given key string (from getRefKey).
+ */
+static JavaDecl getRef(Project aProj, String aKey)
+{
+    // Handle Class
+    char type = aKey.charAt(0);
+    if(type=='C') return aProj.getJavaDecl(aKey.substring(1));
+
+    // Get class decl (just return if not found)
+    int ind = aKey.indexOf(' '); if(ind<0) return null;
+    JavaDeclClass cdecl = aProj.getClassDecl(aKey.substring(1, ind)); if(cdecl==null) return null;
+
+    // Handle Field, Method and Constructor
+    String str = aKey.substring(ind+1);
+    if(type=='F') return cdecl.getFieldDeep(str);
+    if(type=='M') return cdecl.getMethodDecl(str);
+    if(type=='K') return cdecl.getConstructorDecl(str);
+    return null;
+}
+
+/**
+ * Returns the JavaDataFile for given project.
+ */
+public static synchronized JavaDataFile get(Project aProj)
+{
+    WebSite site = aProj.getSite();
+    JavaDataFile jdf = (JavaDataFile)site.getProp(JavaDataFile.class.getName());
+    if(jdf==null) site.setProp(JavaDataFile.class.getName(), jdf = new JavaDataFile(aProj));
+    return jdf;
+}
+
+/**
+ * An entry for a Java file.
+ */
+private static class Entry {
+
+    // The number of class files, latest class file modified time and Java file modified time
+    int       _classCount; long _modTime, _srcModTime;
+
+    // The class file API and all members hashes
+    long      _apiHash, _allHash;
+
+    // The ref keys and dependency and dependent class names
+    String    _refKeys[], _deps[], _dependents[];
+}
+
+}
@@ -103,6 +103,15 @@ public JavaDecl(JavaDeclOwner anOwner, JavaDecl aPar, Object anObj, String anId)
     else throw new RuntimeException("JavaDecl.init: Unsupported type " + anObj);
 }
 
+/**
+ * Creates a new JavaDecl for given type, name and id (for decls read from class files - see ClassFileDecls).
+ */
+JavaDecl(JavaDeclOwner anOwner, JavaDecl aPar, DeclType aType, String aName, String anId)
+{
+    _owner = anOwner; _par = aPar; _type = aType;
+    _name = _sname = aName; _id = anId;
+}
+
 /**
  * Initialize types (Class, ParameterizedType, TypeVariable).
  */
@@ -118,7 +127,7 @@ private void initType(Type aType)
         for(int i=0,iMax=typArgs.length;i<iMax;i++) _paramTypes[i] = _owner.getTypeDecl(typArgs[i]);
         _evalType = this;
         _sname = _par.getSimpleName() + '<' + StringUtils.join(getParamTypeSimpleNames(),",") + '>';
-        _owner._decls.put(_id, this);
+        _owner.putDecl(_id, this);
     }
     
     // Handle TypeVariable
@@ -127,7 +136,7 @@ private void initType(Type aType)
         Type etypes[] = tv.getBounds();
         Class ecls = JavaKitUtils.getClass(etypes[0]);
         _evalType = getClassDecl(ecls);
-        _owner._decls.put(_id, this);
+        _owner.putDecl(_id, this);
     }
 }
 
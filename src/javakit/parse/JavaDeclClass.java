@@ -18,29 +18,45 @@ public class JavaDeclClass extends JavaDecl {
     boolean               _enum, _interface, _primitive;
     
     // The array of interfaces
-    JavaDeclClass         _interfaces[];
+    volatile JavaDeclClass  _interfaces[];
     
     // The field decls
-    List <JavaDecl>       _fdecls;
-
-    // The method decls
-    List <JavaDecl>       _mdecls = new ArrayList();
-
-    // The constructor decls
-    List <JavaDecl>       _cdecls = new ArrayList();
-
-    // The inner class decls
-    List <JavaDeclClass>  _icdecls = new ArrayList();
+    volatile List <JavaDecl>  _fdecls;
+    
+    // Whether member decls are loaded (and whether they are loading)
+    volatile boolean      _declsLoaded; boolean _declsLoading;
     
-    // The type var decls
-    List <JavaDecl>       _tvdecls = new ArrayList();
+    // The method decls, constructor decls, inner class decls and type var decls (these lists and the indexes below are
+    // copy-on-write once decls are loaded, so readers outside owner create lock never see them change)
+    volatile List <JavaDecl>       _mdecls = new ArrayList(), _cdecls = new ArrayList();
+    volatile List <JavaDeclClass>  _icdecls = new ArrayList();
+    volatile List <JavaDecl>       _tvdecls = new ArrayList();
     
     // A cached list of all decls
-    List <JavaDecl>       _allDecls;
+    volatile List <JavaDecl>  _allDecls;
+    
+    // Indexes of fields by name, methods by name and id, constructors by id and inner classes by simple name
+    volatile Map <String,JavaDecl>        _fieldsByName = new HashMap();
+    volatile Map <String,List<JavaDecl>>  _methodsByName = new HashMap();
+    volatile Map <String,JavaDecl>        _methodsById = new HashMap(), _constrsById = new HashMap();
+    volatile Map <String,JavaDeclClass>   _classesByName = new HashMap();
+    
+    // The classes and interfaces searched for inherited methods (in resolution order) and their methods by name
+    volatile List <JavaDeclClass>  _allTypes;
+    Map <String,List<JavaDecl>>  _allMethods;
+    
+    // Whether name indexes are used for lookups (can be turned off to compare with linear search)
+    static boolean        _indexed = !"false".equals(System.getProperty("snapcode.declIndex"));
     
     // The Array item type (if Array)
     JavaDecl              _arrayItemType;
     
+    // Whether decls are read from class file instead of Class (see ClassFileDecls)
+    boolean               _classFile;
+    
+    // Constants for updateDeclsImpl changes: Decls changed, loaded class decls or interfaces changed
+    private static final int  DECLS_CHANGED = 1, TYPES_CHANGED = 2;
+    
 /**
  * Creates a new JavaDeclClass for given owner, parent and Class.
  */
@@ -56,7 +72,7 @@ public JavaDeclClass(JavaDeclOwner anOwner, JavaDecl aPar, Class aClass)
     _evalType = this; _sdecl = null; // Set by owner
         
     // Add to Owner.Decls map
-    _owner._decls.put(_id, this);
+    _owner.putDecl(_id, this);
         
     // Get type super type and set in decl
     AnnotatedType superAType = aClass.getAnnotatedSuperclass();
@@ -71,18 +87,74 @@ public JavaDeclClass(JavaDeclOwner anOwner, JavaDecl aPar, Class aClass)
         
         // Set ArrayItemType and add alternate name to Owner.Decls map
         _arrayItemType = getJavaDecl(aClass.getComponentType());
-        _owner._decls.put(aClass.getName(), this);
+        _owner.putDecl(aClass.getName(), this);
         
         // Set Decls from Object[] for efficiency
-        if(aClass!=Object[].class) {
-            JavaDeclClass aryDecl = (JavaDeclClass)getJavaDecl(Object[].class);
-            _fdecls = aryDecl.getFields(); _interfaces = aryDecl._interfaces;
-            _mdecls = aryDecl._mdecls; _cdecls = aryDecl._cdecls; _icdecls = aryDecl._icdecls;
-            _tvdecls = aryDecl._tvdecls; _allDecls = aryDecl.getAllDecls();
-        }
+        if(aClass!=Object[].class)
+            setArrayDecls();
+    }
+}
+
+/**
+ * Creates a new JavaDeclClass for given owner, parent and class file (without loading class - see ClassFileDecls).
+ */
+JavaDeclClass(JavaDeclOwner anOwner, JavaDecl aPar, ClassFileData aCFD)
+{
+    // Do normal version
+    super(anOwner, aPar, DeclType.Class, aCFD.getClassName(), aCFD.getClassName());
+    
+    // Set class attributes
+    _mods = aCFD.getModifiers(); _sname = aCFD.getSimpleName(); _classFile = true;
+    _interface = (aCFD.accessFlags & ClassFileData.ACC_INTERFACE)!=0;
+    _enum = (aCFD.accessFlags & ClassFileData.ACC_ENUM)!=0 && "java.lang.Enum".equals(aCFD.getSuperClassName());
+    _evalType = this; _sdecl = null;
+    
+    // Add to Owner.Decls map
+    _owner.putDecl(_id, this);
+    
+    // Get type super type (from generic Signature, if available) and set in decl (interfaces have no super type)
+    if(!_interface && aCFD.getSuperClassName()!=null) {
+        _stype = new ClassFileDecls(this, aCFD).getSuperType();
+        _sdecl = _scdecl = _stype.getClassType();
     }
 }
 
+/**
+ * Creates a new JavaDeclClass for owner and array item type (without loading class - see ClassFileDecls).
+ */
+JavaDeclClass(JavaDeclOwner anOwner, JavaDeclClass anItemType)
+{
+    // Do normal version
+    super(anOwner, null, DeclType.Class, anItemType.getName() + "[]", anItemType.getId() + "[]");
+    
+    // Set class attributes (as Class.getModifiers() does for arrays)
+    _mods = anItemType.getModifiers() & (Modifier.PUBLIC | Modifier.PRIVATE | Modifier.PROTECTED) |
+        Modifier.FINAL | Modifier.ABSTRACT;
+    _sname = anItemType.getSimpleName() + "[]"; _classFile = true;
+    _evalType = this; _sdecl = null;
+    
+    // Set ArrayItemType and add to Owner.Decls map (with alternate name)
+    _arrayItemType = anItemType;
+    _owner.putDecl(_id, this); _owner.putDecl(ClassFileDecls.getArrayClassName(anItemType), this);
+    
+    // Set Decls from Object[] for efficiency
+    setArrayDecls();
+}
+
+/**
+ * Sets decls from Object[] (all arrays share them).
+ */
+private void setArrayDecls()
+{
+    JavaDeclClass aryDecl = (JavaDeclClass)getJavaDecl(Object[].class);
+    _fdecls = aryDecl.getFields(); _interfaces = aryDecl._interfaces;
+    _mdecls = aryDecl._mdecls; _cdecls = aryDecl._cdecls; _icdecls = aryDecl._icdecls;
+    _tvdecls = aryDecl._tvdecls; _allDecls = aryDecl.getAllDecls();
+    _fieldsByName = aryDecl._fieldsByName; _methodsByName = aryDecl._methodsByName;
+    _methodsById = aryDecl._methodsById; _constrsById = aryDecl._constrsById;
+    _classesByName = aryDecl._classesByName; _declsLoaded = true;
+}
+
 /**
  * Returns whether is a class reference.
  */
@@ -238,30 +310,87 @@ public JavaDecl getResolvedType(JavaDecl aDecl)
 }
 
 /**
- * Updates JavaDecls.
+ * Updates JavaDecls (under owner create lock, so threads don't update or load decls at the same time).
  * 
  * @return whether the decls changed since last update.
  */
 public boolean updateDecls()
+{
+    int changes = _owner.createLocked(() -> updateDeclsImpl());
+    if((changes & TYPES_CHANGED)!=0) _owner.classDeclsChanged(this);
+    return (changes & DECLS_CHANGED)!=0;
+}
+
+/**
+ * Loads JavaDecls the first time (under owner create lock, so only one thread loads them and others wait).
+ */
+private void loadDecls()
+{
+    int changes = _owner.createLocked(() -> {
+        if(_declsLoaded || _declsLoading) return 0; _declsLoading = true;
+        try { int chngs = updateDeclsImpl(); _declsLoaded = true; return chngs; }
+        finally { _declsLoading = false; }
+    });
+    if((changes & TYPES_CHANGED)!=0) _owner.classDeclsChanged(this);
+}
+
+/**
+ * Updates JavaDecls. Returns DECLS_CHANGED if decls changed and TYPES_CHANGED if a loaded class changed decls or
+ * interfaces (caller calls owner classDeclsChanged outside create lock, so owner lock is never taken under it).
+ */
+private int updateDeclsImpl()
 {
     // If first time, set decls
-    if(_fdecls==null) _fdecls = new ArrayList();
+    boolean first = _fdecls==null;
+    if(first) _fdecls = new ArrayList();
     
+    // Create set for removed decls and get interfaces and added decls (from class file or Class)
+    JavaDeclClass oldInterfaces[] = _interfaces;
+    HashSet <JavaDecl> removedDecls = new HashSet(getAllDecls());
+    int addedDecls = _classFile? ClassFileDecls.updateDecls(this, removedDecls) : updateDeclsForClass(removedDecls);
+    if(addedDecls<0) return 0;
+    boolean interfacesChanged = oldInterfaces!=null && !Arrays.equals(oldInterfaces, _interfaces);
+    
+    // Array.length: Handle this special for Object[]
+    if(isArray() && getField("length")==null) {
+        Field lenField = getLenField();
+        JavaDecl decl = new JavaDecl(_owner,this,lenField); addDecl(decl); addedDecls++;
+    }
+    
+    // Remove unused decls
+    for(JavaDecl jd : removedDecls) removeDecl(jd);
+    
+    // Return whether decls were changed
+    // (Inherited member views and method resolutions only need update if a loaded class changed - first load can't
+    // be in one yet)
+    boolean changed = addedDecls>0 || removedDecls.size()>0; if(changed) _allDecls = null;
+    int changes = changed? DECLS_CHANGED : 0;
+    if(!first && (changed || interfacesChanged)) changes |= TYPES_CHANGED;
+    return changes;
+}
+
+/**
+ * Updates interfaces and adds JavaDecls from Class (removing existing decls from given set).
+ * 
+ * @return the number of decls added (or -1 if class couldn't be loaded or read).
+ */
+private int updateDeclsForClass(Set <JavaDecl> removedDecls)
+{
     // Get class
     Class cls = getEvalClass();
     String cname = getClassName();
     if(cls==null) {
-        System.err.println("JavaDeclClass: Failed to load class: " + cname); return false; }
+        System.err.println("JavaDeclClass: Failed to load class: " + cname); return -1; }
         
     // Get interfaces
     Class interfaces[] = cls.getInterfaces();
-    _interfaces = new JavaDeclClass[interfaces.length];
+    JavaDeclClass infcs[] = new JavaDeclClass[interfaces.length];
     for(int i=0,iMax=interfaces.length;i<iMax;i++) { Class infc = interfaces[i];
-        _interfaces[i] = getClassDecl(infc); }
+        infcs[i] = getClassDecl(infc); }
+    _interfaces = infcs;
     
-    // Create set for added/removed decls
+    // Create count for added decls
     int addedDecls = 0;
-    HashSet <JavaDecl> removedDecls = new HashSet(getAllDecls());
 
     // Make sure class decl is up to date
     if(getModifiers()!=cls.getModifiers())
@@ -269,7 +398,7 @@ public boolean updateDecls()
         
     // TypeVariables: Add JavaDecl for each Type parameter
     TypeVariable tvars[]; try { tvars = cls.getTypeParameters(); }
-    catch(Throwable e) { System.err.println(e + " in " + cname); return false; }
+    catch(Throwable e) { System.err.println(e + " in " + cname); return -1; }
     for(TypeVariable tv : tvars) { String name = tv.getName();
         JavaDecl decl = getTypeVar(name);
         if(decl==null) { decl = new JavaDecl(_owner,this,tv); addDecl(decl); addedDecls++; }
@@ -278,7 +407,7 @@ public boolean updateDecls()
     
     // Inner Classes: Add JavaDecl for each inner class
     Class iclss[]; try { iclss = cls.getDeclaredClasses(); }
-    catch(Throwable e) { System.err.println(e + " in " + cname); return false; }
+    catch(Throwable e) { System.err.println(e + " in " + cname); return -1; }
     for(Class icls : iclss) {   //if(icls.isSynthetic()) continue;
         JavaDecl decl = getClassDecl(icls.getSimpleName());
         if(decl==null) { decl = getJavaDecl(icls); addDecl(decl); addedDecls++; }
@@ -287,7 +416,7 @@ public boolean updateDecls()
     
     // Fields: add JavaDecl for each declared field - also make sure field type is in refs
     Field fields[]; try { fields = cls.getDeclaredFields(); }
-    catch(Throwable e) { System.err.println(e + " in " + cname); return false; }
+    catch(Throwable e) { System.err.println(e + " in " + cname); return -1; }
     for(Field field : fields) {
         JavaDecl decl = getField(field);
         if(decl==null) { decl = new JavaDecl(_owner,this,field); addDecl(decl); addedDecls++; }
@@ -296,7 +425,7 @@ public boolean updateDecls()
     
     // Methods: Add JavaDecl for each declared method - also make sure return/parameter types are in refs
     Method methods[]; try { methods = cls.getDeclaredMethods(); }
-    catch(Throwable e) { System.err.println(e + " in " + cname); return false; }
+    catch(Throwable e) { System.err.println(e + " in " + cname); return -1; }
     for(Method meth : methods) {
         if(meth.isSynthetic()) continue;
         JavaDecl decl = getMethodDecl(meth);
@@ -306,7 +435,7 @@ public boolean updateDecls()
     
     // Constructors: Add JavaDecl for each constructor - also make sure parameter types are in refs
     Constructor constrs[]; try { constrs = cls.getDeclaredConstructors(); }
-    catch(Throwable e) { System.err.println(e + " in " + cname); return false; }
+    catch(Throwable e) { System.err.println(e + " in " + cname); return -1; }
     for(Constructor constr : constrs) {
         if(constr.isSynthetic()) continue;
         JavaDecl decl = getConstructorDecl(constr);
@@ -314,18 +443,8 @@ public boolean updateDecls()
         else removedDecls.remove(decl);
     }
     
-    // Array.length: Handle this special for Object[]
-    if(isArray() && getField("length")==null) {
-        Field lenField = getLenField();
-        JavaDecl decl = new JavaDecl(_owner,this,lenField); addDecl(decl); addedDecls++;
-    }
-    
-    // Remove unused decls
-    for(JavaDecl jd : removedDecls) removeDecl(jd);
-    
-    // Return whether decls were changed
-    boolean changed = addedDecls>0 || removedDecls.size()>0; if(changed) _allDecls = null;
-    return changed;
+    // Return number of added decls
+    return addedDecls;
 }
 
 /**
@@ -336,13 +455,73 @@ public JavaDeclClass[] getInterfaces()  { getFields(); return _interfaces; }
 /**
  * Returns the fields.
  */
-public List <JavaDecl> getFields()  { if(_fdecls==null) updateDecls(); return _fdecls; }
+public List <JavaDecl> getFields()  { if(!_declsLoaded) loadDecls(); return _fdecls; }
 
 /**
  * Returns the methods.
  */
 public List <JavaDecl> getMethods()  { getFields(); return _mdecls; }
 
+/**
+ * Returns the methods for given name.
+ */
+public List <JavaDecl> getMethods(String aName)
+{
+    List <JavaDecl> mdecls = getMethods(); if(!_indexed) return mdecls;
+    List <JavaDecl> named = _methodsByName.get(aName);
+    return named!=null? named : Collections.EMPTY_LIST;
+}
+
+/**
+ * Returns the methods for given name declared in this class, superclasses and interfaces (in resolution order:
+ * superclass chain, then interfaces of each, then Object for interfaces). Cached until any of these change decls.
+ */
+public synchronized List <JavaDecl> getMethodsAll(String aName)
+{
+    // Get types (clears cached methods if types were cleared) and cached methods for name
+    List <JavaDeclClass> types = getAllTypes();
+    List <JavaDecl> mdecls = _allMethods.get(aName); if(mdecls!=null) return mdecls;
+    
+    // Get methods for name from types, cache and return
+    mdecls = Collections.EMPTY_LIST;
+    for(JavaDeclClass type : types) { List <JavaDecl> tmdecls = type.getMethods(aName);
+        if(tmdecls.size()>0) { if(mdecls==Collections.EMPTY_LIST) mdecls = new ArrayList(); mdecls.addAll(tmdecls); } }
+    _allMethods.put(aName, mdecls);
+    return mdecls;
+}
+
+/**
+ * Returns this class, superclasses and interfaces in method resolution order (cached until any of these change decls).
+ */
+public synchronized List <JavaDeclClass> getAllTypes()
+{
+    // If already set, just return
+    List <JavaDeclClass> types = _allTypes; if(types!=null) return types;
+    
+    // Get types, clear cached methods and register as subtype of types (so owner clears types when they change)
+    types = new ArrayList(); addAllTypes(types);
+    _allMethods = new HashMap();
+    _owner.addSubtype(this, types);
+    return _allTypes = types;
+}
+
+/**
+ * Clears the cached inherited types and methods (called by owner when this class or a supertype changes decls).
+ */
+void clearAllTypes()  { _allTypes = null; }
+
+/**
+ * Adds this class, superclasses and interfaces to given list in order of getCompatibleMethodAll() search.
+ */
+private void addAllTypes(List <JavaDeclClass> theTypes)
+{
+    for(JavaDeclClass cls=this;cls!=null;cls=cls.getSuper()) if(!theTypes.contains(cls)) theTypes.add(cls);
+    for(JavaDeclClass cls=this;cls!=null;cls=cls.getSuper())
+        for(JavaDeclClass infc : cls.getInterfaces()) infc.addAllTypes(theTypes);
+    if(isInterface()) { JavaDeclClass objDecl = getClassDecl(Object.class);
+        if(!theTypes.contains(objDecl)) theTypes.add(objDecl); }
+}
+
 /**
  * Returns the Constructors.
  */
@@ -391,7 +570,7 @@ public JavaDecl getField(Field aField)
  */
 public JavaDecl getField(String aName)
 {
-    List <JavaDecl> fdecls = getFields();
+    List <JavaDecl> fdecls = getFields(); if(_indexed) return _fieldsByName.get(aName);
     for(JavaDecl jd : fdecls) if(jd.getName().equals(aName)) return jd;
     return null;
 }
@@ -423,7 +602,7 @@ public JavaDecl getMethodDecl(Method aMeth)
  */
 public JavaDecl getMethodDecl(String anId)
 {
-    List <JavaDecl> mdecls = getMethods();
+    List <JavaDecl> mdecls = getMethods(); if(_indexed) return _methodsById.get(anId);
     for(JavaDecl jd : mdecls) if(jd.getId().equals(anId)) return jd;
     return null;
 }
@@ -433,7 +612,7 @@ public JavaDecl getMethodDecl(String anId)
  */
 public JavaDecl getMethodDecl(String aName, JavaDecl theTypes[])
 {
-    List <JavaDecl> mdecls = getMethods();
+    List <JavaDecl> mdecls = getMethods(aName);
     for(JavaDecl jd : mdecls)
         if(jd.getName().equals(aName) && isClassTypesEqual(jd.getParamTypes(), theTypes))
             return jd;
@@ -523,7 +702,7 @@ public JavaDecl getCompatibleConstructor(JavaDecl theTypes[])
  */
 public JavaDecl getCompatibleMethod(String aName, JavaDecl theTypes[])
 {
-    List <JavaDecl> mdecls = getMethods();
+    List <JavaDecl> mdecls = getMethods(aName);
     JavaDecl meth = null; int rating = 0;
     for(JavaDecl md : mdecls)
         if(md.getName().equals(aName)) {
@@ -552,6 +731,9 @@ public JavaDecl getCompatibleMethodDeep(String aName, JavaDecl theTypes[])
  */
 public JavaDecl getCompatibleMethodAll(String aName, JavaDecl theTypes[])
 {
+    // If indexed, get from owner resolution cache (which calls getCompatibleMethodAllIndexed)
+    if(_indexed) return _owner.getCompatibleMethodAll(this, aName, theTypes);
+    
     // Search this class and superclasses for compatible method
     JavaDecl decl = getCompatibleMethodDeep(aName, theTypes);
     if(decl!=null)
@@ -576,13 +758,28 @@ public JavaDecl getCompatibleMethodAll(String aName, JavaDecl theTypes[])
     return null;
 }
 
+/**
+ * Returns a compatibile method for given name and param types from inherited methods for name (first class or
+ * interface with compatible method wins).
+ */
+JavaDecl getCompatibleMethodAllIndexed(String aName, JavaDecl theTypes[])
+{
+    JavaDecl meth = null; int rating = 0;
+    for(JavaDecl md : getMethodsAll(aName)) {
+        if(meth!=null && md._par!=meth._par) break;
+        int rtg = getMethodRating(md, theTypes);
+        if(rtg>rating) { meth = md; rating = rtg; }
+    }
+    return meth;
+}
+
 /**
  * Returns a compatibile method for given name and param types.
  */
 public List <JavaDecl> getCompatibleMethods(String aName, JavaDecl theTypes[])
 {
     List <JavaDecl> matches = Collections.EMPTY_LIST;
-    List <JavaDecl> mdecls = getMethods();
+    List <JavaDecl> mdecls = getMethods(aName);
     for(JavaDecl md : mdecls)
         if(md.getName().equals(aName)) {
             int rtg = getMethodRating(md, theTypes);
@@ -755,7 +952,7 @@ public JavaDecl getConstructorDecl(Constructor aConstr)
  */
 public JavaDecl getConstructorDecl(String anId)
 {
-    List <JavaDecl> cdecls = getConstructors();
+    List <JavaDecl> cdecls = getConstructors(); if(_indexed) return _constrsById.get(anId);
     for(JavaDecl jd : cdecls) if(jd.getId().equals(anId)) return jd;
     return null;
 }
@@ -787,7 +984,7 @@ public JavaDecl getConstructorDeclDeep(JavaDecl theTypes[])
  */
 public JavaDeclClass getClassDecl(String aName)
 {
-    List <JavaDeclClass> icdecls = getClasses();
+    List <JavaDeclClass> icdecls = getClasses(); if(_indexed) return _classesByName.get(aName);
     for(JavaDeclClass jd : icdecls)
         if(jd.getSimpleName().equals(aName))
                 return jd;
@@ -829,37 +1026,70 @@ public int getTypeVarIndex(String aName)
 }
 
 /**
- * Adds a decl.
+ * Adds a decl (to copies of lists and indexes, if decls are loaded).
  */
 public void addDecl(JavaDecl aDecl)
 {
-    JavaDecl.DeclType type = aDecl.getType();
+    JavaDecl.DeclType type = aDecl.getType(); boolean cow = _declsLoaded;
     switch(type) {
-        case Field: _fdecls.add(aDecl); break;
-        case Method: _mdecls.add(aDecl); break;
-        case Constructor: _cdecls.add(aDecl); break;
-        case Class: _icdecls.add((JavaDeclClass)aDecl); break;
-        case TypeVar: _tvdecls.add(aDecl); break;
+        case Field: { Map <String,JavaDecl> byName = copy(_fieldsByName, cow); byName.put(aDecl.getName(), aDecl);
+            _fdecls = add(_fdecls, aDecl, cow); _fieldsByName = byName; break; }
+        case Method: { Map <String,JavaDecl> byId = copy(_methodsById, cow); byId.put(aDecl.getId(), aDecl);
+            Map <String,List<JavaDecl>> byName = copy(_methodsByName, cow);
+            List <JavaDecl> named = byName.get(aDecl.getName());
+            byName.put(aDecl.getName(), add(named!=null? named : new ArrayList(), aDecl, cow));
+            _mdecls = add(_mdecls, aDecl, cow); _methodsById = byId; _methodsByName = byName; break; }
+        case Constructor: { Map <String,JavaDecl> byId = copy(_constrsById, cow); byId.put(aDecl.getId(), aDecl);
+            _cdecls = add(_cdecls, aDecl, cow); _constrsById = byId; break; }
+        case Class: { Map <String,JavaDeclClass> byName = copy(_classesByName, cow);
+            byName.put(aDecl.getSimpleName(), (JavaDeclClass)aDecl);
+            _icdecls = add(_icdecls, (JavaDeclClass)aDecl, cow); _classesByName = byName; break; }
+        case TypeVar: _tvdecls = add(_tvdecls, aDecl, cow); break;
         default: throw new RuntimeException("JavaDeclHpr.addDecl: Invalid type " + type);
     }
 }
 
 /**
- * Removes a decl.
+ * Removes a decl (from copies of lists and indexes, if decls are loaded).
  */
 public void removeDecl(JavaDecl aDecl)
 {
-    JavaDecl.DeclType type = aDecl.getType();
+    JavaDecl.DeclType type = aDecl.getType(); boolean cow = _declsLoaded;
     switch(type) {
-        case Field: _fdecls.remove(aDecl); break;
-        case Method: _mdecls.remove(aDecl); break;
-        case Constructor: _cdecls.remove(aDecl); break;
-        case Class: _icdecls.remove(aDecl); break;
-        case TypeVar: _tvdecls.remove(aDecl); break;
+        case Field: { Map <String,JavaDecl> byName = copy(_fieldsByName, cow); byName.remove(aDecl.getName(), aDecl);
+            _fdecls = remove(_fdecls, aDecl, cow); _fieldsByName = byName; break; }
+        case Method: { Map <String,JavaDecl> byId = copy(_methodsById, cow); byId.remove(aDecl.getId(), aDecl);
+            Map <String,List<JavaDecl>> byName = copy(_methodsByName, cow);
+            List <JavaDecl> named = byName.get(aDecl.getName());
+            if(named!=null) named = remove(named, aDecl, cow);
+            if(named!=null && named.size()==0) byName.remove(aDecl.getName());
+            else if(named!=null) byName.put(aDecl.getName(), named);
+            _mdecls = remove(_mdecls, aDecl, cow); _methodsById = byId; _methodsByName = byName; break; }
+        case Constructor: { Map <String,JavaDecl> byId = copy(_constrsById, cow); byId.remove(aDecl.getId(), aDecl);
+            _cdecls = remove(_cdecls, aDecl, cow); _constrsById = byId; break; }
+        case Class: { Map <String,JavaDeclClass> byName = copy(_classesByName, cow);
+            byName.remove(aDecl.getSimpleName(), aDecl);
+            _icdecls = remove(_icdecls, aDecl, cow); _classesByName = byName; break; }
+        case TypeVar: _tvdecls = remove(_tvdecls, aDecl, cow); break;
         default: throw new RuntimeException("JavaDeclHpr.removeDecl: Invalid type " + type);
     }
 }
 
+/** Adds item to given list (or to a copy if requested) and returns list. */
+private static <T> List <T> add(List <T> aList, T anItem, boolean doCopy)
+{
+    List <T> list = doCopy? new ArrayList(aList) : aList; list.add(anItem); return list;
+}
+
+/** Removes item from given list (or from a copy if requested) and returns list. */
+private static <T> List <T> remove(List <T> aList, Object anItem, boolean doCopy)
+{
+    List <T> list = doCopy? new ArrayList(aList) : aList; list.remove(anItem); return list;
+}
+
+/** Returns given map (or a copy if requested). */
+private static <K,V> Map <K,V> copy(Map <K,V> aMap, boolean doCopy)  { return doCopy? new HashMap(aMap) : aMap; }
+
 /**
  * Standard toString implementation.
  */
@@ -1,6 +1,10 @@
 package javakit.parse;
+import java.io.*;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import snap.util.ClassUtils;
 
 /**
@@ -8,8 +12,35 @@ import snap.util.ClassUtils;
  */
 public abstract class JavaDeclOwner {
 
-    // A map of class/package names to JavaDecls to provide JavaDecls for project
-    Map <String,JavaDecl>   _decls = new HashMap();
+    // A map of class/package names to JavaDecls to provide JavaDecls for project (concurrent, for lock-free lookups)
+    Map <String,JavaDecl>   _decls = new ConcurrentHashMap();
+    
+    // The lock for creating decls and loading class members, and the decls created under lock (published to decls
+    // map when outermost creation completes, so other threads never see partially initialized decls)
+    ReentrantLock           _createLock = new ReentrantLock();
+    Map <String,JavaDecl>   _pending = new HashMap();
+    int                     _createDepth;
+    
+    // The cached compatible method resolutions (receiver class, name and arg types to method, in access order so
+    // least recently used are removed when full) and the cached keys that depend on each class (receiver and arg
+    // type supertypes)
+    Map <MethodKey,JavaDecl>             _methods = new LinkedHashMap(16, .75f, true) {
+        protected boolean removeEldestEntry(Map.Entry anEntry)  {
+            if(size()<=METHODS_MAX) return false;
+            removeMethodDeps((MethodKey)anEntry.getKey(), null); return true; }};
+    Map <JavaDeclClass,Set<MethodKey>>   _methodDeps = new HashMap();
+    
+    // The classes with cached inherited types for each supertype
+    Map <JavaDeclClass,Set<JavaDeclClass>>  _subtypes = new HashMap();
+    
+    // The number of class decl changes (so resolutions that raced with a change aren't cached)
+    int                     _changeCount;
+    
+    // The maximum number of cached method resolutions (least recently used are removed when reached)
+    static final int        METHODS_MAX = 100000;
+    
+    // Whether class decls are read from class files instead of loaded classes (see ClassFileDecls)
+    static boolean          _readClassFiles = "true".equals(System.getProperty("snapcode.declClassFiles"));
     
 /**
  * Returns a JavaDecl for object.
@@ -20,7 +51,11 @@ public JavaDecl getJavaDecl(Object anObj)
     if(anObj instanceof String) { String id = (String)anObj;
     
         // If decl exists for name, just return
-        JavaDecl jd = _decls.get(id); if(jd!=null) return jd;
+        JavaDecl jd = getDecl(id); if(jd!=null) return jd;
+        
+        // If reading class files, forward to getClassDeclForName() (doesn't load class)
+        if(_readClassFiles)
+            return getClassDeclForName(id);
         
         // If class exists, forward to getClassDecl()
         Class cls = getClass(id);
@@ -86,13 +121,11 @@ public JavaDeclClass getJavaDeclClass(Object anObj)
 public JavaDecl getTypeDecl(Type aType)
 {
     String id = JavaKitUtils.getId(aType);
-    JavaDecl decl = _decls.get(id); if(decl!=null) return decl;
+    JavaDecl decl = getDecl(id); if(decl!=null) return decl;
 
     // Handle ParameterizedType
-    if(aType instanceof ParameterizedType) {
-        decl = new JavaDecl(this, null, aType);
-        return decl;
-    }
+    if(aType instanceof ParameterizedType)
+        return computeIfAbsent(id, () -> new JavaDecl(this, null, aType));
         
     // Handle TypeVariable
     if(aType instanceof TypeVariable) { TypeVariable tv = (TypeVariable)aType; String name = tv.getName();
@@ -114,12 +147,10 @@ private JavaDeclClass getClassDecl(Class aClass)
 {
     // Lookup class decl by name and return if already set
     String cname = aClass.getName();
-    JavaDeclClass decl = (JavaDeclClass)_decls.get(cname); if(decl!=null) return decl;
+    JavaDeclClass decl = (JavaDeclClass)getDecl(cname); if(decl!=null) return decl;
     
-    // Create decl and return
-    JavaDecl parDecl = getParentDecl(aClass);
-    decl = new JavaDeclClass(this, parDecl, aClass);
-    return decl;
+    // Create decl (exactly once) and return
+    return computeIfAbsent(cname, () -> new JavaDeclClass(this, getParentDecl(aClass), aClass));
 }
 
 /**
@@ -140,15 +171,94 @@ private JavaDecl getParentDecl(Class aClass)
     return null;
 }
 
+/**
+ * Returns a class decl for given class name, read from class file (without loading class), or from Class if class file
+ * isn't found. Array names ("String[]") return decl for array of item class decl.
+ */
+protected JavaDeclClass getClassDeclForName(String aName)
+{
+    // Lookup class decl by name and return if already set
+    JavaDecl decl = getDecl(aName); if(decl instanceof JavaDeclClass) return (JavaDeclClass)decl;
+    
+    // Handle primitive: Get from Class
+    Class pcls = ClassFileDecls.getPrimitiveClass(aName);
+    if(pcls!=null)
+        return getClassDecl(pcls);
+    
+    // Handle array: Get item decl and create array decl (exactly once)
+    if(aName.endsWith("[]")) {
+        JavaDeclClass idecl = getClassDeclForName(aName.substring(0, aName.length()-2)); if(idecl==null) return null;
+        return computeIfAbsent(idecl.getId() + "[]", () -> new JavaDeclClass(this, idecl));
+    }
+    
+    // Read class file and create decl (exactly once)
+    ClassFileData cfd = getClassFileData(aName);
+    if(cfd!=null)
+        return computeIfAbsent(aName, () -> new JavaDeclClass(this, getParentDecl(cfd), cfd));
+    
+    // Otherwise, get decl from Class
+    Class cls = getClass(aName);
+    return cls!=null? getClassDecl(cls) : null;
+}
+
+/**
+ * Returns the parent decl for a class file.
+ */
+private JavaDecl getParentDecl(ClassFileData aCFD)
+{
+    // If declaring class, get decl from parent decl
+    String dname = aCFD.getDeclaringClassName();
+    if(dname!=null)
+        return getClassDeclForName(dname);
+    
+    // Get parent decl
+    String cname = aCFD.getClassName(); int ind = cname.lastIndexOf('.');
+    return ind>0? getPackageDecl(cname.substring(0, ind)) : null;
+}
+
+/**
+ * Returns the class file data for given class name (or null if class file not found or can't be read).
+ */
+ClassFileData getClassFileData(String aName)
+{
+    // Get class file bytes
+    byte bytes[] = getClassBytes(aName); if(bytes==null) return null;
+    
+    // Get ClassFile reader, read and return
+    ClassFileData cfd = new ClassFileData();
+    try { cfd.read(new DataInputStream(new ByteArrayInputStream(bytes))); return cfd; }
+    catch(Exception e) { System.err.println("JavaDeclOwner.getClassFileData: " + e + " in " + aName); return null; }
+}
+
+/**
+ * Returns the class file bytes for given class name (from ClassLoader resource, so class isn't loaded).
+ */
+public byte[] getClassBytes(String aName)
+{
+    // Get class file resource stream (just return if not found)
+    String path = aName.replace('.', '/') + ".class";
+    ClassLoader cldr = getClassLoader();
+    InputStream istream = cldr!=null? cldr.getResourceAsStream(path) : ClassLoader.getSystemResourceAsStream(path);
+    if(istream==null) return null;
+    
+    // Read bytes and return
+    try {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(); byte buf[] = new byte[8192];
+        for(int len=istream.read(buf); len>0; len=istream.read(buf)) bout.write(buf, 0, len);
+        istream.close();
+        return bout.toByteArray();
+    }
+    catch(IOException e) { System.err.println("JavaDeclOwner.getClassBytes: " + e + " in " + aName); return null; }
+}
+
 /**
  * Returns a package decl.
  */
 private JavaDecl getPackageDecl(String aName)
 {
     if(aName==null || aName.length()==0) return null;  // If bogus package name, just return
-    JavaDecl pdecl = _decls.get(aName);
-    if(pdecl==null) _decls.put(aName, pdecl = createPackageDecl(aName));
-    return pdecl;
+    JavaDecl pdecl = getDecl(aName); if(pdecl!=null) return pdecl;
+    return computeIfAbsent(aName, () -> createPackageDecl(aName));
 }
 
 /**
@@ -173,11 +283,131 @@ protected JavaDecl getParamTypeDecl(JavaDecl aDecl, JavaDecl theTypeDecls[])
 {
     // Get id and decl for id (just return if found)
     String id = JavaKitUtils.getParamTypeId(aDecl, theTypeDecls);
-    JavaDecl jd = _decls.get(id); if(jd!=null) return jd;
+    JavaDecl jd = getDecl(id); if(jd!=null) return jd;
     
     // Create new decl, add to map and return
-    _decls.put(id, jd = new JavaDecl(this, aDecl, theTypeDecls, id));
-    return jd;
+    return computeIfAbsent(id, () -> new JavaDecl(this, aDecl, theTypeDecls, id));
+}
+
+/**
+ * Returns the decl registered for given id (including decls being created by current thread).
+ */
+protected JavaDecl getDecl(String anId)
+{
+    JavaDecl decl = _decls.get(anId);
+    if(decl==null && _createLock.isHeldByCurrentThread()) decl = _pending.get(anId);
+    return decl;
+}
+
+/**
+ * Registers given decl for given id (decls created under create lock are published when creation completes).
+ */
+protected void putDecl(String anId, JavaDecl aDecl)
+{
+    if(_createLock.isHeldByCurrentThread()) _pending.put(anId, aDecl);
+    else _decls.put(anId, aDecl);
+}
+
+/**
+ * Returns the decl for given id, creating it with given supplier (under create lock) if absent, so each decl is
+ * created exactly once, even when many threads ask at the same time.
+ */
+protected <T extends JavaDecl> T computeIfAbsent(String anId, Supplier <T> aSupplier)
+{
+    return createLocked(() -> {
+        JavaDecl decl = getDecl(anId); if(decl!=null) return (T)decl;
+        T ndecl = aSupplier.get(); if(getDecl(anId)==null) putDecl(anId, ndecl);
+        return ndecl;
+    });
+}
+
+/**
+ * Runs given decl creation under create lock (lock is reentrant, since creating a decl creates the decls it refers
+ * to). Decls created are published to decls map when outermost creation completes.
+ */
+protected <T> T createLocked(Supplier <T> aSupplier)
+{
+    _createLock.lock(); _createDepth++;
+    try { return aSupplier.get(); }
+    finally {
+        if(--_createDepth==0 && _pending.size()>0) { _decls.putAll(_pending); _pending.clear(); }
+        _createLock.unlock();
+    }
+}
+
+/**
+ * Returns the compatible method for given receiver class, name and arg types (JavaDeclClass.getCompatibleMethodAll).
+ * Resolutions are cached until receiver, its supertypes or arg type supertypes change decls.
+ */
+protected JavaDecl getCompatibleMethodAll(JavaDeclClass aClass, String aName, JavaDecl theTypes[])
+{
+    // If already resolved, just return
+    MethodKey key = new MethodKey(aClass, aName, theTypes); int changeCount;
+    synchronized(this) { JavaDecl meth = _methods.get(key);
+        if(meth!=null || _methods.containsKey(key)) return meth; changeCount = _changeCount; }
+    
+    // Resolve and get classes that resolution depends on
+    JavaDecl meth = aClass.getCompatibleMethodAllIndexed(aName, theTypes);
+    List <JavaDeclClass> deps = new ArrayList(aClass.getAllTypes());
+    for(JavaDecl type : theTypes) { JavaDeclClass ct = type!=null? type.getClassType() : null;
+        while(ct!=null && ct.isArray()) ct = ct.getArrayItemType().getClassType();
+        if(ct!=null && !ct.isPrimitive()) deps.addAll(ct.getAllTypes()); }
+    
+    // Add to cache (unless a class changed during resolve)
+    synchronized(this) {
+        if(changeCount!=_changeCount) return meth;
+        key._deps = deps; _methods.put(key, meth);
+        for(JavaDeclClass dep : deps) { Set <MethodKey> keys = _methodDeps.get(dep);
+            if(keys==null) _methodDeps.put(dep, keys = new HashSet()); keys.add(key); }
+    }
+    return meth;
+}
+
+/**
+ * Registers given class as subtype of given types (so its cached inherited types are cleared when they change).
+ */
+protected synchronized void addSubtype(JavaDeclClass aClass, List <JavaDeclClass> theTypes)
+{
+    for(JavaDeclClass type : theTypes) { if(type==aClass) continue;
+        Set <JavaDeclClass> subs = _subtypes.get(type);
+        if(subs==null) _subtypes.put(type, subs = new HashSet()); subs.add(aClass); }
+}
+
+/**
+ * Called when a loaded class changes decls (or interfaces): Clears cached method resolutions that depend on class and
+ * cached inherited types of class and its subtypes.
+ */
+protected synchronized void classDeclsChanged(JavaDeclClass aClass)
+{
+    // Remove method resolutions that depend on class
+    _changeCount++;
+    Set <MethodKey> keys = _methodDeps.remove(aClass);
+    if(keys!=null) for(MethodKey key : keys) { _methods.remove(key); removeMethodDeps(key, aClass); }
+    
+    // Clear inherited types of class and subtypes
+    Set <JavaDeclClass> subs = _subtypes.remove(aClass);
+    clearAllTypes(aClass);
+    if(subs!=null) for(JavaDeclClass sub : subs) clearAllTypes(sub);
+}
+
+/**
+ * Removes given cached method resolution key from the keys of the classes it depends on (except given class).
+ */
+private void removeMethodDeps(MethodKey aKey, JavaDeclClass aSkip)
+{
+    for(JavaDeclClass dep : aKey._deps) { if(dep==aSkip) continue;
+        Set <MethodKey> keys = _methodDeps.get(dep);
+        if(keys!=null && keys.remove(aKey) && keys.isEmpty()) _methodDeps.remove(dep); }
+}
+
+/**
+ * Clears cached inherited types of given class and removes class from subtypes of its old inherited types.
+ */
+private void clearAllTypes(JavaDeclClass aClass)
+{
+    List <JavaDeclClass> types = aClass._allTypes; aClass.clearAllTypes(); if(types==null) return;
+    for(JavaDeclClass type : types) { Set <JavaDeclClass> subs = _subtypes.get(type);
+        if(subs!=null && subs.remove(aClass) && subs.isEmpty()) _subtypes.remove(type); }
 }
 
 /**
@@ -285,4 +515,36 @@ public static String getSimpleName(String cname)
     return cname;
 }
 
-}
\ No newline at end of file
+/**
+ * A key for a method resolution: Receiver class, method name and arg types (compared by identity).
+ */
+static class MethodKey {
+
+    // The receiver class, method name and arg types
+    JavaDeclClass _cls; String _name; JavaDecl _types[]; int _hash;
+    
+    // The classes the cached resolution depends on (receiver and arg type supertypes)
+    List <JavaDeclClass> _deps;
+
+    /** Creates a new MethodKey. */
+    MethodKey(JavaDeclClass aClass, String aName, JavaDecl theTypes[])
+    {
+        _cls = aClass; _name = aName; _types = theTypes.clone();
+        _hash = System.identityHashCode(aClass)*31 + aName.hashCode();
+        for(JavaDecl type : theTypes) _hash = _hash*31 + System.identityHashCode(type);
+    }
+
+    /** Standard equals implementation. */
+    public boolean equals(Object anObj)
+    {
+        MethodKey other = anObj instanceof MethodKey? (MethodKey)anObj : null; if(other==null) return false;
+        if(other._cls!=_cls || !other._name.equals(_name) || other._types.length!=_types.length) return false;
+        for(int i=0;i<_types.length;i++) if(other._types[i]!=_types[i]) return false;
+        return true;
+    }
+
+    /** Standard hashCode implementation. */
+    public int hashCode()  { return _hash; }
+}
+
+}
@@ -4,6 +4,7 @@
 package javakit.parse;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.function.Supplier;
 import snap.parse.*;
 
 /**
@@ -12,32 +13,57 @@ import snap.parse.*;
 @SuppressWarnings("unused")
 public class JavaParser extends Parser {
 
-    // The exception, if one was hit
+    // The exception, if one was hit (and the char index of token where it was hit, or -1 if at input end)
     Exception             _exception;
+    int                   _exceptionIndex;
+
+    // Whether to recover from parse errors by skipping tokens to statement/member boundaries and parsing again
+    boolean               _recoverEnabled = !"false".equals(System.getProperty("snapcode.parseRecovery"));
+
+    // The maximum number of skip ranges and time (in milliseconds, 0 for none) for error recovery parse
+    int                   _recoverMax = RECOVER_MAX, _recoverTime = RECOVER_TIME;
 
     // The expression parser and statement parser
     Parser                _ep, _sp, _ip;
 
-    // The shared parser
-    static JavaParser     _shared = new JavaParser();
+    // The class body member parser (to parse bodies skipped by signature parse)
+    JavaParser            _mp;
+
+    // The memo of LookAhead results for current parse (null if disabled or not parsing file)
+    LookAheadMemo         _memo;
+
+    // Whether to memoize LookAhead results during file parse
+    boolean               _memoEnabled = !"false".equals(System.getProperty("snapcode.lookAheadMemo"));
+
+    // The parser for each thread
+    static ThreadLocal <JavaParser>  _parsers = ThreadLocal.withInitial(() -> new JavaParser());
+
+    // The default maximum number of skip ranges and time (in milliseconds) for error recovery parse (each skip range
+    // is a full re-parse, so background and build parses of badly broken files don't hold up other files)
+    static final int      RECOVER_MAX = 10, RECOVER_TIME = 250;
+
+    // The member modifiers that end a skip range for error recovery parse
+    static final Set <String>  RECOVER_MODIFIERS = new HashSet(Arrays.asList("public", "protected", "private",
+        "static", "abstract", "final", "native", "synchronized", "transient", "volatile", "strictfp"));
 
 /**
- * Returns the shared parser.
+ * Returns the parser for current thread. Parsers (and the handlers installed in their rules) hold parse state, so
+ * each thread gets its own, so project files can be parsed on multiple threads at once.
  */
-public static JavaParser getShared()  { return _shared; }
+public static JavaParser get()  { return _parsers.get(); }
 
 /**
- * Returns the shared expression parser.
+ * Returns the expression parser (for this parser's thread).
  */
-public Parser getExprParser()  { return _ep!=null? _ep : (_ep=new Parser(_shared.getRule("Expression"))); }
+public Parser getExprParser()  { return _ep!=null? _ep : (_ep=new Parser(getRule("Expression"))); }
 
 /**
- * Returns the shared expression parser.
+ * Returns the statement parser (for this parser's thread).
  */
-public Parser getStmtParser()  { return _sp!=null? _sp : (_sp=new Parser(_shared.getRule("Statement"))); }
+public Parser getStmtParser()  { return _sp!=null? _sp : (_sp=new Parser(getRule("Statement"))); }
 
 /**
- * Returns the shared imports parser.
+ * Returns the imports parser (for this parser's thread).
  */
 public Parser getImportsParser()
 {
@@ -47,30 +73,100 @@ public Parser getImportsParser()
 }
 
 /**
- * Creates the rule.
+ * Parses the class body member at given char index of given source (to parse body skipped by signature parse).
+ */
+public JMemberDecl parseMember(CharSequence aSource, int aStart)
+{
+    // Get member parser and parse (if failed and recovery enabled, parse again skipping bad tokens)
+    if(_mp==null) { _mp = new JavaParser(); _mp.setRule(_mp.getRule("ClassBodyDecl"));
+        _mp.setRecoverLimits(_recoverMax, _recoverTime); }
+    JavaParser mp = _mp;
+    JMemberDecl member = mp.parseMemberImpl(aSource, aStart);
+    if(mp._exception!=null && mp._recoverEnabled && member!=null)
+        member = mp.parseRecovered(aSource, member, () -> mp.parseMemberImpl(aSource, aStart));
+    return member;
+}
+
+/**
+ * Parses the class body member at given char index of given source with this parser.
+ */
+private JMemberDecl parseMemberImpl(CharSequence aSource, int aStart)
+{
+    _exception = null; _exceptionIndex = -1; setInput(aSource); setCharIndex(aStart);
+    try { return parseCustom(JMemberDecl.class); }
+    catch(Exception e) { if(_exception==null) _exception = e; return null; }
+}
+
+/**
+ * Creates the rule. Rules are shared by parsers on the same thread (rule handlers hold parse state, so each thread
+ * loads its own rules the first time it creates a parser).
  */
 protected ParseRule createRule()
 {
-    if(_sharedRule!=null) return _sharedRule;
-    ParseRule rule = ParseUtils.loadRule(JavaParser.class, null);
-    ParseUtils.installHandlers(JavaParser.class, rule);
-    return _sharedRule = rule.getRule("JavaFile");
-} static ParseRule _sharedRule;
+    // If already loaded for this thread, just return
+    ParseRule rule = _sharedRules.get(); if(rule!=null) return rule;
+
+    // Get rules precompiled by build (JavaParserRules), or load from JavaParser.txt and install handlers
+    Supplier <ParseRule> rules = getPrecompiledRules();
+    if(rules!=null) rule = rules.get();
+    else {
+        rule = ParseUtils.loadRule(JavaParser.class, null);
+        ParseUtils.installHandlers(JavaParser.class, rule);
+    }
+    _sharedRules.set(rule = rule.getRule("JavaFile"));
+    return rule;
+} static ThreadLocal <ParseRule> _sharedRules = new ThreadLocal();
 
 /**
- * Returns a JavaFile for input Java.
+ * Returns the rules precompiled from JavaParser.txt by Gradle 'generateGrammar' task, or null if not built (or if
+ * system property "snapcode.textGrammar" is true).
+ */
+static synchronized Supplier <ParseRule> getPrecompiledRules()
+{
+    // If already checked, just return
+    if(_rulesChecked) return _rules; _rulesChecked = true;
+
+    // Look for generated class
+    if(Boolean.getBoolean("snapcode.textGrammar")) return null;
+    try { _rules = (Supplier)Class.forName("javakit.parse.JavaParserRules").newInstance(); }
+    catch(ClassNotFoundException e) { }
+    catch(Exception e) { System.err.println("JavaParser: Failed to load precompiled rules: " + e); }
+    return _rules;
+} static Supplier <ParseRule> _rules; static boolean _rulesChecked;
+
+/**
+ * Returns a JavaFile for input Java. If parse fails (and recovery isn't disabled with -Dsnapcode.parseRecovery=false),
+ * parses again skipping bad tokens, so that mid-edit files still get a complete tree (with JStmtError nodes).
+ * The file exception is still set to the first parse exception.
  */
 public JFile getJavaFile(CharSequence anInput)
 {
-    // Clear exception
-    _exception = null;
+    // Parse file (if failed and recovery enabled, parse again skipping bad tokens)
+    JFile jfile = getJavaFileImpl(anInput); Exception exception = _exception;
+    if(exception!=null && _recoverEnabled && anInput!=null && anInput.length()>0) {
+        jfile = parseRecovered(anInput, jfile, () -> getJavaFileImpl(anInput));
+        jfile.setException(exception);
+    }
+    return jfile;
+}
+
+/**
+ * Returns a JavaFile for input Java (parsed once).
+ */
+protected JFile getJavaFileImpl(CharSequence anInput)
+{
+    // Clear exception and start LookAhead memo
+    _exception = null; _exceptionIndex = -1;
+    if(_memoEnabled) _memo = new LookAheadMemo();
     
     // Get parse node
     ParseNode node = null; try { node = anInput!=null && anInput.length()>0? parse(anInput) : null; }
-    catch(ParseException e) { if(_exception==null) _exception = e; }
+    catch(ParseException e) { if(_exception==null) { _exception = e;
+        Token t = getToken(); _exceptionIndex = t!=null? t.getInputStart() : -1; } }
     catch(Exception e) { _exception = e;
         Token t = getToken(); if(t!=null) System.err.println("Exeption at line " + (t.getLineIndex() + 1));
         e.printStackTrace(); }
+    finally { _memo = null; }
     
     // Set JFile
     JFile jfile = node!=null? node.getCustomNode(JFile.class) : null; if(jfile==null) jfile = new JFile(); 
@@ -78,6 +174,126 @@ public JFile getJavaFile(CharSequence anInput)
     return jfile;
 }
 
+/**
+ * Returns a JavaFile for input Java with only signatures parsed: Method, constructor and initializer bodies are found
+ * by brace matching tokens and skipped, then parsed on first access of their statements (JStmtBlock.getChildren).
+ * Good for indexing, declaration lookups and outlines, which rarely need bodies.
+ */
+public JFile getJavaFileSignatures(CharSequence anInput)
+{
+    // Get member body ranges (if none, just do normal parse)
+    List <int[]> bodies = anInput!=null? getBodyRanges(anInput) : null;
+    if(bodies==null || bodies.size()==0) return getJavaFile(anInput);
+
+    // Get copy of input with body chars blanked (keep newlines so char indexes and line numbers match) and parse
+    StringBuilder sb = new StringBuilder(anInput); Set <Integer> starts = new HashSet();
+    for(int body[] : bodies) { starts.add(body[0]);
+        for(int i=body[0]+1; i<body[1]; i++) { char c = sb.charAt(i); if(c!='\n' && c!='\r') sb.setCharAt(i, ' '); } }
+    JFile jfile = getJavaFile(sb.toString());
+
+    // Mark member body blocks as skipped (so they parse from original input on first access)
+    for(JClassDecl cdecl : jfile.getClassDecls())
+        setBodiesSkipped(cdecl, starts, anInput);
+    return jfile;
+}
+
+/**
+ * Returns the char ranges of member body blocks (method, constructor, initializer) in given input, from "{" to "}".
+ * Returns null if input can't be tokenized.
+ */
+private List <int[]> getBodyRanges(CharSequence anInput)
+{
+    // Create list for bodies and stack for open braces (for each, whether class body, member body or other)
+    List <int[]> bodies = new ArrayList(); Deque <Object> braces = new ArrayDeque();
+    Object CLASS = "Class", ENUM = "Enum", BODY = "Body", OTHER = "Other";
+
+    // State of current member declaration at class level: whether saw class keyword, enum keyword or "=", paren depth
+    boolean sawClass = false, sawEnum = false, sawEquals = false, inEnumConsts = false; int parens = 0;
+    String lastPattern = null; int bodyStart = -1;
+
+    // Iterate over tokens
+    Tokenizer tokenizer = getTokenizer(); tokenizer.setInput(anInput);
+    try {
+        for(Token token=tokenizer.getNextToken(); token!=null; token=tokenizer.getNextToken()) {
+            String pattern = token.getPattern(); Object top = braces.peek();
+            boolean classLevel = top==null || top==CLASS || top==ENUM;
+
+            // Handle open brace: Push class body, member body (outside field initializer and enum constants) or other
+            if(pattern=="{") {
+                if(!classLevel) braces.push(OTHER);
+                else if(sawClass) { braces.push(sawEnum? ENUM : CLASS); inEnumConsts = sawEnum; }
+                else if(top==null || inEnumConsts || sawEquals || parens>0 || lastPattern=="default")
+                    braces.push(OTHER);
+                else { braces.push(BODY); bodyStart = token.getInputStart(); }
+                if(classLevel) { sawClass = sawEnum = sawEquals = false; parens = 0; }
+            }
+
+            // Handle close brace: If member body, add range
+            else if(pattern=="}") {
+                Object brace = braces.poll();
+                if(brace==BODY) bodies.add(new int[] { bodyStart, token.getInputStart() });
+                if(brace!=OTHER) { sawClass = sawEnum = sawEquals = false; parens = 0; inEnumConsts = false; }
+            }
+
+            // Handle class level tokens: Semicolon, parens, equals and class/interface/enum keywords
+            else if(classLevel) {
+                if(pattern==";" && parens==0) { sawClass = sawEnum = sawEquals = inEnumConsts = false; }
+                else if(pattern=="(") parens++;
+                else if(pattern==")") parens--;
+                else if(pattern=="=" && parens==0) sawEquals = true;
+                else if((pattern=="class" || pattern=="interface") && lastPattern!=".") sawClass = true;
+                else if(pattern=="enum") sawClass = sawEnum = true;
+            }
+            lastPattern = pattern;
+        }
+    }
+    catch(Exception e) { return null; }
+    return bodies;
+}
+
+/**
+ * Marks member body blocks of given class (and inner classes) that start at given char indexes as skipped.
+ */
+private static void setBodiesSkipped(JClassDecl aClassDecl, Set <Integer> theStarts, CharSequence aSource)
+{
+    for(JMemberDecl member : aClassDecl.getMemberDecls()) {
+        if(member instanceof JClassDecl) setBodiesSkipped((JClassDecl)member, theStarts, aSource);
+        JStmtBlock block = member.getBlock();
+        if(block!=null && theStarts.contains(block.getStart())) block.setBodySource(aSource);
+    }
+}
+
+/**
+ * Returns whether to memoize LookAhead results during file parse (default true, unless system property
+ * "snapcode.lookAheadMemo" is false).
+ */
+public boolean isMemoEnabled()  { return _memoEnabled; }
+
+/**
+ * Sets whether to memoize LookAhead results during file parse.
+ */
+public void setMemoEnabled(boolean aValue)  { _memoEnabled = aValue; }
+
+/**
+ * Override to return LookAhead result from memo, if this rule was already tried at this token (when parser
+ * backtracks, the same LookAhead is often tried again at the same token).
+ */
+protected int lookAhead(ParseRule aRule, int aTokenCount, int aTokenIndex)
+{
+    // If no memo or token, just do normal version
+    Token token = _memo!=null? getLookAheadToken(aTokenIndex) : null;
+    if(token==null) return super.lookAhead(aRule, aTokenCount, aTokenIndex);
+
+    // Get result from memo, or do normal version and add to memo
+    int start = token.getInputStart();
+    int result = _memo.get(aRule, start, aTokenCount);
+    if(result==LookAheadMemo.NONE) {
+        result = super.lookAhead(aRule, aTokenCount, aTokenIndex);
+        _memo.put(aRule, start, aTokenCount, result);
+    }
+    return result;
+}
+
 /**
  * Override to ignore exception.
  */
@@ -85,10 +301,151 @@ protected void parseFailed(ParseRule aRule, ParseHandler aHandler)
 {
     if(_exception==null) {
         _exception = new ParseException(this, aRule);
+        Token token = getToken(); _exceptionIndex = token!=null? token.getInputStart() : -1;
         //System.err.println("JavaParse: " + _exception);
     }
 }
 
+/**
+ * Sets the maximum number of skip ranges (re-parses) and time (in milliseconds, 0 for none) for error recovery parse.
+ * Default is 10 re-parses and 250 milliseconds (for this parser and its member parser).
+ */
+public void setRecoverLimits(int aMax, int aTime)
+{
+    _recoverMax = aMax; _recoverTime = aTime;
+    if(_mp!=null) _mp.setRecoverLimits(aMax, aTime);
+}
+
+/**
+ * Parses again after given failed parse, skipping tokens from the last statement boundary before error to the next
+ * statement or member boundary (";", "{", "}" or member modifier) until parse succeeds. If error is at input end,
+ * adds closing braces for unclosed blocks. Skipped tokens are added to tree as JStmtError nodes. Returns given node
+ * if parse can't be recovered.
+ */
+protected <T extends JNode> T parseRecovered(CharSequence anInput, T aNode, Supplier <T> aParse)
+{
+    // Get input tokens (from parser tokenizer, so error nodes get same kind of tokens as rest of tree)
+    List <Token> tokens = new ArrayList(); Tokenizer tokenizer = getTokenizer(); tokenizer.setInput(anInput);
+    try { for(Token t=tokenizer.getNextToken(); t!=null; t=tokenizer.getNextToken()) tokens.add(t); }
+    catch(Exception e) { return aNode; }
+    long endTime = _recoverTime>0? System.currentTimeMillis() + _recoverTime : Long.MAX_VALUE;
+
+    // Parse again skipping tokens at each error, until parse succeeds (or too many tokens skipped)
+    Exception exception = _exception; List <int[]> skips = new ArrayList(); int closeCount = 0, skipCount = 0;
+    T node = aNode;
+    try {
+        while(_exception!=null && skipCount<=tokens.size()/2 && skips.size()<_recoverMax &&
+            System.currentTimeMillis()<endTime) {
+
+            // If error at input end, add closing braces for unclosed blocks (just stop if already added)
+            int index = getTokenIndex(tokens, _exceptionIndex);
+            if(index==tokens.size()) {
+                int count = getOpenBraceCount(tokens, skips); if(count<=closeCount) break;
+                closeCount = count;
+            }
+
+            // Otherwise skip tokens from last statement boundary to next statement/member boundary
+            else { int skip[] = getSkipRange(tokens, index); skips.add(skip); skipCount += skip[1] - skip[0]; }
+
+            // Parse again
+            getTokenizer().setRecovery(getSkipChars(tokens, skips), anInput, closeCount);
+            node = aParse.get();
+        }
+    }
+    finally { getTokenizer().setRecovery(null, null, 0); }
+
+    // If parse still failed, restore exception and return original node
+    if(_exception!=null || node==null) { _exception = exception; return aNode; }
+
+    // Add error nodes for skipped tokens, restore exception and return
+    for(int skip[] : skips) {
+        JStmtError enode = new JStmtError(); enode.setException(exception);
+        Token start = tokens.get(skip[0]), end = tokens.get(skip[1]-1);
+        enode.setStartToken(start); enode.setEndToken(end);
+        enode.setText(anInput.subSequence(start.getInputStart(), end.getInputEnd()).toString());
+        addErrorNode(node, enode);
+    }
+    _exception = exception;
+    return node;
+}
+
+/**
+ * Returns the index of token at given char index (or token count, if char index is -1 or at end).
+ */
+private static int getTokenIndex(List <Token> theTokens, int aCharIndex)
+{
+    if(aCharIndex<0) return theTokens.size();
+    for(int i=0, iMax=theTokens.size(); i<iMax; i++) if(theTokens.get(i).getInputEnd()>aCharIndex) return i;
+    return theTokens.size();
+}
+
+/**
+ * Returns the token range to skip for error at given token index.
+ */
+private static int[] getSkipRange(List <Token> theTokens, int anIndex)
+{
+    // Get start: token after last statement boundary before error
+    int start = anIndex;
+    while(start>0) { String p = theTokens.get(start-1).getPattern(); if(p==";" || p=="{" || p=="}") break; start--; }
+
+    // Get end: through next ";", or up to next "{", "}" or member modifier
+    int end = anIndex;
+    for(int iMax=theTokens.size(); end<iMax; end++) { String p = theTokens.get(end).getPattern();
+        if(p==";") { end++; break; }
+        if(p=="{" || p=="}" || end>anIndex && RECOVER_MODIFIERS.contains(p)) break;
+    }
+
+    // If nothing to skip (error at brace), skip brace
+    if(end==start) end = start + 1;
+    return new int[] { start, end };
+}
+
+/**
+ * Returns the number of unclosed braces (not counting skipped tokens).
+ */
+private static int getOpenBraceCount(List <Token> theTokens, List <int[]> theSkips)
+{
+    int count = 0;
+    for(int i=0, iMax=theTokens.size(); i<iMax; i++) { String p = theTokens.get(i).getPattern();
+        if(p=="{" || p=="}") { boolean skipped = false;
+            for(int skip[] : theSkips) if(i>=skip[0] && i<skip[1]) { skipped = true; break; }
+            if(!skipped) count += p=="{"? 1 : -1;
+        }
+    }
+    return count;
+}
+
+/**
+ * Returns the char ranges (start/end pairs) for given token ranges.
+ */
+private static int[] getSkipChars(List <Token> theTokens, List <int[]> theSkips)
+{
+    int chars[] = new int[theSkips.size()*2];
+    for(int i=0, iMax=theSkips.size(); i<iMax; i++) { int skip[] = theSkips.get(i);
+        chars[i*2] = theTokens.get(skip[0]).getInputStart(); chars[i*2+1] = theTokens.get(skip[1]-1).getInputEnd(); }
+    return chars;
+}
+
+/**
+ * Adds given error node to deepest block, class or file of given node that contains it (at index for its start).
+ */
+private static void addErrorNode(JNode aNode, JStmtError anErrNode)
+{
+    // Get deepest block, class or file containing error
+    JNode par = aNode, node = aNode;
+    while(node!=null) { JNode child = null;
+        for(JNode n : node._children)
+            if(n.getStart()<=anErrNode.getStart() && anErrNode.getEnd()<=n.getEnd()) { child = n; break; }
+        node = child;
+        if(node instanceof JStmtBlock || node instanceof JClassDecl || node instanceof JFile) par = node;
+    }
+
+    // Add at index for start
+    int index = 0;
+    while(index<par._children.size() && par._children.get(index).getStart()<anErrNode.getStart()) index++;
+    par.addChild(anErrNode, index);
+}
+
 /**
  * Override to declare tokenizer as JavaTokenzier.
  */
@@ -104,13 +461,139 @@ protected Tokenizer createTokenizerImpl()  { return new JavaTokenizer(); }
  */
 public static class JavaTokenizer extends Tokenizer {
 
+    // The char ranges (start/end pairs) of tokens to skip and the tokenizer for closing braces at input end (for
+    // error recovery parse)
+    int             _skips[];
+    JavaTokenizer   _closer;
+    int             _closerStart;
+
     /** Creates a JavaTokenizer. */
     public JavaTokenizer()  { setReadSingleLineComments(true); setReadMultiLineComments(true); }
 
+    /** Override to reset closing braces. */
+    public void setInput(CharSequence anInput)
+    {
+        super.setInput(anInput);
+        if(_closer!=null) _closer.setCharIndex(_closerStart);
+    }
+
+    /** Override to skip tokens in skip ranges and add closing braces at input end (for error recovery parse). */
+    public Token getNextToken()
+    {
+        Token token = getNextTokenImpl();
+        if(_skips!=null) while(token!=null && isSkipped(token.getInputStart())) token = getNextTokenImpl();
+        if(token==null && _closer!=null) { token = _closer.getNextToken();
+            if(token!=null) token = new CloseToken(token, _closerStart); }
+        return token;
+    }
+
+    /** Returns the next token from input. */
+    protected Token getNextTokenImpl()  { return super.getNextToken(); }
+
+    /** Returns whether given char index is in a skip range. */
+    boolean isSkipped(int anIndex)
+    {
+        for(int i=0; i<_skips.length; i+=2) if(anIndex>=_skips[i] && anIndex<_skips[i+1]) return true;
+        return false;
+    }
+
+    /** Sets the char ranges of tokens to skip and number of closing braces to add after given input (recovery). */
+    public void setRecovery(int theSkips[], CharSequence anInput, int aCloseCount)
+    {
+        _skips = theSkips!=null && theSkips.length>0? theSkips : null; _closer = null;
+        if(aCloseCount>0) { StringBuilder sb = new StringBuilder(anInput);
+            for(int i=0; i<aCloseCount; i++) sb.append(" }");
+            _closer = new JavaTokenizer(); _closer.setInput(sb); _closerStart = anInput.length();
+            _closer.setCharIndex(_closerStart);
+        }
+    }
+
     /** Returns a token from the current char to multi-line comment termination or input end. */
     public Token getMultiLineCommentTokenMore(Token aSpclTkn) { return super.getMultiLineCommentTokenMore(aSpclTkn); }
 }
 
+/**
+ * A closing brace token added at input end by error recovery parse: Char and line start are clamped to input end
+ * (so the token is empty), since the brace isn't really in the input.
+ */
+private static class CloseToken implements Token {
+
+    // The closer token and the input length
+    Token   _token; int _end;
+
+    /** Creates a new CloseToken. */
+    CloseToken(Token aToken, int anEnd)  { _token = aToken; _end = anEnd; }
+
+    /** Token method: Returns null (closer tokenizer not kept). */
+    public Tokenizer getTokenizer()  { return null; }
+
+    /** Token method. */
+    public String getName()  { return _token.getName(); }
+
+    /** Token method. */
+    public String getPattern()  { return _token.getPattern(); }
+
+    /** Token method: Returns input end. */
+    public int getInputStart()  { return _end; }
+
+    /** Token method: Returns input end. */
+    public int getInputEnd()  { return _end; }
+
+    /** Token method. */
+    public int getLineIndex()  { return _token.getLineIndex(); }
+
+    /** Token method. */
+    public int getLineStart()  { return Math.min(_token.getLineStart(), _end); }
+
+    /** Token method. */
+    public int getColumnIndex()  { return getInputStart() - getLineStart(); }
+
+    /** Token method: Returns null. */
+    public Token getSpecialToken()  { return null; }
+
+    /** Token method: Returns empty string. */
+    public String getString()  { return ""; }
+
+    /** Standard toString implementation. */
+    public String toString()  { return getPattern(); }
+}
+
+/**
+ * A memo of LookAhead results for one parse, keyed by rule, token input start and token count. Results are the number
+ * of tokens matched (end position) or -1 for no match. The memo is bounded - once full, new results aren't added.
+ */
+static class LookAheadMemo {
+
+    // The results for each rule
+    Map <ParseRule,Map<Long,Integer>>  _results = new IdentityHashMap();
+
+    // The number of results
+    int                                _size;
+
+    // Constants for max results per parse and result not found
+    static final int                   MAX_SIZE = 100000, NONE = Integer.MIN_VALUE;
+
+    /** Returns the result for given rule, token input start and token count (or NONE). */
+    int get(ParseRule aRule, int aStart, int aTokenCount)
+    {
+        Map <Long,Integer> results = _results.get(aRule); if(results==null) return NONE;
+        Integer result = results.get(getKey(aStart, aTokenCount));
+        return result!=null? result : NONE;
+    }
+
+    /** Adds the result for given rule, token input start and token count. */
+    void put(ParseRule aRule, int aStart, int aTokenCount, int aResult)
+    {
+        if(_size>=MAX_SIZE) return;
+        Map <Long,Integer> results = _results.get(aRule);
+        if(results==null) _results.put(aRule, results = new HashMap());
+        if(results.put(getKey(aStart, aTokenCount), aResult)==null) _size++;
+    }
+
+    /** Returns key for token input start and token count. */
+    static Long getKey(int aStart, int aTokenCount)  { return ((long)aStart<<32) | (aTokenCount & 0xffffffffL); }
+}
+
 /**
  * Java File Handler.
  */
@@ -286,6 +286,7 @@ public void writeJStmt(JStmt aStmt)
     else if(aStmt instanceof JStmtContinue) writeJStmtContinue((JStmtContinue)aStmt);
     else if(aStmt instanceof JStmtDo) writeJStmtDo((JStmtDo)aStmt);
     else if(aStmt instanceof JStmtEmpty) writeJStmtEmpty((JStmtEmpty)aStmt);
+    else if(aStmt instanceof JStmtError) writeJStmtError((JStmtError)aStmt);
     else if(aStmt instanceof JStmtExpr) writeJStmtExpr((JStmtExpr)aStmt);
     else if(aStmt instanceof JStmtFor) writeJStmtFor((JStmtFor)aStmt);
     else if(aStmt instanceof JStmtIf) writeJStmtIf((JStmtIf)aStmt);
@@ -401,6 +402,16 @@ public void writeJStmtEmpty(JStmtEmpty aStmt)
     append(';').endln();
 }
 
+/**
+ * Writes a JStmtError (echoes skipped source).
+ */
+public void writeJStmtError(JStmtError aStmt)
+{
+    String text = aStmt.getText();
+    if(text!=null) append(text);
+    endln();
+}
+
 /**
  * Writes a JStmtExpr.
  */
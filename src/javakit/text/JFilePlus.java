@@ -1,8 +1,10 @@
 package javakit.text;
-import javakit.parse.JFile;
-import javakit.parse.JNode;
-import javakit.parse.JStmtBlock;
+import java.util.List;
+import javakit.parse.*;
+import javakit.text.JavaTextBox.JavaTextToken;
 import snap.parse.*;
+import snap.text.TextBoxLine;
+import snap.util.ListUtils;
 
 /**
  * A JFile node that can add/remove chars.
@@ -15,51 +17,121 @@ public class JFilePlus extends JFile {
     // A statement parser
     StmtParser       _stmtParser;
     
+    // A class body member parser
+    MemberParser     _memberParser;
+    
     /**
      * Creates a JFilePlus from a JNode.
      */
-    JFilePlus(JavaTextBox aJavaText, JFile aJFile)  { _jtbox = aJavaText; init(aJFile); _stmtParser = new StmtParser(); }
+    JFilePlus(JavaTextBox aJavaText, JFile aJFile)
+    {
+        _jtbox = aJavaText; init(aJFile); _stmtParser = new StmtParser(); _memberParser = new MemberParser();
+    }
 
     /**
      * Updates this JFile for given range change.
+     *
+     * @return whether this JFile was updated (if not, caller should do full parse).
      */
-    void updateChars(int aStart, int endOld, int endNew)
+    boolean updateChars(int aStart, int endOld, int endNew)
     {
         // Get node and statement at index
         JNode jnode = getNodeAtCharIndex(aStart); int len = endNew - endOld;
         JStmtBlock stmt = jnode instanceof JStmtBlock? (JStmtBlock)jnode : jnode.getParent(JStmtBlock.class);
 
-        // If adding more than 50 chars, just re-parse. If removing, get outer statement enclosing range
+        // If adding more than 50 chars, skip statement. If removing, get outer statement enclosing range (with start
+        // and end tokens that weren't replaced by change)
         if(len>50) stmt = null;
-        else while(stmt!=null && stmt.getEnd()<endOld)
+        else while(stmt!=null && (stmt.getEnd()<endOld || !isLive(stmt.getStartToken()) ||
+            !isLive(stmt.getEndToken())))
             stmt = stmt.getParent(JStmtBlock.class);
 
-        // Replace new statement
-        replace(stmt);
+        // Replace new statement (if statement no longer parses to same end, try enclosing class body member)
+        if(stmt!=null && replace(stmt)) return true;
+
+        // Otherwise, try to replace enclosing class body member
+        return replaceMember(jnode, aStart, endNew);
     }
 
     /**
-     * Replace statement.
+     * Re-parses given statement block and replaces it in its parent.
+     *
+     * @return whether statement was replaced (false if parse failed or didn't end at old statement end).
      */
-    void replace(JStmtBlock aStmt)
+    boolean replace(JStmtBlock aStmt)
     {
-        // If statement exists, re-parse and replace
-        if(aStmt!=null) { //System.out.println("Replacing: " + aStmt.getString().replace("\n", "  "));
-
-            // Parse new JStmtBlock (create empty one if there wasn't enough in block to create it)
-            _stmtParser.setInput(_jtbox.getRichText());
-            _stmtParser.setCharIndex(aStmt.getStart());
-            JStmtBlock stmt2 = null; try { stmt2 = _stmtParser.parseCustom(JStmtBlock.class); } catch(Exception e) { }
-            if(stmt2==null) { stmt2 = new JStmtBlock(); stmt2.setStartToken(aStmt.getStartToken()); }
-
-            // Replace old statement with new statement
-            JNode spar = aStmt.getParent();
-            stmt2.setEndToken(aStmt.getEndToken());
-            spar.setBlock(stmt2);
+        // Parse new JStmtBlock from statement start (just return if parse failed or didn't end at old statement end)
+        _stmtParser.setInput(_jtbox.getRichText());
+        _stmtParser.setCharIndex(aStmt.getStart()); _stmtParser._failed = false;
+        JStmtBlock stmt2 = null; try { stmt2 = _stmtParser.parseCustom(JStmtBlock.class); } catch(Exception e) { }
+        if(stmt2==null || _stmtParser._failed || stmt2.getEnd()!=aStmt.getEnd())
+            return false;
+
+        // Replace old statement with new statement
+        JNode spar = aStmt.getParent();
+        spar.setBlock(stmt2);
+        return true;
+    }
+
+    /**
+     * Re-parses the smallest class body member (method, field, constructor, initializer or inner class) enclosing
+     * change and replaces it in its class. Tokens of untouched lines are live text tokens, so the sibling nodes
+     * don't need to be shifted.
+     *
+     * @return whether member was replaced (false if change not in member or member no longer parses to same end).
+     */
+    boolean replaceMember(JNode aNode, int aStart, int endNew)
+    {
+        // Get innermost class body member enclosing change (with end token that wasn't replaced by change)
+        JMemberDecl member = aNode instanceof JMemberDecl? (JMemberDecl)aNode : aNode.getParent(JMemberDecl.class);
+        int start = -1;
+        for(; member!=null; member=member.getParent(JMemberDecl.class)) {
+            start = getMemberStart(member);
+            if(start>=0 && start<=aStart && endNew<=member.getEnd() && isLive(member.getEndToken())) break;
         }
+        if(member==null) return false;
+
+        // Parse new member from member start (just return if parse failed or didn't end at old member end)
+        _memberParser.setInput(_jtbox.getRichText());
+        _memberParser.setCharIndex(start); _memberParser._failed = false;
+        JMemberDecl member2 = null; try { member2 = _memberParser.parseCustom(JMemberDecl.class); }
+        catch(Exception e) { }
+        if(member2==null || _memberParser._failed || member2.getEnd()!=member.getEnd())
+            return false;
+
+        // Replace old member with new member
+        JClassDecl cdecl = (JClassDecl)member.getParent();
+        cdecl.replaceMemberDecl(member, member2);
+        return true;
+    }
+
+    /**
+     * Returns the char index to re-parse given class body member from: The member start (or the end of previous
+     * member, if member start token was replaced by change). Returns -1 if not a class body member or not found.
+     */
+    int getMemberStart(JMemberDecl aMember)
+    {
+        // If not class body member, return -1
+        if(!(aMember.getParent() instanceof JClassDecl)) return -1;
 
-        // Otherwise, do full parse
-        //else _jtbox._jfile = null; //System.out.println("Full Parse");
+        // If start token is live, return start
+        if(isLive(aMember.getStartToken())) return aMember.getStart();
+
+        // Return end of previous member (if live)
+        List <JMemberDecl> members = ((JClassDecl)aMember.getParent()).getMemberDecls();
+        int index = ListUtils.indexOfId(members, aMember);
+        JMemberDecl prev = index>0? members.get(index-1) : null;
+        return prev!=null && isLive(prev.getEndToken())? prev.getEnd() : -1;
+    }
+
+    /**
+     * Returns whether given token is still in text (tokens on lines replaced by change are stale).
+     */
+    boolean isLive(Token aToken)
+    {
+        if(!(aToken instanceof JavaTextToken)) return false;
+        TextBoxLine line = ((JavaTextToken)aToken).getLine(); int index = line.getIndex();
+        return index<_jtbox.getLineCount() && _jtbox.getLine(index)==line;
     }
 
     /**
@@ -67,13 +139,34 @@ public class JFilePlus extends JFile {
      */
     public class StmtParser extends Parser {
 
+        // Whether parse failed
+        boolean      _failed;
+
         /** Create new StmtParser. */
         StmtParser()  { super(_jtbox._parser.getRule("Statement")); }
 
         /** Returns tokenizer that gets tokens from text. */
         public Tokenizer getTokenizer()  { return _jtbox._parser.getTokenizer(); }
 
-        /** Override to ignore exception. */
-        protected void parseFailed(ParseRule aRule, ParseHandler aHandler)  { }
+        /** Override to note failure (caller re-parses member or does full parse instead). */
+        protected void parseFailed(ParseRule aRule, ParseHandler aHandler)  { _failed = true; }
+    }
+
+    /**
+     * A Parser for JavaText modified class body members.
+     */
+    public class MemberParser extends Parser {
+
+        // Whether parse failed
+        boolean      _failed;
+
+        /** Create new MemberParser. */
+        MemberParser()  { super(_jtbox._parser.getRule("ClassBodyDecl")); }
+
+        /** Returns tokenizer that gets tokens from text. */
+        public Tokenizer getTokenizer()  { return _jtbox._parser.getTokenizer(); }
+
+        /** Override to note failure (caller does full parse instead). */
+        protected void parseFailed(ParseRule aRule, ParseHandler aHandler)  { _failed = true; }
     }
 }
\ No newline at end of file
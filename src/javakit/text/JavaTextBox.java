@@ -22,6 +22,12 @@ public class JavaTextBox extends TextBox {
     // The Java file
     JFilePlus             _jfile;
     
+    // Whether JFile was updated for last change (re-parsed enclosing statement or member)
+    boolean               _jfileUpdated;
+    
+    // The maximum number of re-parses and time (in milliseconds) for error recovery parse of editor text
+    static final int      EDIT_RECOVER_MAX = 10, EDIT_RECOVER_TIME = 100;
+    
     // Images
     public static Image LVarImage = Image.get(JavaTextBox.class, "LocalVariable.png");
     public static Image FieldImage = Image.get(JavaTextBox.class,"PublicField.png");
@@ -80,15 +86,16 @@ public class JavaTextBox extends TextBox {
     public JavaTextLine getLineAt(int anIndex)  { return (JavaTextLine)super.getLineAt(anIndex); }
 
     /**
-     * Override to do full parse when newline typed.
+     * Override to do full parse when newline typed (if JFile couldn't re-parse enclosing statement or member).
      */
     public void replaceChars(CharSequence theChars, TextStyle theStyle, int aStart, int anEnd)
     {
         // Do normal version
+        _jfileUpdated = false;
         super.replaceChars(theChars, theStyle, aStart, anEnd);
 
-        // If newline, do full parse
-        if(theChars!=null && StringUtils.indexOfNewline(theChars, 0)>=0)
+        // If newline and JFile not updated, do full parse
+        if(theChars!=null && StringUtils.indexOfNewline(theChars, 0)>=0 && !_jfileUpdated)
             reloadSymbols();
     }
 
@@ -113,7 +120,7 @@ public class JavaTextBox extends TextBox {
         }
 
         // Update JFile
-        getJFile().updateChars(aStart, endOld, endNew);
+        _jfileUpdated = getJFile().updateChars(aStart, endOld, endNew);
     }
 
     /**
@@ -162,7 +169,7 @@ public class JavaTextBox extends TextBox {
 
             // Create TextToken
             JavaTextToken textToken = new JavaTextToken(line, style, tokenStart, tokenEnd);
-            textToken._tokenizer = _parser.getTokenizer(); textToken._token = token;
+            textToken._name = token.getName(); textToken._pattern = token.getPattern();
             textToken.setXLocal(x); textToken.setWidth(w); x += w; w = 0;
             Color color = getColor(token); if(color!=null) textToken.setColor(color);
             line.addToken(textToken);
@@ -227,6 +234,9 @@ public class JavaTextBox extends TextBox {
         /** Override to return JavaTextToken. */
         public JavaTextToken getToken(int anIndex)  { return (JavaTextToken)super.getToken(anIndex); }
 
+        /** Returns the JavaTextBox. */
+        public JavaTextBox getTextBox()  { return JavaTextBox.this; }
+
         /** Returns whether line is an unterminated comment. */
         public boolean isUnterminatedComment()  { return _utermCmnt; }  boolean _utermCmnt;
 
@@ -243,23 +253,20 @@ public class JavaTextBox extends TextBox {
      */
     public static class JavaTextToken extends TextBoxToken implements Token {
 
-        // The tokenizer that provided this token
-        Tokenizer    _tokenizer;
-
-        // The parse token
-        Token        _token;
+        // The parse token name and pattern (interned grammar strings, so parse token isn't kept)
+        String       _name, _pattern;
 
         /** Creates a new Token for given box line, run and character start/end.  */
         public JavaTextToken(TextBoxLine aLine, TextStyle aStyle, int aStart, int aEnd) { super(aLine,aStyle,aStart,aEnd); }
 
         /** The Tokenizer that provided this token. */
-        public Tokenizer getTokenizer()  { return _tokenizer; }
+        public Tokenizer getTokenizer()  { return ((JavaTextLine)getLine()).getTextBox()._parser.getTokenizer(); }
 
         /** Parse Token method. */
-        public String getName()  { return _token!=null? _token.getName() : null; }
+        public String getName()  { return _name; }
 
         /** Parse Token method. */
-        public String getPattern()  { return _token!=null? _token.getPattern() : null; }
+        public String getPattern()  { return _pattern; }
 
         /** Parse Token method. */
         public int getInputStart()  { return getLine().getStart() + getStart(); }
@@ -291,6 +298,9 @@ public class JavaTextBox extends TextBox {
         // The text tokenizer
         JavaTextTokenizer   _textTokenizer = new JavaTextTokenizer();
 
+        /** Creates new JavaTextParser (with error recovery limited, since editor re-parses often). */
+        public JavaTextParser()  { setRecoverLimits(EDIT_RECOVER_MAX, EDIT_RECOVER_TIME); }
+
         /** Returns tokenizer that gets tokens from text. */
         public JavaTextTokenizer getTokenizer()  { return _textTokenizer; }
 
@@ -324,7 +334,7 @@ public class JavaTextBox extends TextBox {
         }
 
         // Override to get token from next line
-        public Token getNextToken()
+        protected Token getNextTokenImpl()
         {
             // If line is out of tokens, get next line
             if(_line==null || _tokenIndex>=_line.getTokenCount()) {
@@ -336,7 +346,7 @@ public class JavaTextBox extends TextBox {
 
             // Return token for line
             JavaTextToken token = _line.getToken(_tokenIndex++);
-            if(token.isSpecialToken()) return getNextToken();
+            if(token.isSpecialToken()) return getNextTokenImpl();
             return token;
         }
 
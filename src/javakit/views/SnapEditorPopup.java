@@ -23,7 +23,7 @@ public class SnapEditorPopup extends ViewOwner {
     String               _startText, _endText, _idText;
 
     // Expression parser
-    Parser               _exprParser = JavaParser.getShared().getExprParser();
+    Parser               _exprParser = JavaParser.get().getExprParser();
 
     /**
      * Returns a shared instance.
@@ -21,8 +21,8 @@ public class SupportPane extends ViewOwner {
     static Image           _dragImage;
     
     // The statement parser and expression parser
-    Parser             _stmtParser = JavaParser.getShared().getStmtParser();
-    Parser             _exprParser = JavaParser.getShared().getExprParser();
+    Parser             _stmtParser = JavaParser.get().getStmtParser();
+    Parser             _exprParser = JavaParser.get().getExprParser();
     
     /**
      * Returns the editor pane.
@@ -106,6 +106,9 @@ public void runFile(AppPane anAppPane, RunConfig aConfig, WebFile aFile, boolean
  */
 void runApp(AppPane anAppPane)
 {
+    // Make sure compiled class files are written to build dirs
+    _proj.getProjectSet().flushClassFiles();
+    
     // Get run command as string array
     List <String> commands = getCommand();
     String command[] = commands.toArray(new String[commands.size()]);
@@ -123,6 +126,9 @@ void runApp(AppPane anAppPane)
  */
 void debugApp(AppPane anAppPane)
 {
+    // Make sure compiled class files are written to build dirs
+    _proj.getProjectSet().flushClassFiles();
+    
     // Get run command as string array (minus actual run)
     List <String> commands = getDebugCommand();
     String command[] = commands.toArray(new String[commands.size()]);
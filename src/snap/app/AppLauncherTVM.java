@@ -54,7 +54,8 @@ public static boolean isTeaVM(Project aProj, WebFile aFile)
  */
 void runTea(AppPane anAppPane)
 {
-    // Update Tea files
+    // Make sure compiled class files are written to build dirs and update Tea files
+    _proj.getProjectSet().flushClassFiles();
     updateTeaFiles();
     
     // Get run command as string array
@@ -1,5 +1,6 @@
 package snap.app;
 import java.util.*;
+import javakit.parse.JavaData;
 import snap.geom.*;
 import snap.gfx.*;
 import snap.util.*;
@@ -97,6 +98,9 @@ public void addOpenFile(WebFile aFile)
     if(aFile==null || !isOpenFile(aFile)) return;
     if(ListUtils.containsId(_openFiles, aFile)) return;
     _openFiles.add(aFile);
+    
+    // If Java file, pin parsed file in JFileCache
+    if(aFile.getType().equals("java")) JavaData.get(aFile).setPinned(true);
 }
 
 /**
@@ -108,6 +112,9 @@ public int removeOpenFile(WebFile aFile)
     int index = ListUtils.indexOfId(_openFiles, aFile); if(index<0) return index;
     _openFiles.remove(index);
     
+    // If Java file, unpin parsed file in JFileCache
+    if(aFile.getType().equals("java")) JavaData.get(aFile).setPinned(false);
+    
     // If removed file is selected file, set browser file to last file (that is still in OpenFiles list)
     if(aFile==_selectedFile) {
         WebURL url = getFallbackURL();
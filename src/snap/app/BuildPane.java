@@ -1,4 +1,6 @@
 package snap.app;
+import java.util.Map;
+import snap.project.BuildTimeline;
 import snap.project.Project;
 import snap.view.*;
 import snap.viewx.*;
@@ -26,6 +28,9 @@ public class BuildPane extends ViewOwner {
     
     // The PageBrowser
     WebBrowser             _pageBrowser;
+    
+    // The BuildTimelineView
+    BuildTimelineView      _timelineView;
 
 /**
  * Creates a new BuildPane for given site.
@@ -53,6 +58,10 @@ protected void initUI()
     _fileBrowser.setResolver(new FileResolver());
     _fileBrowser.setItems(getBuildDir());
     
+    // Create/add BuildTimelineView
+    _timelineView = new BuildTimelineView(); _timelineView.setName("TimelineView");
+    getUI(ChildView.class).addChild(_timelineView);
+    
     // Get/configure PageBrowser
     _pageBrowser = new WebBrowser() {
         protected Class <? extends WebPage> getPageClass(WebResponse aResp) {
@@ -74,6 +83,16 @@ protected void resetUI()
 {
     // Reset BuildDirText
     setViewText("BuildDirText", _proj.getBuildDir().getPath());
+    
+    // Reset TimelineView and TimelineText (total time for each phase)
+    BuildTimeline timeline = _proj.getBuildTimeline();
+    _timelineView.setTimeline(timeline);
+    StringBuffer sb = new StringBuffer();
+    for(Map.Entry <String,Long> entry : timeline.getPhaseTimes().entrySet()) {
+        if(sb.length()>0) sb.append(", ");
+        sb.append(entry.getKey()).append(' ').append(String.format("%.2fs", entry.getValue()/1e9));
+    }
+    setViewText("TimelineText", sb.toString());
 }
 
 /**
@@ -99,6 +118,14 @@ protected void respondUI(ViewEvent anEvent)
     // Handle CleanButton
     if(anEvent.equals("CleanButton"))
         _sitePane.cleanSite();
+    
+    // Handle ExportTraceButton: Write build timeline as Chrome trace to build dir
+    if(anEvent.equals("ExportTraceButton")) {
+        WebFile file = _proj.getBuildFile("/build-trace.json", true, false);
+        try { file.setBytes(_proj.getBuildTimeline().getChromeTrace().getBytes("UTF-8")); file.save(); }
+        catch(Exception e) { throw new RuntimeException(e); }
+        setViewText("TimelineText", "Exported " + file.getPath());
+    }
 }
 
 /**
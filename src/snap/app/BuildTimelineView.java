@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.app;
+import java.util.*;
+import snap.gfx.*;
+import snap.project.BuildTimeline;
+import snap.view.*;
+
+/**
+ * A view to show BuildTimeline events as bars in rows for each thread (colored by phase, with tooltips).
+ */
+public class BuildTimelineView extends View {
+
+    // The timeline
+    BuildTimeline      _timeline;
+
+    // The last mouse point
+    double             _mx, _my;
+
+    // The row height
+    static final double ROW_HEIGHT = 14;
+
+    // Colors for phases
+    static Map <String,Color> _colors = new HashMap();
+    static {
+        _colors.put(BuildTimeline.BUILD, new Color(225, 225, 225));
+        _colors.put(BuildTimeline.QUEUE, new Color(252, 240, 203));
+        _colors.put(BuildTimeline.COMPILE, new Color(110, 160, 230));
+        _colors.put(BuildTimeline.WRITE, new Color(150, 200, 120));
+        _colors.put(BuildTimeline.DEPENDENCIES, new Color(240, 170, 90));
+        _colors.put(BuildTimeline.IMPORTS, new Color(190, 140, 210));
+        _colors.put(BuildTimeline.CLASS_LOADER, new Color(230, 100, 100));
+    }
+
+/**
+ * Creates a new BuildTimelineView.
+ */
+public BuildTimelineView()
+{
+    enableEvents(MouseMove);
+    setToolTipEnabled(true);
+    setPrefHeight(ROW_HEIGHT*6);
+}
+
+/**
+ * Returns the timeline.
+ */
+public BuildTimeline getTimeline()  { return _timeline; }
+
+/**
+ * Sets the timeline.
+ */
+public void setTimeline(BuildTimeline aTimeline)  { _timeline = aTimeline; repaint(); }
+
+/**
+ * Returns the events to show (Build events first, so file events paint on top).
+ */
+protected List <BuildTimeline.Event> getEvents()
+{
+    List <BuildTimeline.Event> events = _timeline!=null? _timeline.getEvents() : new ArrayList();
+    Collections.sort(events, (e1,e2) -> Boolean.compare(!e1.getPhase().equals(BuildTimeline.BUILD),
+        !e2.getPhase().equals(BuildTimeline.BUILD)));
+    return events;
+}
+
+/**
+ * Returns the thread names for rows (in order of first event).
+ */
+protected List <String> getThreads(List <BuildTimeline.Event> theEvents)
+{
+    List <String> threads = new ArrayList();
+    for(BuildTimeline.Event event : theEvents)
+        if(!threads.contains(event.getThread())) threads.add(event.getThread());
+    return threads;
+}
+
+/**
+ * Returns the scale from nanoseconds to view width.
+ */
+protected double getScale()
+{
+    long start = _timeline!=null? _timeline.getStartTime() : 0, end = _timeline!=null? _timeline.getEndTime() : 1;
+    return (getWidth() - 2)/Math.max(end - start, 1);
+}
+
+/**
+ * Returns the bounds of given event in view (for given timeline start and scale).
+ */
+protected double[] getEventBounds(BuildTimeline.Event anEvent, List <String> theThreads, long aStart, double aScale)
+{
+    double x = 1 + (anEvent.getStart() - aStart)*aScale, w = Math.max(anEvent.getDuration()*aScale, 1);
+    double y = theThreads.indexOf(anEvent.getThread())*ROW_HEIGHT + 1;
+    return new double[] { x, y, w, ROW_HEIGHT - 2 };
+}
+
+/**
+ * Handle events.
+ */
+protected void processEvent(ViewEvent anEvent)
+{
+    // Handle MouseMoved
+    if(anEvent.isMouseMove()) { _mx = anEvent.getX(); _my = anEvent.getY(); }
+}
+
+/**
+ * Paint event bars.
+ */
+protected void paintFront(Painter aPntr)
+{
+    List <BuildTimeline.Event> events = getEvents(); if(events.size()==0) return;
+    List <String> threads = getThreads(events);
+    long start = _timeline.getStartTime(); double scale = getScale();
+    for(BuildTimeline.Event event : events) { double bnds[] = getEventBounds(event, threads, start, scale);
+        Color color = _colors.get(event.getPhase());
+        aPntr.setColor(color!=null? color : Color.LIGHTGRAY);
+        aPntr.fillRect(bnds[0], bnds[1], bnds[2], bnds[3]);
+    }
+}
+
+/**
+ * Override to return tool tip text for event under mouse.
+ */
+public String getToolTip(ViewEvent anEvent)
+{
+    // Get events and find last (topmost) event under mouse
+    List <BuildTimeline.Event> events = getEvents(); List <String> threads = getThreads(events);
+    long start = _timeline!=null? _timeline.getStartTime() : 0; double scale = getScale();
+    for(int i=events.size()-1; i>=0; i--) { BuildTimeline.Event event = events.get(i);
+        double bnds[] = getEventBounds(event, threads, start, scale);
+        if(_mx>=bnds[0] && _mx<=bnds[0]+bnds[2] && _my>=bnds[1] && _my<=bnds[1]+bnds[3])
+            return String.format("%s: %s (%.1f ms, %s)", event.getPhase(), event.getName(),
+                event.getDuration()/1e6, event.getThread());
+    }
+    return null;
+}
+
+}
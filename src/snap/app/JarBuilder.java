@@ -72,6 +72,7 @@ public void addFiles(Object aTopDir)
     if(file.isDirectory()) {
         for (File nestedFile: file.listFiles()) {
             WebURL url2 = WebURL.getURL(nestedFile);
+            if(nestedFile.getName().startsWith(".")) continue; // Skip hidden files (like build dir .javadata)
             if(nestedFile.isDirectory())
                 addFile(url2, file);
             else {
@@ -144,6 +145,9 @@ public static void build(Object aJarDest, Object aSourceDir) throws IOException
  */
 public static void build(Project aProj) throws IOException
 {
+    // Make sure compiled class files are written to build dir
+    aProj.getClassFileWriter().flush();
+    
     // Get build path and jar path
     String buildPath = aProj.getClassPath().getBuildPathAbsolute();
     String jarPath = buildPath + '/' + aProj.getName() + ".jar";
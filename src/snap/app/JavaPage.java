@@ -80,6 +80,10 @@ public class JavaPage extends WebPage implements WebFile.Updater {
         // Load UI
         getUI();
 
+        // If project is being indexed, move file to front
+        Project proj = Project.get(getFile());
+        if(proj!=null) proj.getRootProject().getProjectSet().getIndexer().indexFirst(getFile());
+
         // Look for LineNumber
         WebURL aURL = aResp.getURL();
         String lineNumberString = aURL.getRefValue("LineNumber");
@@ -42,6 +42,9 @@ public class ProjectPane extends ViewOwner {
     // The runner to build files
     BuildFilesRunner    _buildFilesRunner;
     
+    // The runner to index project files
+    IndexFilesRunner    _indexFilesRunner;
+    
     // The selected JarPath
     String              _jarPath;
     
@@ -138,6 +141,17 @@ public void openSite()
     // Kick off site build
     if(_sitePane.isAutoBuildEnabled())
         buildProjectLater(true);
+    
+    // Kick off index of project files
+    indexProject();
+}
+
+/**
+ * Deactivate project.
+ */
+public void closeSite()
+{
+    if(_indexFilesRunner!=null) _projSet.getIndexer().cancel();
 }
 
 /**
@@ -332,6 +346,36 @@ public class BuildFilesRunner extends TaskRunner {
     }
 }
 
+/**
+ * Parses all project Java files in the background (so cross-file operations find them parsed).
+ */
+public void indexProject()
+{
+    if(_indexFilesRunner!=null) return;
+    _indexFilesRunner = new IndexFilesRunner();
+    _indexFilesRunner.start();
+}
+
+/**
+ * An Runner subclass to index project files in the background.
+ */
+public class IndexFilesRunner extends TaskRunner {
+
+    // The number of files indexed and total
+    int          _count, _total;
+
+    /** IndexFiles. */
+    public Object run()  { _projSet.getIndexer().index(this); return true; }
+    public void beginTask(final String aTitle, int theTotalWork)  { _total = theTotalWork; setActivity(aTitle); }
+    public void updateTask(int theWorkDone)
+    {
+        _count += theWorkDone;
+        if(_count%20==0) setActivity("Indexing files (" + _count + " of " + _total + ")");
+    }
+    public void finished()  { _indexFilesRunner = null; setActivity("Indexing Completed"); }
+    void setActivity(String aStr)  { if(_appPane!=null) _appPane.getBrowser().setActivity(aStr); }
+}
+
 /**
  * Removes build files from the project.
  */
@@ -603,7 +647,7 @@ private void findUndefines(WebFile aFile)
 {
     if(aFile.isFile() && aFile.getType().equals("java")) {
         JavaData jdata = JavaData.get(aFile);
-        JNode jfile = jdata.getJFile();
+        JNode jfile = jdata.getJFile(true);
         findUndefines(jfile);
     }
     else if(aFile.isDir())
@@ -25,6 +25,12 @@ public class SearchPane extends ViewOwner {
     
     // The current selected result
     Result          _sresult;
+    
+    // The names of methods that compiled code can call without the name in source (skipped by reference prefilter)
+    static final Set <String> IMPLICIT_METHODS = new HashSet(Arrays.asList("iterator", "hasNext", "next", "close",
+        "addSuppressed", "append", "toString", "valueOf", "values", "ordinal", "hashCode", "equals", "getClass",
+        "requireNonNull", "booleanValue", "byteValue", "charValue", "shortValue", "intValue", "longValue",
+        "floatValue", "doubleValue", "value", "desiredAssertionStatus", "metafactory", "altMetafactory"));
 
 /**
  * Creates a new search pane for app pane.
@@ -194,13 +200,15 @@ public void searchReference(WebFile aFile, List <Result> theResults, JavaDecl aD
             searchReference(file, theResults, aDecl);
     }
     
-    // Handle JavaFile
+    // Handle JavaFile (skip if decl can only be referenced by name and file has no identifier with that name)
     else if(aFile.getType().equals("java")) {
         JavaData jdata = JavaData.get(aFile);
+        String name = getRefName(aDecl);
+        if(name!=null && !jdata.getFileNames().containsName(name)) return;
         Set <JavaDecl> refs = jdata.getRefs();
         for(JavaDecl decl : refs) {
             if(aDecl.matches(decl)) {
-                List <JNode> nodes = new ArrayList(); JavaDeclOwner.getRefMatches(jdata.getJFile(), aDecl, nodes);
+                List <JNode> nodes = new ArrayList(); JavaDeclOwner.getRefMatches(jdata.getJFile(true), aDecl, nodes);
                 for(JNode node : nodes)
                     theResults.add(new Result(node));
                 return;
@@ -209,6 +217,18 @@ public void searchReference(WebFile aFile, List <Result> theResults, JavaDecl aD
     }
 }
 
+/**
+ * Returns the identifier name that any source reference to given decl must contain (field or method name), or null if
+ * decl can be referenced without its name (classes can be referenced by expression types, constructors implicitly and
+ * methods like iterator() and close() by language constructs).
+ */
+private static String getRefName(JavaDecl aDecl)
+{
+    if(aDecl.isField()) return aDecl.getName();
+    if(aDecl.isMethod() && !IMPLICIT_METHODS.contains(aDecl.getName())) return aDecl.getName();
+    return null;
+}
+
 /**
  * Search for given element reference.
  */
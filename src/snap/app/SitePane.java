@@ -197,6 +197,7 @@ public void openSite()
  */
 public void closeSite()
 {
+    if(_projPane!=null) _projPane.closeSite();
     _site.removeFileChangeListener(_siteFileLsnr);
     _site.setProp(SitePane.class.getName(), null);
     _appPane = null; _site = null; _consolePane = null; _projPane = null; _vcp = null;
@@ -9,17 +9,15 @@ import snap.parse.Parser;
  */
 public class ExprEval {
 
-    // A parser to parse expressions
-    static Parser         _exprParser = JavaParser.getShared().getExprParser();
-    
 /**
  * Evaluate expression.
  */
 public static Object eval(DebugApp anApp, String anExpr)
 {
-    _exprParser.setInput(anExpr);
+    Parser exprParser = JavaParser.get().getExprParser();
+    exprParser.setInput(anExpr);
     ObjectReference oref = anApp.thisObject();
-    JExpr expr = _exprParser.parseCustom(JExpr.class);
+    JExpr expr = exprParser.parseCustom(JExpr.class);
     Value value; try { value = evalExpr(anApp, oref, expr); }
     catch(Exception e) { return e; }
     return value;
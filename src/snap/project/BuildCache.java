@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.project;
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import javakit.parse.JavaData;
+import snap.util.Prefs;
+import snap.web.WebFile;
+
+/**
+ * A local, content-addressed cache of compiled class files, shared by all projects (and clones of projects) for user.
+ * Entries are keyed by a hash of Java file class name and source text, compiler options (except class path), class
+ * path jar contents and the source of project Java files it could reference without class file refs showing it
+ * (inlined constants, new classes that shadow imported names): Files in same package and files named by an identifier
+ * in source. Each entry also stores the source hashes of the project Java files it depended on (directly or
+ * indirectly), which must still match for a hit. Least recently used entries are removed when cache gets too big.
+ */
+public class BuildCache {
+
+    // The cache directory
+    File                    _dir;
+
+    // The max size of cache (in bytes)
+    long                    _maxSize = DEFAULT_MAX_SIZE;
+
+    // The content hashes of class path jars (keyed by path, with size and mod time)
+    Map <String,long[]>     _jarHashes = new HashMap();
+
+    // The source hashes of Java files (keyed by file, with mod time)
+    Map <WebFile,long[]>    _srcHashes = new HashMap();
+
+    // The shared build cache
+    static BuildCache       _shared;
+
+    // Constants for prefs, default max size, entry file extension, magic number and version
+    static final String     ENABLED_PREF = "BuildCacheEnabled", DIR_PREF = "BuildCacheDir", SIZE_PREF = "BuildCacheSize";
+    static final long       DEFAULT_MAX_SIZE = 512*1024*1024;
+    static final String     EXT = ".cache";
+    static final int        MAGIC = 0x53424343, VERSION = 2;
+
+/**
+ * Creates a new BuildCache for given directory.
+ */
+public BuildCache(File aDir)  { _dir = aDir; }
+
+/**
+ * Returns the cache directory.
+ */
+public File getDir()  { return _dir; }
+
+/**
+ * Returns the max size of cache (in bytes).
+ */
+public long getMaxSize()  { return _maxSize; }
+
+/**
+ * Sets the max size of cache (in bytes).
+ */
+public void setMaxSize(long aValue)  { _maxSize = aValue; }
+
+/**
+ * Returns the class files (name to bytes) cached for given Java file, if cache has entry for its current source,
+ * compiler options, class path and project source dependencies.
+ */
+public Map <String,byte[]> getClassFiles(SnapCompiler aCompiler, WebFile aJavaFile)
+{
+    // Get entry file (just return if not found)
+    File file = new File(_dir, getKey(aCompiler, aJavaFile) + EXT); if(!file.exists()) return null;
+
+    try {
+        // Read header (if wrong magic number or version, just return)
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if(dis.readInt()!=MAGIC || dis.readInt()!=VERSION) return null;
+
+            // Read source dependencies - if any missing or changed, just return
+            ProjectSet projSet = aCompiler.getProject().getProjectSet();
+            for(int i=0, iMax=dis.readInt(); i<iMax; i++) { String name = dis.readUTF(); long hash = dis.readLong();
+                WebFile dep = projSet.getJavaFile(name);
+                if(dep==null || getSourceHash(dep)!=hash) return null; }
+
+            // Read class files
+            Map <String,byte[]> cfiles = new LinkedHashMap();
+            for(int i=0, iMax=dis.readInt(); i<iMax; i++) { String name = dis.readUTF();
+                byte bytes[] = new byte[dis.readInt()]; dis.readFully(bytes);
+                cfiles.put(name, bytes); }
+
+            // Mark entry as recently used and return class files
+            file.setLastModified(System.currentTimeMillis());
+            return cfiles;
+        }
+        finally { dis.close(); }
+    }
+    catch(Exception e) { System.err.println("BuildCache.getClassFiles: Failed to read " + file + ": " + e); }
+    return null;
+}
+
+/**
+ * Adds given class files (compiled from given Java file) to cache. Java file dependencies must be set.
+ */
+public void putClassFiles(SnapCompiler aCompiler, WebFile aJavaFile, List <WebFile> theClassFiles)
+{
+    // Get project source dependencies (direct and indirect)
+    Set <WebFile> deps = new LinkedHashSet(); getDependencies(aJavaFile, deps); deps.remove(aJavaFile);
+
+    // Write entry to temp file and move into place (so readers never see partial entry)
+    File tfile = null;
+    try {
+        _dir.mkdirs();
+        File file = new File(_dir, getKey(aCompiler, aJavaFile) + EXT);
+        tfile = File.createTempFile("entry", ".tmp", _dir);
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tfile)));
+        try {
+            dos.writeInt(MAGIC); dos.writeInt(VERSION);
+            dos.writeInt(deps.size());
+            for(WebFile dep : deps) { dos.writeUTF(Project.get(dep).getClassName(dep)); dos.writeLong(getSourceHash(dep)); }
+            dos.writeInt(theClassFiles.size());
+            for(WebFile cfile : theClassFiles) { byte bytes[] = cfile.getBytes();
+                dos.writeUTF(cfile.getName()); dos.writeInt(bytes.length); dos.write(bytes); }
+        }
+        finally { dos.close(); }
+        Files.move(tfile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch(Exception e) {
+        System.err.println("BuildCache.putClassFiles: Failed to write " + aJavaFile.getName() + ": " + e);
+        if(tfile!=null) tfile.delete();
+    }
+}
+
+/**
+ * Removes least recently used entries until cache is no larger than MaxSize.
+ */
+public void trim()
+{
+    // Get entry files and total size (just return if under max)
+    File files[] = _dir.listFiles(); if(files==null) return;
+    long size = 0; for(File file : files) size += file.length();
+    if(size<=_maxSize) return;
+
+    // Sort files by last access and delete oldest until under max
+    Arrays.sort(files, (f1,f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+    for(int i=0; i<files.length && size>_maxSize; i++) { long len = files[i].length();
+        if(files[i].delete()) size -= len; }
+}
+
+/**
+ * Returns the entry key for given Java file: hash of class name, source text, compiler options, class path jars and
+ * source of project Java files it could reference (see getReferencableFiles).
+ */
+protected String getKey(SnapCompiler aCompiler, WebFile aJavaFile)
+{
+    // Add version and class name
+    StringBuffer sb = new StringBuffer().append(VERSION).append('\n');
+    sb.append(aCompiler.getProject().getClassName(aJavaFile)).append('\n');
+
+    // Add compiler options (except class path, since it may be specific to project location, and implicit, since it
+    // doesn't change class files of given file)
+    List <String> options = aCompiler.getOptions();
+    for(int i=0, iMax=options.size(); i<iMax; i++) { String opt = options.get(i);
+        if(opt.equals("-cp")) i++; else if(!opt.startsWith("-implicit:")) sb.append(opt).append('\n'); }
+
+    // Add content hashes of class path jars (directories are project build dirs, covered by source dependencies)
+    for(String path : aCompiler.getProject().getProjectSet().getLibPaths())
+        sb.append(Long.toHexString(getJarHash(path))).append('\n');
+
+    // Add source hashes of project Java files that source could reference
+    for(Map.Entry <String,WebFile> entry : getReferencableFiles(aCompiler, aJavaFile).entrySet())
+        sb.append(entry.getKey()).append(' ').append(Long.toHexString(getSourceHash(entry.getValue()))).append('\n');
+
+    // Add source text and return hash string
+    sb.append(aJavaFile.getText());
+    byte hash[] = getHashBytes(sb.toString());
+    StringBuffer hex = new StringBuffer();
+    for(byte b : hash) hex.append(Character.forDigit((b>>4)&0xF, 16)).append(Character.forDigit(b&0xF, 16));
+    return hex.toString();
+}
+
+/**
+ * Returns the project Java files (keyed by class name, sorted) that given Java file could reference without class file
+ * refs showing it (compile-time constants are inlined and a new class can shadow an imported name): Files in same
+ * package and files with simple name of any identifier in source (or all files, if source can't be tokenized).
+ */
+private Map <String,WebFile> getReferencableFiles(SnapCompiler aCompiler, WebFile aJavaFile)
+{
+    // Get files in same package
+    SourceIndex index = aCompiler.getSourceIndex(); Map <String,WebFile> files = new TreeMap();
+    Project proj = Project.get(aJavaFile);
+    index.addFiles(index._pkgs.get(proj.getPackageName(aJavaFile)), files);
+
+    // Add files named by identifiers in source (or all files if tokenizer failed)
+    String names[] = JavaData.get(aJavaFile).getFileNames().getNames();
+    if(names!=null) for(String name : names) index.addFiles(index._names.get(name), files);
+    else for(List <WebFile> pfiles : index._pkgs.values()) index.addFiles(pfiles, files);
+
+    // Remove given file and return
+    files.remove(proj.getClassName(aJavaFile));
+    return files;
+}
+
+/**
+ * Adds the project Java files that given Java file depends on (directly and indirectly) to given set.
+ */
+private void getDependencies(WebFile aJavaFile, Set <WebFile> theDeps)
+{
+    for(WebFile dep : new ArrayList <WebFile> (JavaData.get(aJavaFile).getDependencies()))
+        if(theDeps.add(dep))
+            getDependencies(dep, theDeps);
+}
+
+/**
+ * Returns the hash of given Java file source text (cached by file mod time).
+ */
+private long getSourceHash(WebFile aJavaFile)
+{
+    long mtime = aJavaFile.getLastModTime();
+    synchronized(_srcHashes) { long hash[] = _srcHashes.get(aJavaFile);
+        if(hash!=null && hash[0]==mtime) return hash[1]; }
+    long hash = getHash(getHashBytes(aJavaFile.getText()));
+    synchronized(_srcHashes) { _srcHashes.put(aJavaFile, new long[] { mtime, hash }); }
+    return hash;
+}
+
+/**
+ * Returns the hash of given class path jar contents (cached by path, size and mod time), or zero for directory.
+ */
+private long getJarHash(String aPath)
+{
+    // If not a file (directory or missing), just return 0
+    File file = new File(aPath); if(!file.isFile()) return 0;
+
+    // If hash cached for current file size and mod time, return it
+    long size = file.length(), mtime = file.lastModified();
+    synchronized(_jarHashes) { long hash[] = _jarHashes.get(aPath);
+        if(hash!=null && hash[0]==size && hash[1]==mtime) return hash[2]; }
+
+    // Get hash of file bytes, cache and return
+    long hash;
+    try { hash = getHash(getHashBytes(Files.readAllBytes(file.toPath()))); }
+    catch(IOException e) { throw new RuntimeException(e); }
+    synchronized(_jarHashes) { _jarHashes.put(aPath, new long[] { size, mtime, hash }); }
+    return hash;
+}
+
+/** Returns the SHA-1 hash bytes for given string. */
+private static byte[] getHashBytes(String aStr)
+{
+    try { return getHashBytes(aStr.getBytes("UTF-8")); }
+    catch(UnsupportedEncodingException e) { throw new RuntimeException(e); }
+}
+
+/** Returns the SHA-1 hash bytes for given bytes. */
+private static byte[] getHashBytes(byte theBytes[])
+{
+    try { return MessageDigest.getInstance("SHA-1").digest(theBytes); }
+    catch(Exception e) { throw new RuntimeException(e); }
+}
+
+/** Returns a long for first 8 bytes of given hash bytes. */
+private static long getHash(byte theBytes[])
+{
+    long hash = 0; for(int i=0; i<8; i++) hash = (hash<<8) | (theBytes[i]&0xFF);
+    return hash;
+}
+
+/**
+ * An index of ProjectSet Java files by simple name and by package name (for entry keys - SnapCompiler recreates it
+ * each build, so added and removed files are seen).
+ */
+static class SourceIndex {
+
+    // The files for simple name and for package name
+    Map <String,List<WebFile>>  _names = new HashMap(), _pkgs = new HashMap();
+
+    /** Creates a new SourceIndex for given ProjectSet. */
+    SourceIndex(ProjectSet aProjSet)
+    {
+        Project rootProj = aProjSet.getProject(); addDir(rootProj, rootProj.getSourceDir());
+        for(Project proj : aProjSet.getProjects()) addDir(proj, proj.getSourceDir());
+    }
+
+    /** Adds Java files in given directory (skipping project build directory). */
+    private void addDir(Project aProj, WebFile aDir)
+    {
+        for(WebFile file : aDir.getFiles()) {
+            if(file.isDir()) { if(file!=aProj.getBuildDir()) addDir(aProj, file); }
+            else if(file.getType().equals("java")) {
+                _names.computeIfAbsent(file.getSimpleName(), k -> new ArrayList()).add(file);
+                _pkgs.computeIfAbsent(aProj.getPackageName(file), k -> new ArrayList()).add(file);
+            }
+        }
+    }
+
+    /** Adds given files (if not null) to given map by class name. */
+    void addFiles(List <WebFile> theFiles, Map <String,WebFile> theMap)
+    {
+        if(theFiles!=null) for(WebFile file : theFiles) theMap.put(Project.get(file).getClassName(file), file);
+    }
+}
+
+/**
+ * Returns whether build cache is enabled (from prefs).
+ */
+public static boolean isEnabled()  { return Prefs.get().getString(ENABLED_PREF, "false").equals("true"); }
+
+/**
+ * Sets whether build cache is enabled (in prefs).
+ */
+public static void setEnabled(boolean aValue)
+{
+    Prefs.get().setValue(ENABLED_PREF, aValue? "true" : "false"); Prefs.get().flush();
+}
+
+/**
+ * Returns the default cache directory (shared by all projects and clones for user).
+ */
+public static String getDefaultDir()
+{
+    return System.getProperty("user.home") + File.separator + ".snapcode" + File.separator + "BuildCache";
+}
+
+/**
+ * Returns the shared build cache (directory and max size in megabytes from prefs), or null if not enabled.
+ */
+public static synchronized BuildCache get()
+{
+    // If not enabled, just return null
+    if(!isEnabled()) return null;
+
+    // Get directory from prefs - if shared cache is missing or for different directory, create new one
+    String dir = Prefs.get().getString(DIR_PREF, getDefaultDir());
+    if(_shared==null || !_shared._dir.getPath().equals(new File(dir).getPath()))
+        _shared = new BuildCache(new File(dir));
+
+    // Set max size from prefs and return
+    _shared.setMaxSize((long)(Prefs.get().getDouble(SIZE_PREF, DEFAULT_MAX_SIZE/(1024*1024))*1024*1024));
+    return _shared;
+}
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.project;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import javakit.parse.JavaData;
+import snap.web.WebFile;
+
+/**
+ * A class to run the analysis stages of a Java build on background threads, so analysis of compiled files overlaps
+ * compile of the next files. Stages are connected by bounded queues:
+ *     References: Deletes zombie class files and updates JavaData dependencies for files with modified class files.
+ *     Dependencies: Finds dependents of files whose API changed (builder project dependents are queued for builder).
+ *     Imports: Finds unused imports for compiled files (reported by JavaFileBuilder.findUnusedImports).
+ * The references and imports stages hold the ProjectSet class loader read lock while reflecting on classes for a file,
+ * so a loader reset by any project build (dependent projects can build in parallel) waits only for the file each stage
+ * is on - files still queued are analyzed with the new loader, so the builder doesn't wait for the pipeline to drain.
+ */
+public class BuildPipeline {
+
+    // The builder
+    JavaFileBuilder                  _builder;
+
+    // The queues for references, dependencies and imports stages
+    BlockingQueue <Object>           _refsQ, _depsQ, _importsQ;
+
+    // The dependents found for builder project (waiting for builder to add to build files)
+    Queue <WebFile>                  _dependents = new ConcurrentLinkedQueue();
+
+    // The unused import issues found for compiled files
+    Map <WebFile,List<BuildIssue>>   _unusedImports = new ConcurrentHashMap();
+
+    // The number of files in references/dependencies stages and in imports stage
+    int                              _depsCount, _importsCount;
+
+    // The first exception thrown by a stage
+    volatile Throwable               _error;
+
+    // The shared executor for stage threads (threads are kept between builds, so their per-thread parsers are reused)
+    static ExecutorService           _executor;
+
+    // Constants for queue size, end of queue marker and time idle stage threads are kept (in minutes)
+    static final int                 QUEUE_SIZE = 64;
+    static final Object              END = new Object();
+    static final int                 THREAD_KEEP_ALIVE = 10;
+
+/**
+ * Creates a new BuildPipeline for given builder and starts stage threads.
+ */
+public BuildPipeline(JavaFileBuilder aBuilder)
+{
+    // Set builder and create queues
+    _builder = aBuilder;
+    _refsQ = new ArrayBlockingQueue(QUEUE_SIZE); _depsQ = new ArrayBlockingQueue(QUEUE_SIZE);
+    _importsQ = new ArrayBlockingQueue(QUEUE_SIZE);
+
+    // Start stage threads
+    startStage("References", _refsQ, file -> updateRefs(file));
+    startStage("Dependencies", _depsQ, file -> findDependents(file));
+    startStage("Imports", _importsQ, file -> findUnusedImports(file));
+}
+
+/**
+ * Adds a compiled file with modified class files (to update dependencies, find dependents and unused imports).
+ */
+public void addModifiedFile(WebFile aFile)
+{
+    synchronized(this) { _depsCount++; _importsCount++; }
+    put(_refsQ, aFile);
+}
+
+/**
+ * Adds a compiled file with unchanged class files (to find unused imports).
+ */
+public void addCompiledFile(WebFile aFile)
+{
+    synchronized(this) { _importsCount++; }
+    put(_importsQ, aFile);
+}
+
+/**
+ * Returns the builder project dependents found so far (and clears them).
+ */
+public List <WebFile> getDependents()
+{
+    List <WebFile> files = new ArrayList();
+    for(WebFile file=_dependents.poll(); file!=null; file=_dependents.poll()) files.add(file);
+    return files;
+}
+
+/**
+ * Waits for references and dependencies stages to finish all added files and returns the builder project dependents.
+ */
+public List <WebFile> awaitDependents()
+{
+    synchronized(this) {
+        try { while(_depsCount>0 && _error==null) wait(); }
+        catch(InterruptedException e) { _builder._interrupt = true; Thread.currentThread().interrupt(); }
+    }
+    checkError();
+    return getDependents();
+}
+
+/**
+ * Waits for all stages to finish all added files and returns the unused imports found for compiled files.
+ */
+public Map <WebFile,List<BuildIssue>> awaitUnusedImports()
+{
+    synchronized(this) {
+        try { while((_depsCount>0 || _importsCount>0) && _error==null) wait(); }
+        catch(InterruptedException e) { _builder._interrupt = true; Thread.currentThread().interrupt(); }
+    }
+    checkError();
+    return _unusedImports;
+}
+
+/**
+ * Stops stage threads (after they finish added files).
+ */
+public void close()
+{
+    put(_refsQ, END); put(_depsQ, END); put(_importsQ, END);
+}
+
+/**
+ * References stage: Deletes zombie class files and updates dependencies (and passes file to next stages).
+ */
+private void updateRefs(WebFile aFile)
+{
+    // Delete class files for removed inner classes and update dependencies
+    Project proj = _builder._proj;
+    BuildTimeline.Span span = proj.getBuildTimeline().begin(BuildTimeline.DEPENDENCIES, proj.getClassName(aFile), proj);
+    boolean dependsChanged; Lock lock = proj.getProjectSet().getClassLoaderLock().readLock(); lock.lock();
+    try { _builder.deleteZombieClassFiles(aFile); dependsChanged = JavaData.get(aFile).updateDependencies(); }
+    finally { lock.unlock(); span.end(); }
+
+    // Pass file to imports stage and to dependencies stage (if API changed)
+    put(_importsQ, aFile);
+    if(dependsChanged) put(_depsQ, aFile);
+    else stageDone(true);
+}
+
+/**
+ * Dependencies stage: Finds dependents of file (builder project dependents are queued for builder).
+ */
+private void findDependents(WebFile aFile)
+{
+    Project bproj = _builder._proj;
+    for(WebFile ufile : JavaData.get(aFile).getDependents()) {
+        Project proj = Project.get(ufile);
+        if(proj==bproj) _dependents.add(ufile);
+        else proj.addBuildFileForce(ufile);
+    }
+    stageDone(true);
+}
+
+/**
+ * Imports stage: Finds unused imports for file (unless build was interrupted).
+ */
+private void findUnusedImports(WebFile aFile)
+{
+    if(!_builder._interrupt) { Project proj = _builder._proj;
+        BuildTimeline.Span span = proj.getBuildTimeline().begin(BuildTimeline.IMPORTS, proj.getClassName(aFile), proj);
+        Lock lock = proj.getProjectSet().getClassLoaderLock().readLock(); lock.lock();
+        try { _unusedImports.put(aFile, JavaData.get(aFile).getUnusedImports()); }
+        finally { lock.unlock(); span.end(); }
+    }
+    stageDone(false);
+}
+
+/**
+ * Called when file leaves references/dependencies stages or imports stage.
+ */
+private synchronized void stageDone(boolean isDeps)
+{
+    if(isDeps) _depsCount--; else _importsCount--;
+    notifyAll();
+}
+
+/**
+ * Starts a stage on a shared stage thread to run given action for each file in given queue until end marker.
+ */
+private void startStage(String aName, BlockingQueue <Object> aQueue, Consumer <WebFile> anAction)
+{
+    String name = "BuildPipeline " + aName + ": " + _builder._proj.getName();
+    getExecutor().execute(() -> {
+        Thread thread = Thread.currentThread(); thread.setName(name);
+        try {
+            for(Object item=aQueue.take(); item!=END; item=aQueue.take())
+                anAction.accept((WebFile)item);
+        }
+        catch(InterruptedException e) { }
+        catch(Throwable t) { synchronized(this) { _error = t; notifyAll(); } }
+        finally { thread.setName("BuildPipeline"); }
+    });
+}
+
+/**
+ * Puts item in given queue (waiting if full, unless a stage failed).
+ */
+private void put(BlockingQueue <Object> aQueue, Object anItem)
+{
+    try { while(!aQueue.offer(anItem, 100, TimeUnit.MILLISECONDS)) if(_error!=null) return; }
+    catch(InterruptedException e) { _builder._interrupt = true; Thread.currentThread().interrupt(); }
+}
+
+/**
+ * Returns the shared executor for stage threads. Threads are created as needed (each open pipeline uses three) and
+ * kept for a while when idle, so the next build reuses them (and the grammar rules loaded by their parsers).
+ */
+private static synchronized ExecutorService getExecutor()
+{
+    if(_executor!=null) return _executor;
+    return _executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, THREAD_KEEP_ALIVE, TimeUnit.MINUTES,
+        new SynchronousQueue(), r -> { Thread thread = new Thread(r, "BuildPipeline"); thread.setDaemon(true);
+            return thread; });
+}
+
+/**
+ * Rethrows any exception thrown by a stage.
+ */
+private void checkError()
+{
+    Throwable error = _error; if(error==null) return;
+    if(error instanceof RuntimeException) throw (RuntimeException)error;
+    if(error instanceof Error) throw (Error)error;
+    throw new RuntimeException(error);
+}
+
+}
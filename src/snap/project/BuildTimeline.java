@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.project;
+import java.io.*;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * A class to record timing events for build phases and files (queueing, compile, class write, dependencies update,
+ * unused imports scan, ClassLoader reset), so they can be shown as a timeline and exported as Chrome trace-event JSON.
+ * Events are also emitted as JFR events (when JFR is available and recording). The JFR event class (BuildEventJFR)
+ * is built from a separate source set, since jdk.jfr isn't part of the Java 8 API, and is only called by reflection.
+ */
+public class BuildTimeline {
+
+    // The events
+    List <Event>          _events = new ArrayList();
+
+    // The time of last reset (in nanoseconds)
+    long                  _startTime = System.nanoTime();
+
+    // Constants for phases
+    public static final String BUILD = "Build", QUEUE = "Queue", COMPILE = "Compile", WRITE = "Write";
+    public static final String DEPENDENCIES = "Dependencies", IMPORTS = "Imports", CLASS_LOADER = "ClassLoader";
+
+    // The BuildEventJFR create and commit methods (null if JFR not available) and whether they have been looked up
+    static Method         _jfrCreate, _jfrCommit;
+    static boolean        _jfrChecked;
+
+/**
+ * Clears events (called at start of build).
+ */
+public synchronized void reset()  { _events.clear(); _startTime = System.nanoTime(); }
+
+/**
+ * Returns the time of last reset (in nanoseconds).
+ */
+public synchronized long getStartTime()  { return _startTime; }
+
+/**
+ * Returns the time of last event end (in nanoseconds).
+ */
+public synchronized long getEndTime()
+{
+    long time = _startTime; for(Event event : _events) time = Math.max(time, event._end);
+    return time;
+}
+
+/**
+ * Returns a copy of the events.
+ */
+public synchronized List <Event> getEvents()  { return new ArrayList(_events); }
+
+/**
+ * Starts a span for given phase, name (file class name or description) and project (call Span.end() to record).
+ */
+public Span begin(String aPhase, String aName, Project aProj)  { return new Span(aPhase, aName, aProj); }
+
+/**
+ * Adds an event for given phase, name, project and start/end time (in nanoseconds) on current thread.
+ */
+public void add(String aPhase, String aName, Project aProj, long aStart, long anEnd)
+{
+    Event event = new Event(aPhase, aName, aProj!=null? aProj.getName() : null, aStart, anEnd);
+    synchronized(this) { _events.add(event); }
+}
+
+/**
+ * Returns the total time for each phase (in nanoseconds).
+ */
+public Map <String,Long> getPhaseTimes()
+{
+    Map <String,Long> times = new LinkedHashMap();
+    for(Event event : getEvents()) { Long time = times.get(event._phase);
+        times.put(event._phase, (time!=null? time : 0) + event.getDuration()); }
+    return times;
+}
+
+/**
+ * Returns the events as Chrome trace-event JSON (for chrome://tracing or Perfetto).
+ */
+public String getChromeTrace()
+{
+    // Get events and start time
+    List <Event> events = getEvents(); long start = getStartTime();
+    StringBuffer sb = new StringBuffer("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+
+    // Add thread name metadata events
+    Map <Long,String> threads = new LinkedHashMap();
+    for(Event event : events) threads.put(event._threadId, event._thread);
+    for(Map.Entry <Long,String> entry : threads.entrySet()) {
+        sb.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(entry.getKey());
+        sb.append(",\"args\":{\"name\":"); appendJSON(sb, entry.getValue()); sb.append("}},\n");
+    }
+
+    // Add complete events
+    for(int i=0, iMax=events.size(); i<iMax; i++) { Event event = events.get(i);
+        sb.append("{\"name\":"); appendJSON(sb, event._name);
+        sb.append(",\"cat\":"); appendJSON(sb, event._phase);
+        sb.append(",\"ph\":\"X\",\"ts\":").append((event._start - start)/1000);
+        sb.append(",\"dur\":").append(Math.max(event.getDuration()/1000, 1));
+        sb.append(",\"pid\":1,\"tid\":").append(event._threadId);
+        sb.append(",\"args\":{\"project\":"); appendJSON(sb, event._project); sb.append("}}");
+        sb.append(i+1<iMax? ",\n" : "\n");
+    }
+
+    // Close and return
+    sb.append("]}\n");
+    return sb.toString();
+}
+
+/**
+ * Writes the events as Chrome trace-event JSON to given file.
+ */
+public void writeChromeTrace(File aFile) throws IOException
+{
+    Writer writer = new OutputStreamWriter(new FileOutputStream(aFile), "UTF-8");
+    try { writer.write(getChromeTrace()); }
+    finally { writer.close(); }
+}
+
+/** Appends given string to given buffer as JSON string. */
+private static void appendJSON(StringBuffer aSB, String aStr)
+{
+    if(aStr==null) { aSB.append("null"); return; }
+    aSB.append('"');
+    for(int i=0, iMax=aStr.length(); i<iMax; i++) { char c = aStr.charAt(i);
+        if(c=='"' || c=='\\') aSB.append('\\').append(c);
+        else if(c<' ') aSB.append(String.format("\\u%04x", (int)c));
+        else aSB.append(c);
+    }
+    aSB.append('"');
+}
+
+/**
+ * Returns whether JFR events are available.
+ */
+static synchronized boolean isJFRAvailable()
+{
+    // If already checked, just return
+    if(_jfrChecked) return _jfrCreate!=null; _jfrChecked = true;
+    
+    // Look up JFR and BuildEventJFR create/commit methods (just return false if either is missing)
+    try {
+        Class.forName("jdk.jfr.Event");
+        Class cls = Class.forName("snap.project.BuildEventJFR");
+        Method create = cls.getDeclaredMethod("create");
+        Method commit = cls.getDeclaredMethod("commit", Object.class, String.class, String.class, String.class);
+        create.setAccessible(true); commit.setAccessible(true);
+        _jfrCreate = create; _jfrCommit = commit;
+    }
+    catch(Throwable t) { }
+    return _jfrCreate!=null;
+}
+
+/**
+ * A timing event.
+ */
+public static class Event {
+
+    // The phase, name and project name
+    String    _phase, _name, _project;
+
+    // The thread name and id
+    String    _thread; long _threadId;
+
+    // The start and end time (in nanoseconds)
+    long      _start, _end;
+
+    /** Creates a new event on current thread. */
+    Event(String aPhase, String aName, String aProj, long aStart, long anEnd)
+    {
+        _phase = aPhase; _name = aName; _project = aProj; _start = aStart; _end = anEnd;
+        Thread thread = Thread.currentThread(); _thread = thread.getName(); _threadId = thread.getId();
+    }
+
+    /** Returns the phase. */
+    public String getPhase()  { return _phase; }
+
+    /** Returns the name (file class name or description). */
+    public String getName()  { return _name; }
+
+    /** Returns the project name. */
+    public String getProject()  { return _project; }
+
+    /** Returns the thread name. */
+    public String getThread()  { return _thread; }
+
+    /** Returns the start time (in nanoseconds). */
+    public long getStart()  { return _start; }
+
+    /** Returns the end time (in nanoseconds). */
+    public long getEnd()  { return _end; }
+
+    /** Returns the duration (in nanoseconds). */
+    public long getDuration()  { return _end - _start; }
+}
+
+/**
+ * A span that records an event when ended.
+ */
+public class Span {
+
+    // The phase, name, project and start time
+    String    _phase, _name; Project _proj; long _start = System.nanoTime();
+
+    // The JFR event (if available)
+    Object    _jfrEvent;
+
+    /** Creates a new span. */
+    Span(String aPhase, String aName, Project aProj)
+    {
+        _phase = aPhase; _name = aName; _proj = aProj;
+        if(isJFRAvailable())
+            try { _jfrEvent = _jfrCreate.invoke(null); }
+            catch(Exception e) { System.err.println("BuildTimeline: Failed to create JFR event " + e); }
+    }
+
+    /** Ends span and records event. */
+    public void end()
+    {
+        add(_phase, _name, _proj, _start, System.nanoTime());
+        if(_jfrEvent!=null)
+            try { _jfrCommit.invoke(null, _jfrEvent, _phase, _name, _proj!=null? _proj.getName() : null); }
+            catch(Exception e) { System.err.println("BuildTimeline: Failed to commit JFR event " + e); }
+    }
+}
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.project;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import snap.web.WebFile;
+
+/**
+ * A class to hold compiled class file bytes in memory and write them to the project build directory in batches on a
+ * background thread. Until written, pending class files are available by path and class name (for project
+ * ClassLoader and compiler). Pending files are written on flush, interrupt and exit - if app dies before write, the
+ * class files are just missing or out of date, so their Java files are rebuilt next time. Files are written to a temp
+ * file and renamed into place, so a crash during write never leaves a truncated class file. If a write fails, the file
+ * stays pending, the old class file is deleted (so Java file is rebuilt next time if it never gets written) and the
+ * write is retried with increasing delay.
+ */
+public class ClassFileWriter {
+
+    // The project
+    Project                      _proj;
+
+    // The pending class files (keyed by path) and the bytes they were added with
+    Map <String,WebFile>         _files = new LinkedHashMap();
+    Map <WebFile,byte[]>         _bytes = new HashMap();
+
+    // Whether a write is scheduled
+    boolean                      _writeScheduled;
+
+    // The number of writes in a row that had failed files (for retry delay)
+    int                          _failCount;
+
+    // The delay to let class files accumulate before write and the max delay to retry failed files (in milliseconds)
+    static final int             WRITE_DELAY = 200, MAX_RETRY_DELAY = 30000;
+
+    // The shared background writer executor
+    static ScheduledExecutorService  _executor;
+
+    // All writers (so pending files can be written on exit)
+    static Set <ClassFileWriter> _writers = Collections.newSetFromMap(new WeakHashMap());
+
+/**
+ * Creates a new ClassFileWriter for given project.
+ */
+public ClassFileWriter(Project aProj)
+{
+    _proj = aProj;
+    synchronized(_writers) { _writers.add(this); }
+}
+
+/**
+ * Returns the project.
+ */
+public Project getProject()  { return _proj; }
+
+/**
+ * Adds a class file (with bytes already set) to be written in background.
+ */
+public synchronized void addFile(WebFile aFile)
+{
+    // Add file and bytes
+    _files.put(aFile.getPath(), aFile); _bytes.put(aFile, aFile.getBytes());
+
+    // If write not scheduled, schedule it
+    if(!_writeScheduled) { _writeScheduled = true;
+        getExecutor().schedule(() -> write(), WRITE_DELAY, TimeUnit.MILLISECONDS); }
+}
+
+/**
+ * Removes a pending class file (if file is being deleted).
+ */
+public synchronized void removeFile(WebFile aFile)  { _files.remove(aFile.getPath()); _bytes.remove(aFile); }
+
+/**
+ * Removes all pending class files (if build directory is being deleted).
+ */
+public synchronized void clear()  { _files.clear(); _bytes.clear(); }
+
+/**
+ * Returns whether given class file is waiting to be written.
+ */
+public synchronized boolean isPending(WebFile aFile)  { return _bytes.containsKey(aFile); }
+
+/**
+ * Returns the pending class file for given path.
+ */
+public synchronized WebFile getFile(String aPath)  { return _files.get(aPath); }
+
+/**
+ * Returns the pending class files in given directory.
+ */
+public synchronized List <WebFile> getFiles(String aDirPath)
+{
+    List <WebFile> files = new ArrayList(); String dpath = aDirPath.endsWith("/")? aDirPath : aDirPath + '/';
+    for(Map.Entry <String,WebFile> entry : _files.entrySet()) { String path = entry.getKey();
+        if(path.startsWith(dpath) && path.indexOf('/', dpath.length())<0) files.add(entry.getValue()); }
+    return files;
+}
+
+/**
+ * Returns the bytes of pending class file for given class name.
+ */
+public synchronized byte[] getClassBytes(String aClassName)
+{
+    String path = _proj.getBuildDir().getDirPath() + aClassName.replace('.', '/') + ".class";
+    WebFile file = _files.get(path);
+    return file!=null? _bytes.get(file) : null;
+}
+
+/**
+ * Writes all pending class files now (on calling thread).
+ */
+public void flush()  { write(); }
+
+/**
+ * Writes all pending class files in background and then runs given runnable (on writer thread).
+ */
+public void flushLater(Runnable aRun)  { getExecutor().execute(() -> { write(); aRun.run(); }); }
+
+/**
+ * Writes pending class files.
+ */
+protected void write()
+{
+    // Get pending files
+    Map <WebFile,byte[]> files;
+    synchronized(this) { files = new LinkedHashMap(_bytes); _writeScheduled = false; }
+    if(files.isEmpty()) return;
+    BuildTimeline.Span span = _proj.getBuildTimeline().begin(BuildTimeline.WRITE, files.size() + " class files", _proj);
+
+    // Save files (if file has been removed or re-added since, skip or let next write handle it)
+    boolean failed = false;
+    try {
+        for(Map.Entry <WebFile,byte[]> entry : files.entrySet()) { WebFile file = entry.getKey();
+            synchronized(this) { if(_bytes.get(file)!=entry.getValue()) continue; }
+            boolean saved; try { saved = save(file, entry.getValue()); }
+            catch(Exception e) {
+                System.err.println("ClassFileWriter: Failed to write " + file.getPath() + ": " + e);
+                deleteOld(file); reload(file); failed = true; continue;
+            }
+            
+            // Remove from pending (if written with temp file and not re-added since, reload file from disk)
+            boolean removed = false;
+            synchronized(this) {
+                if(_bytes.get(file)==entry.getValue()) {
+                    _bytes.remove(file); _files.remove(file.getPath()); removed = true; } }
+            if(removed && !saved) reload(file);
+        }
+    }
+    finally { span.end(); }
+
+    // If any file failed, schedule retry with backoff (failed files are still pending), otherwise reset fail count
+    synchronized(this) {
+        if(!failed) { _failCount = 0; return; }
+        int delay = Math.min(WRITE_DELAY << Math.min(++_failCount, 10), MAX_RETRY_DELAY);
+        if(!_writeScheduled) { _writeScheduled = true;
+            getExecutor().schedule(() -> write(), delay, TimeUnit.MILLISECONDS); }
+    }
+}
+
+/**
+ * Saves given class file with given bytes: If local file, writes to temp file in same directory and renames into place,
+ * otherwise just does normal save.
+ *
+ * @return whether file was saved with normal save (otherwise it needs reload).
+ */
+protected boolean save(WebFile aFile, byte theBytes[]) throws IOException
+{
+    // If not local file, just do normal save
+    File file = aFile.getJavaFile();
+    if(file==null) { aFile.save(); return true; }
+
+    // Write bytes to temp file and rename into place
+    File dir = file.getParentFile(); dir.mkdirs();
+    File tfile = File.createTempFile(file.getName(), ".tmp", dir);
+    try {
+        Files.write(tfile.toPath(), theBytes);
+        Files.move(tfile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally { tfile.delete(); }
+    return false;
+}
+
+/**
+ * Reloads given class file written or deleted outside WebFile (and parent directory, if file is new or deleted, so its
+ * files are current).
+ */
+private void reload(WebFile aFile)
+{
+    File file = aFile.getJavaFile(); boolean exists = aFile.getExists();
+    boolean changed = !exists || file!=null && !file.exists(); aFile.reload();
+    if(changed && aFile.getParent()!=null) aFile.getParent().reload();
+}
+
+/**
+ * Deletes the old local class file for given pending file that failed to write (so its Java file is rebuilt next time,
+ * if pending file never gets written).
+ */
+private void deleteOld(WebFile aFile)
+{
+    File file = aFile.getJavaFile();
+    if(file!=null && file.exists() && !file.delete())
+        System.err.println("ClassFileWriter: Failed to delete old " + aFile.getPath());
+}
+
+/**
+ * Writes pending class files of all writers.
+ */
+public static void flushAll()
+{
+    List <ClassFileWriter> writers; synchronized(_writers) { writers = new ArrayList(_writers); }
+    for(ClassFileWriter writer : writers) writer.flush();
+}
+
+/**
+ * Returns the shared background writer executor (and adds shutdown hook to write pending files on exit).
+ */
+private static synchronized ScheduledExecutorService getExecutor()
+{
+    // If already set, just return
+    if(_executor!=null) return _executor;
+
+    // Create executor with daemon thread
+    _executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ClassFileWriter"); thread.setDaemon(true); return thread; });
+
+    // Add shutdown hook to write pending files and return
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> flushAll(), "ClassFileWriterFlush"));
+    return _executor;
+}
+
+}
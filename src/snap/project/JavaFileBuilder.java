@@ -3,7 +3,9 @@
  */
 package snap.project;
 import java.util.*;
+import java.util.concurrent.*;
 import javakit.parse.JavaData;
+import javakit.parse.JavaDataFile;
 import snap.util.*;
 import snap.web.WebFile;
 
@@ -19,14 +21,35 @@ public class JavaFileBuilder implements ProjectFileBuilder {
     Set <WebFile>            _buildFiles = Collections.synchronizedSet(new HashSet());
     
     // Whether to interrupt current build
-    boolean                  _interrupt;
+    volatile boolean         _interrupt;
     
-    // The SnapCompiler used for last compiles
+    // The SnapCompiler used for last compiles (for findUnusedImports)
     SnapCompiler             _compiler;
     
     // The final set of compiled files
     Set <WebFile>            _compiledFiles, _errorFiles;
     
+    // Whether to compile all build files in a single compile task
+    boolean                  _batchCompile = true;
+    
+    // The number of threads to compile independent groups of build files in parallel (batch compile only)
+    int                      _compileThreadCount = getDefaultCompileThreadCount();
+    
+    // The ProjectSet group compilers used for parallel group compiles in current build
+    List <SnapCompiler>      _groupCompilers = new ArrayList();
+    
+    // The class files written for each source file by compiles in current build (for BuildCache)
+    Map <WebFile,List<WebFile>>  _classFiles = new HashMap();
+    
+    // The pipeline to update dependencies and find unused imports of compiled files in background
+    BuildPipeline            _pipeline;
+    
+    // The times build files were queued in current build (for BuildTimeline)
+    Map <WebFile,Long>       _queueTimes = new ConcurrentHashMap();
+    
+    // Constants for compile thread count pref
+    static final String      COMPILE_THREADS_PREF = "CompileThreadCount";
+    
 /**
  * Creates a new JavaFileBuilder for given Project.
  */
@@ -42,16 +65,21 @@ public boolean isBuildFile(WebFile aFile)  { return aFile.getType().equals("java
  */
 public boolean getNeedsBuild(WebFile aFile)
 {
-    // See if Java file has out of date Class file 
+    // See if Java file has out of date Class file (class file waiting to be written is current)
     WebFile cfile = _proj.getClassFile(aFile);
-    boolean needsBuild = !cfile.getExists() || cfile.getLastModTime()<aFile.getLastModTime();
+    boolean needsBuild = !_proj.getClassFileWriter().isPending(cfile) &&
+        (!cfile.getExists() || cfile.getLastModTime()<aFile.getLastModTime());
     
-    // If not out of date, updateDependencies, compatibilities
-    if(!needsBuild && !JavaData.get(aFile).isDependenciesSet()) {
+    // If not out of date, restore dependencies from JavaDataFile or updateDependencies, compatibilities
+    if(!needsBuild && !JavaData.get(aFile).isDependenciesSet() && !JavaDataFile.get(_proj).restore(JavaData.get(aFile))) {
         JavaData.get(aFile).updateDependencies(); needsBuild = true;
         //int c = updateCompatability(aFile); if(c<0) needsBuild=true; if(c!=-2) jdata.updateDependencies();
     }
     
+    // If out of date, make sure API fingerprint of old class files is set (so compile can tell if API changed)
+    else if(needsBuild && cfile.getExists())
+        JavaData.get(aFile).initApiHash();
+    
     // Return NeedsBuild
     return needsBuild;
 }
@@ -81,11 +109,35 @@ public void removeBuildFile(WebFile aFile)
     
     // Get JavaFile.ClassFiles and remove them
     WebFile cfiles[] = _proj.getClassFiles(aFile); if(cfiles==null) return;
-    for(WebFile cfile : cfiles)
-        try { cfile.delete(); }
-        catch(Exception e) { throw new RuntimeException(e); }
+    for(WebFile cfile : cfiles) { boolean pending = _proj.getClassFileWriter().isPending(cfile);
+        _proj.getClassFileWriter().removeFile(cfile);
+        if(!pending || cfile.getExists())
+            try { cfile.delete(); }
+            catch(Exception e) { throw new RuntimeException(e); }
+    }
 }
 
+/**
+ * Returns whether builder compiles all build files in a single compile task (if it fails, files without errors are
+ * compiled again as one batch, falling back to single file compiles only if that fails too).
+ */
+public boolean isBatchCompile()  { return _batchCompile; }
+
+/**
+ * Sets whether builder compiles all build files in a single compile task.
+ */
+public void setBatchCompile(boolean aValue)  { _batchCompile = aValue; }
+
+/**
+ * Returns the number of threads used to compile independent groups of build files in parallel (batch compile only).
+ */
+public int getCompileThreadCount()  { return _compileThreadCount; }
+
+/**
+ * Sets the number of threads used to compile independent groups of build files in parallel (1 for single batch).
+ */
+public void setCompileThreadCount(int aValue)  { _compileThreadCount = Math.max(aValue, 1); }
+
 /**
  * Compiles files.
  */
@@ -93,105 +145,603 @@ public boolean buildFiles(TaskMonitor aTaskMonitor)
 {
     if(_buildFiles.size()==0) return true;
     List <WebFile> files = new ArrayList(_buildFiles); _buildFiles.clear();
-    SnapCompiler compiler = new SnapCompiler(_proj);
+    SnapCompiler compiler = _proj.getProjectSet().getCompiler(); compiler.resetBuild();
     Set <WebFile> compiledFiles = new HashSet(), errorFiles = new HashSet();
     
-    // Reset Interrupt flag
-    _interrupt = false;
+    // Reset Interrupt flag, class files and queue times
+    _interrupt = false; _classFiles.clear(); _queueTimes.clear();
+    long time = System.nanoTime(); for(WebFile file : files) _queueTimes.put(file, time);
     
-    // Iterate over build files and compile
-    boolean compileSuccess = true; //long time = System.currentTimeMillis();
-    for(int i=0; i<files.size(); i++) { WebFile file = files.get(i);
+    // Create new pipeline (closing previous one, if findUnusedImports wasn't called)
+    if(_pipeline!=null) _pipeline.close();
+    _pipeline = new BuildPipeline(this);
+    
+    // Compile files in batches or one at a time
+    boolean compileSuccess = _batchCompile? buildFilesBatch(compiler, files, compiledFiles, errorFiles, aTaskMonitor) :
+        buildFilesSingle(compiler, files, 0, compiledFiles, errorFiles, aTaskMonitor);
+    
+    // If ProjectSet group compilers were reset during build, close the ones used
+    for(SnapCompiler gcompiler : _groupCompilers)
+        if(!_proj.getProjectSet().isGroupCompiler(gcompiler)) gcompiler.close();
+    _groupCompilers.clear();
+    
+    // If ProjectSet compiler was reset during build (class path changed), close this one
+    if(compiler!=_proj.getProjectSet()._compiler)
+        compiler.close();
+    
+    // Wait for pipeline to finish updating dependencies (any dependents not compiled are left for next build)
+    for(WebFile file : _pipeline.awaitDependents())
+        if(!compiledFiles.contains(file)) addBuildFile(file);
+    
+    // If interrupted, close pipeline, write compiled class files now and return
+    if(_interrupt) {
+        _pipeline.close(); _pipeline = null;
+        _proj.getClassFileWriter().flush(); return false;
+    }
+    
+    // Finalize TaskMonitor
+    aTaskMonitor.beginTask("Build Completed", -1); aTaskMonitor.endTask();
+    
+    // Set compiler/files for findUnusedImports
+    _compiler = compiler; _compiledFiles = compiledFiles; _errorFiles = errorFiles;
+    
+    // Save dependency info for next session (after class files are written, since it records their mod times)
+    JavaDataFile jdataFile = JavaDataFile.get(_proj);
+    Set <WebFile> savedFiles = new HashSet(compiledFiles);
+    _proj.getClassFileWriter().flushLater(() -> jdataFile.save(savedFiles));
+    
+    // Add compiled class files to BuildCache (if enabled)
+    BuildCache cache = BuildCache.get();
+    if(cache!=null) addToBuildCache(cache, compiler, compiledFiles, errorFiles);
+    _classFiles.clear();
+    
+    // Finalize ActivityText and return
+    //System.out.println("Build time: " + (System.currentTimeMillis()-time)/1000f + " seconds");
+    return compileSuccess;
+}
+
+/**
+ * Compiles given files (and any dependents found along the way) with one compile task per round.
+ */
+private boolean buildFilesBatch(SnapCompiler aCompiler, List <WebFile> theFiles, Set <WebFile> compiledFiles,
+    Set <WebFile> errorFiles, TaskMonitor aTaskMonitor)
+{
+    // Iterate over rounds of build files (dependents of modified files are added to end of list)
+    boolean compileSuccess = true;
+    for(int start=0; hasBuildFiles(start, theFiles, compiledFiles); ) {
     
         // If interrupted, add remaining build files and return
         if(_interrupt) {
-            for(int j=i, jMax=files.size(); j<jMax; j++) addBuildFile(files.get(j)); return false; }
+            for(int j=start, jMax=theFiles.size(); j<jMax; j++) addBuildFile(theFiles.get(j)); return false; }
+        
+        // Get batch of files not yet compiled
+        List <WebFile> batch = new ArrayList();
+        for(int i=start, iMax=theFiles.size(); i<iMax; i++) { WebFile file = theFiles.get(i);
+            if(!compiledFiles.contains(file)) batch.add(file); }
+        start = theFiles.size();
+        if(batch.size()==0) continue;
         
         // Update progress
-        if(compiledFiles.contains(file)) continue; //System.err.println("Skipping " + finfo);
-        int count = compiledFiles.size() + 1;
-        String msg = String.format("Compiling %s (%d of %d)", _proj.getClassName(file), count, files.size());
+        String msg = batch.size()==1? String.format("Compiling %s", _proj.getClassName(batch.get(0))) :
+            String.format("Compiling %d files (%d of %d)", batch.size(), compiledFiles.size() + 1, theFiles.size());
         aTaskMonitor.beginTask(msg, -1);
         
-        // Get compile file
-        boolean result = compiler.compile(file);
+        // Compile batch (as independent groups in parallel, if there are multiple compile threads)
+        boolean result = _compileThreadCount>1 && batch.size()>1?
+            compileBatchParallel(aCompiler, batch, theFiles, compiledFiles, errorFiles) :
+            compileBatch(aCompiler, batch, theFiles, compiledFiles, errorFiles);
         aTaskMonitor.endTask();
+        if(result) continue;
         
-        // If compile failed, re-add file to BuildFiles and continue
-        if(!result) {
-            compiledFiles.add(file); errorFiles.add(file);
-            addBuildFile(file);
-            if(compiler._errorCount>=1000) _interrupt = true;
-            compileSuccess = false; continue;
-        }
-        
-        // Add Compiler.CompiledFiles to CompiledFiles
-        compiledFiles.addAll(compiler.getCompiledJavaFiles());
+        // If compile failed, compile remaining batch files (without files that had errors) again as one batch
+        compileSuccess = false;
+        if(aCompiler._errorCount>=1000) _interrupt = true;
+        List <WebFile> batch2 = getUncompiledFiles(batch, compiledFiles);
+        if(_interrupt) { for(WebFile file : batch2) addBuildFile(file); continue; }
+        if(batch2.isEmpty()) continue;
         
-        // If there were modified files, clear Project.ClassLoader
-        if(compiler.getModifiedJavaFiles().size()>0)
-            _proj.clearClassLoader();
+        // Compile again (unless no batch files had errors - then errors came from files javac found on source path and
+        // same batch would just fail again)
+        if(batch2.size()<batch.size()) {
+            aTaskMonitor.beginTask(String.format("Compiling %d files without errors", batch2.size()), -1);
+            result = compileBatch(aCompiler, batch2, theFiles, compiledFiles, errorFiles);
+            aTaskMonitor.endTask();
+            if(result) continue;
+        }
         
-        // Iterate over JavaFiles for modified ClassFiles and update
-        for(WebFile jfile : compiler.getModifiedJavaFiles()) {
+        // If that failed too (files without errors failed), compile remaining files one at a time to isolate them
+        if(aCompiler._errorCount>=1000) _interrupt = true;
+        List <WebFile> singles = getUncompiledFiles(batch2, compiledFiles);
+        for(int i=0, iMax=singles.size(); i<iMax; i++) { WebFile file = singles.get(i);
+            if(_interrupt) { for(int j=i; j<iMax; j++) addBuildFile(singles.get(j)); break; }
+            if(!compiledFiles.contains(file))
+                compileFile(aCompiler, file, theFiles, compiledFiles, errorFiles, aTaskMonitor);
+        }
+    }
+    
+    // Return success
+    return compileSuccess;
+}
+
+/**
+ * Returns the given files that haven't been compiled (or failed with errors).
+ */
+private static List <WebFile> getUncompiledFiles(List <WebFile> theFiles, Set <WebFile> compiledFiles)
+{
+    List <WebFile> files = new ArrayList();
+    for(WebFile file : theFiles) if(!compiledFiles.contains(file)) files.add(file);
+    return files;
+}
+
+/**
+ * Compiles given batch of files in a single compile task and updates compiled/error files (and build files, if
+ * modified files have dependents).
+ */
+private boolean compileBatch(SnapCompiler aCompiler, List <WebFile> theBatch, List <WebFile> theFiles,
+    Set <WebFile> compiledFiles, Set <WebFile> errorFiles)
+{
+    // Compile batch
+    addQueueEvents(theBatch);
+    boolean result = aCompiler.compile(theBatch);
+    
+    // Add Compiler.CompiledFiles to CompiledFiles and pipeline
+    _classFiles.putAll(aCompiler.getClassFiles());
+    updateCompiledFiles(aCompiler.getCompiledJavaFiles(), aCompiler.getModifiedJavaFiles(), theFiles, compiledFiles);
+    
+    // If compile failed, mark error files and re-add to BuildFiles
+    if(!result)
+        for(WebFile efile : aCompiler.getErrorJavaFiles()) {
+            compiledFiles.add(efile); errorFiles.add(efile); addBuildFile(efile); }
+    return result;
+}
+
+/**
+ * Compiles given batch of files as groups of strongly connected files (see getCompileGroups). Independent groups
+ * compile in parallel on a bounded pool of compilers (a group starts once the groups it depends on have compiled) and
+ * results are merged in dependency order. If dependencies aren't known, compiles as single batch. Any files not
+ * compiled (because a group failed or build was interrupted) are left for caller.
+ */
+private boolean compileBatchParallel(SnapCompiler aCompiler, List <WebFile> theBatch, List <WebFile> theFiles,
+    Set <WebFile> compiledFiles, Set <WebFile> errorFiles)
+{
+    // Wait for pipeline to update dependencies of files compiled so far, so they are current
+    addDependents(_pipeline.awaitDependents(), theFiles, compiledFiles);
+    
+    // Get compile groups (in dependency order) - if dependencies unknown or only one group, compile as single batch
+    List <CompileGroup> groups = getCompileGroups(aCompiler, theBatch);
+    if(groups==null || groups.size()==1)
+        return compileBatch(aCompiler, theBatch, theFiles, compiledFiles, errorFiles);
+    
+    // Get pool of group compilers
+    int threadCount = Math.min(_compileThreadCount, groups.size());
+    BlockingQueue <SnapCompiler> compilers = new ArrayBlockingQueue(threadCount);
+    for(int i=0; i<threadCount; i++) compilers.add(getGroupCompiler(aCompiler, i));
+    
+    // Create executor
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    CompletionService <CompileGroup> service = new ExecutorCompletionService(executor);
+    List <CompileGroup> pending = new ArrayList(groups);
+    Set <CompileGroup> compiled = new HashSet();
+    int running = 0, errorCount = aCompiler._errorCount; boolean success = true, done = false;
+    
+    // Iterate until all groups are compiled (or a group fails and running compiles have finished)
+    try {
+        while(true) {
             
-            // Delete class files for removed inner classes
-            deleteZombieClassFiles(jfile);
+            // Start any pending groups whose dependencies are all compiled
+            if(success && !_interrupt) for(Iterator <CompileGroup> i=pending.iterator(); i.hasNext(); ) {
+                CompileGroup group = i.next();
+                if(!compiled.containsAll(group._deps)) continue;
+                i.remove(); running++;
+                service.submit(() -> group.compile(compilers, this));
+            }
             
-            // Update dependencies and get files that need to be updated
-            JavaData jdata = JavaData.get(jfile);
-            boolean dependsChanged = jdata.updateDependencies();
-            if(!dependsChanged) continue;
+            // If nothing running, we're done
+            if(running==0) break;
             
-            // Iterate over Java files dependent on loop JavaFile and mark for update
-            Set <WebFile> updateFiles = jdata.getDependents();
-            for(WebFile ufile : updateFiles) {
-                Project proj = Project.get(ufile);
-                if(proj==_proj) {
-                    if(!compiledFiles.contains(ufile) && !ListUtils.containsId(files, ufile))
-                        files.add(ufile); }
-                else proj.addBuildFileForce(ufile);
-            }
+            // Wait for next compile to finish and add to compiled groups (or clear success)
+            CompileGroup group = service.take().get(); running--;
+            if(group._success) compiled.add(group);
+            else success = false;
+            errorCount += group._errorCount; if(errorCount>=1000) _interrupt = true;
         }
+        done = true;
     }
     
-    // Finalize TaskMonitor
-    aTaskMonitor.beginTask("Build Completed", -1); aTaskMonitor.endTask();
+    // If interrupted, set interrupt flags (remaining files get added back to build files)
+    catch(InterruptedException e) { _interrupt = true; Thread.currentThread().interrupt(); }
     
-    // Set compiler/files for findUnusedImports
-    _compiler = compiler; _compiledFiles = compiledFiles; _errorFiles = errorFiles;
+    // If compile threw exception, rethrow
+    catch(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if(cause instanceof RuntimeException) throw (RuntimeException)cause;
+        if(cause instanceof Error) throw (Error)cause;
+        throw new RuntimeException(cause);
+    }
     
-    // Finalize ActivityText and return
-    //System.out.println("Build time: " + (System.currentTimeMillis()-time)/1000f + " seconds");
+    // Shutdown executor (if interrupted, wait for running compiles)
+    finally {
+        executor.shutdown();
+        if(!done)
+            try { executor.awaitTermination(1, TimeUnit.MINUTES); }
+            catch(InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+    
+    // Merge group results in dependency order
+    for(CompileGroup group : groups) {
+        if(group._compiled==null) continue;
+        aCompiler._errorCount += group._errorCount;
+        _classFiles.putAll(group._classFiles);
+        updateCompiledFiles(group._compiled, group._modified, theFiles, compiledFiles);
+        for(WebFile efile : group._errors) {
+            compiledFiles.add(efile); errorFiles.add(efile); addBuildFile(efile); }
+    }
+    
+    // Return whether all groups compiled successfully
+    return success && done && pending.isEmpty();
+}
+
+/**
+ * Returns the ProjectSet group compiler at given index (reset for current build on first use, sharing given compiler
+ * source index).
+ */
+private SnapCompiler getGroupCompiler(SnapCompiler aCompiler, int anIndex)
+{
+    SnapCompiler compiler = _proj.getProjectSet().getGroupCompiler(anIndex);
+    if(!ListUtils.containsId(_groupCompilers, compiler)) {
+        compiler.resetBuild(); compiler._srcIndex = aCompiler.getSourceIndex();
+        _groupCompilers.add(compiler);
+    }
+    return compiler;
+}
+
+/**
+ * Returns given batch files as groups of strongly connected files, in dependency order (or null if dependencies
+ * aren't known). Dependencies come from current build state: Batch files depend on the project files named by
+ * identifiers in their current source (as file simple name or type declared in a batch file), so edits since last
+ * build are seen. Other project files aren't being built, so their JavaData dependencies (from class files) are current
+ * if set - if any on a path between batch files isn't set, returns null.
+ */
+private List <CompileGroup> getCompileGroups(SnapCompiler aCompiler, List <WebFile> theBatch)
+{
+    // Get names of types declared in batch files (to find secondary and inner types)
+    Map <String,List<WebFile>> batchTypes = new HashMap();
+    for(WebFile file : theBatch) {
+        String tnames[] = JavaData.get(file).getFileNames().getTypeNames(); if(tnames==null) return null;
+        for(String tname : tnames) batchTypes.computeIfAbsent(tname, k -> new ArrayList()).add(file);
+    }
+    
+    // Find strongly connected groups (Tarjan's algorithm - groups are found in dependency order)
+    GroupFinder finder = new GroupFinder(theBatch, aCompiler.getSourceIndex()._names, batchTypes);
+    for(WebFile file : theBatch)
+        if(!finder._indexes.containsKey(file) && !finder.visit(file))
+            return null;
+    return finder._groups;
+}
+
+/**
+ * Compiles given files (and any dependents found along the way) one at a time.
+ */
+private boolean buildFilesSingle(SnapCompiler aCompiler, List <WebFile> theFiles, int aStart,
+    Set <WebFile> compiledFiles, Set <WebFile> errorFiles, TaskMonitor aTaskMonitor)
+{
+    // Iterate over build files and compile
+    boolean compileSuccess = true; //long time = System.currentTimeMillis();
+    for(int i=aStart; hasBuildFiles(i, theFiles, compiledFiles); i++) { WebFile file = theFiles.get(i);
+    
+        // If interrupted, add remaining build files and return
+        if(_interrupt) {
+            for(int j=i, jMax=theFiles.size(); j<jMax; j++) addBuildFile(theFiles.get(j)); return false; }
+        
+        // Compile file
+        if(compiledFiles.contains(file)) continue; //System.err.println("Skipping " + finfo);
+        if(!compileFile(aCompiler, file, theFiles, compiledFiles, errorFiles, aTaskMonitor))
+            compileSuccess = false;
+    }
+    
+    // Return success
     return compileSuccess;
 }
 
+/**
+ * Compiles a single file and updates compiled/error files (and build files, if modified files have dependents).
+ */
+private boolean compileFile(SnapCompiler aCompiler, WebFile aFile, List <WebFile> theFiles,
+    Set <WebFile> compiledFiles, Set <WebFile> errorFiles, TaskMonitor aTaskMonitor)
+{
+    // Update progress
+    int count = compiledFiles.size() + 1;
+    String msg = String.format("Compiling %s (%d of %d)", _proj.getClassName(aFile), count, theFiles.size());
+    aTaskMonitor.beginTask(msg, -1);
+    
+    // Compile file
+    addQueueEvents(Collections.singletonList(aFile));
+    boolean result = aCompiler.compile(aFile);
+    aTaskMonitor.endTask();
+    
+    // If compile failed, re-add file to BuildFiles and return
+    if(!result) {
+        compiledFiles.add(aFile); errorFiles.add(aFile);
+        addBuildFile(aFile);
+        if(aCompiler._errorCount>=1000) _interrupt = true;
+        return false;
+    }
+    
+    // Add Compiler.CompiledFiles to CompiledFiles and pipeline and return true
+    _classFiles.putAll(aCompiler.getClassFiles());
+    updateCompiledFiles(aCompiler.getCompiledJavaFiles(), aCompiler.getModifiedJavaFiles(), theFiles, compiledFiles);
+    return true;
+}
+
+/**
+ * Adds given compiled files to CompiledFiles and pipeline (modified files get dependencies updated in background) and
+ * adds any dependents found so far that need to be compiled to given list.
+ */
+private void updateCompiledFiles(Set <WebFile> theCompiled, Set <WebFile> theModified, List <WebFile> theFiles,
+    Set <WebFile> compiledFiles)
+{
+    // If there were modified files, clear Project.ClassLoader (waits only for the file each pipeline stage is on to
+    // release ClassLoader read lock - files still queued are analyzed with new ClassLoader)
+    if(theModified.size()>0) {
+        BuildTimeline.Span span = _proj.getBuildTimeline().begin(BuildTimeline.CLASS_LOADER, "Reset ClassLoader", _proj);
+        try { _proj.clearClassLoader(); }
+        finally { span.end(); }
+    }
+    
+    // Add compiled files to CompiledFiles and pipeline
+    for(WebFile jfile : theCompiled) {
+        if(!compiledFiles.add(jfile)) continue;
+        if(theModified.contains(jfile)) _pipeline.addModifiedFile(jfile);
+        else _pipeline.addCompiledFile(jfile);
+    }
+    
+    // Add dependents found so far
+    addDependents(_pipeline.getDependents(), theFiles, compiledFiles);
+}
+
+/**
+ * Adds given dependents that need to be compiled to given list.
+ */
+private void addDependents(List <WebFile> theDependents, List <WebFile> theFiles, Set <WebFile> compiledFiles)
+{
+    for(WebFile ufile : theDependents)
+        if(!compiledFiles.contains(ufile) && !ListUtils.containsId(theFiles, ufile)) {
+            theFiles.add(ufile); _queueTimes.put(ufile, System.nanoTime()); }
+}
+
+/**
+ * Adds BuildTimeline queue events for given files (from time they were queued in build to now).
+ */
+void addQueueEvents(Collection <WebFile> theFiles)
+{
+    BuildTimeline timeline = _proj.getBuildTimeline(); long time = System.nanoTime();
+    for(WebFile file : theFiles) { Long qtime = _queueTimes.remove(file);
+        if(qtime!=null) timeline.add(BuildTimeline.QUEUE, _proj.getClassName(file), _proj, qtime, time); }
+}
+
+/**
+ * Returns whether there are build files at or after given index (waiting for pipeline to find dependents, if needed).
+ */
+private boolean hasBuildFiles(int anIndex, List <WebFile> theFiles, Set <WebFile> compiledFiles)
+{
+    if(anIndex<theFiles.size()) return true;
+    addDependents(_pipeline.awaitDependents(), theFiles, compiledFiles);
+    return anIndex<theFiles.size();
+}
+
+/**
+ * Adds class files for compiled files to given BuildCache (skipping files with errors, warnings or unknown dependencies)
+ * and trims cache.
+ */
+private void addToBuildCache(BuildCache aCache, SnapCompiler aCompiler, Set <WebFile> compiledFiles,
+    Set <WebFile> errorFiles)
+{
+    BuildIssues buildIssues = _proj.getRootProject().getBuildIssues();
+    for(Map.Entry <WebFile,List<WebFile>> entry : _classFiles.entrySet()) { WebFile jfile = entry.getKey();
+        if(!compiledFiles.contains(jfile) || errorFiles.contains(jfile)) continue;
+        if(!JavaData.get(jfile).isDependenciesSet()) continue;
+        synchronized(buildIssues) { if(buildIssues.getIssues(jfile).length>0) continue; }
+        aCache.putClassFiles(aCompiler, jfile, entry.getValue());
+    }
+    aCache.trim();
+}
+
 /**
  * Checks last set of compiled files for unused imports.
  */
 public void findUnusedImports()
 {
+    // If no compiled files, just return
     if(_compiler==null) return;
-    for(WebFile cfile : _compiledFiles) { JavaData jdata = JavaData.get(cfile);
-        if(_errorFiles.contains(cfile)) continue;
-        for(BuildIssue bissue : jdata.getUnusedImports())
+    
+    // Wait for pipeline to find unused imports for compiled files and close it
+    Map <WebFile,List<BuildIssue>> unusedImports = _pipeline.awaitUnusedImports();
+    _pipeline.close(); _pipeline = null;
+    
+    // Report unused imports for compiled files without errors
+    for(WebFile cfile : _compiledFiles) { List <BuildIssue> issues = unusedImports.get(cfile);
+        if(issues==null || _errorFiles.contains(cfile)) continue;
+        for(BuildIssue bissue : issues)
             _compiler.report(bissue); }
     _compiler = null; _compiledFiles = _errorFiles = null;
 }
 
+/**
+ * Returns the default number of threads to compile independent groups of build files in parallel (from prefs - 1, so
+ * batches compile as one, unless set).
+ */
+public static int getDefaultCompileThreadCount()
+{
+    return Math.max((int)Prefs.get().getDouble(COMPILE_THREADS_PREF, 1), 1);
+}
+
+/**
+ * Sets the default number of threads to compile independent groups of build files in parallel (in prefs).
+ */
+public static void setDefaultCompileThreadCount(int aValue)
+{
+    Prefs.get().setValue(COMPILE_THREADS_PREF, Math.max(aValue, 1)); Prefs.get().flush();
+}
+
 /**
  * Delete inner-class class files that were generated in older version of class.
  */
-private void deleteZombieClassFiles(WebFile aJavaFile)
+void deleteZombieClassFiles(WebFile aJavaFile)
 {
-    // Get all ClassFiles for JavaFile and delete those older than JavaFile
+    // Get all ClassFiles for JavaFile and delete those older than JavaFile (skip those waiting to be written)
     WebFile cfiles[] = _proj.getClassFiles(aJavaFile); if(cfiles==null) return;
     for(WebFile cfile : cfiles) {
-        if(cfile.getLastModTime()<aJavaFile.getLastModTime()) {
+        if(cfile.getLastModTime()<aJavaFile.getLastModTime() && !_proj.getClassFileWriter().isPending(cfile)) {
             try { cfile.delete(); }
             catch(Exception e) { throw new RuntimeException(e); }
         }
     }
 }
 
+/**
+ * A group of strongly connected build files that are compiled together.
+ */
+private static class CompileGroup {
+
+    // The files in group
+    List <WebFile>      _files = new ArrayList();
+    
+    // The groups that files in this group depend on
+    Set <CompileGroup>  _deps = new HashSet();
+    
+    // Whether compile succeeded and the number of errors from compile
+    boolean             _success; int _errorCount;
+    
+    // The compiled, modified and error files from compile
+    Set <WebFile>       _compiled, _modified, _errors;
+    
+    // The class files written for each source file by compile
+    Map <WebFile,List<WebFile>>  _classFiles;
+    
+    /** Compiles group files with a compiler from given pool. */
+    CompileGroup compile(BlockingQueue <SnapCompiler> thePool, JavaFileBuilder aBuilder) throws InterruptedException
+    {
+        SnapCompiler compiler = thePool.take();
+        try {
+            aBuilder.addQueueEvents(_files); int errorCount = compiler._errorCount;
+            _success = compiler.compile(_files); _errorCount = compiler._errorCount - errorCount;
+            _compiled = new HashSet(compiler.getCompiledJavaFiles());
+            _modified = new HashSet(compiler.getModifiedJavaFiles());
+            _errors = new HashSet(compiler.getErrorJavaFiles());
+            _classFiles = new HashMap(compiler.getClassFiles());
+        }
+        finally { thePool.put(compiler); }
+        return this;
+    }
+}
+
+/**
+ * Finds the strongly connected groups of batch files (Tarjan's algorithm) through batch files and other files of
+ * batch project. Groups are found in dependency order.
+ */
+private static class GroupFinder {
+
+    // The batch files and their project
+    Set <WebFile>                   _batch; Project _proj;
+    
+    // The project Java files for simple name and the batch files for declared type name
+    Map <String,List<WebFile>>      _names, _batchTypes;
+    
+    // The index and lowlink for visited files, the stack of visited files and the dependencies of visited files
+    Map <WebFile,int[]>             _indexes = new HashMap();
+    Deque <WebFile>                 _stack = new ArrayDeque(); Set <WebFile> _onStack = new HashSet();
+    Map <WebFile,List<WebFile>>     _deps = new HashMap();
+    
+    // The group for batch files and the groups depended on through other files (for visited files)
+    Map <WebFile,CompileGroup>      _fileGroups = new HashMap();
+    Map <WebFile,Set<CompileGroup>> _fileGroupDeps = new HashMap();
+    
+    // The groups found
+    List <CompileGroup>             _groups = new ArrayList();
+    
+    /** Creates a new GroupFinder. */
+    GroupFinder(List <WebFile> theBatch, Map <String,List<WebFile>> theNames, Map <String,List<WebFile>> theTypes)
+    {
+        _batch = new HashSet(theBatch); _proj = Project.get(theBatch.get(0));
+        _names = theNames; _batchTypes = theTypes;
+    }
+    
+    /** Visits given file (Tarjan strongconnect step). Returns false if dependencies of a file aren't known. */
+    boolean visit(WebFile aFile)
+    {
+        // Set index and lowlink and push file
+        int index[] = { _indexes.size(), _indexes.size() };
+        _indexes.put(aFile, index); _stack.push(aFile); _onStack.add(aFile);
+        
+        // Get dependencies (just return if unknown)
+        List <WebFile> deps = getDependencies(aFile); if(deps==null) return false;
+        _deps.put(aFile, deps);
+        
+        // Iterate over dependencies
+        for(WebFile dep : deps) {
+            int dindex[] = _indexes.get(dep);
+            if(dindex==null) {
+                if(!visit(dep)) return false;
+                index[1] = Math.min(index[1], _indexes.get(dep)[1]);
+            }
+            else if(_onStack.contains(dep))
+                index[1] = Math.min(index[1], dindex[0]);
+        }
+        
+        // If file is root of strongly connected files, pop them and add group for batch files (if any)
+        if(index[1]==index[0]) {
+            List <WebFile> files = new ArrayList(); WebFile file;
+            do { file = _stack.pop(); _onStack.remove(file); files.add(file); } while(file!=aFile);
+            addGroup(files);
+        }
+        return true;
+    }
+    
+    /** Adds group for batch files in given strongly connected files (or their group dependencies, if none). */
+    void addGroup(List <WebFile> theFiles)
+    {
+        // Get groups that files depend on (directly or through other files)
+        Set <CompileGroup> gdeps = new HashSet();
+        for(WebFile file : theFiles)
+            for(WebFile dep : _deps.get(file)) {
+                if(theFiles.contains(dep)) continue;
+                CompileGroup dgroup = _fileGroups.get(dep);
+                if(dgroup!=null) gdeps.add(dgroup);
+                else gdeps.addAll(_fileGroupDeps.get(dep));
+            }
+        
+        // Create group for batch files (if none, just set group dependencies for files)
+        CompileGroup group = new CompileGroup(); group._deps = gdeps;
+        for(WebFile file : theFiles) if(_batch.contains(file)) group._files.add(file);
+        if(group._files.isEmpty()) { for(WebFile file : theFiles) _fileGroupDeps.put(file, gdeps); return; }
+        for(WebFile file : theFiles) _fileGroups.put(file, group);
+        _groups.add(group);
+    }
+    
+    /** Returns the project files given file depends on (or null if unknown). */
+    List <WebFile> getDependencies(WebFile aFile)
+    {
+        // Handle batch file: Get project files named by identifiers in current source
+        Set <WebFile> deps = new LinkedHashSet();
+        if(_batch.contains(aFile)) {
+            String names[] = JavaData.get(aFile).getFileNames().getNames(); if(names==null) return null;
+            for(String name : names) {
+                List <WebFile> files = _names.get(name); if(files!=null) deps.addAll(files);
+                files = _batchTypes.get(name); if(files!=null) deps.addAll(files);
+            }
+        }
+        
+        // Handle other file: Get JavaData dependencies (if not set, return null)
+        else { JavaData jdata = JavaData.get(aFile);
+            synchronized(jdata) { if(!jdata.isDependenciesSet()) return null;
+                deps.addAll(jdata.getDependencies()); }
+        }
+        
+        // Remove file and files of other projects (they can't depend on batch files) and return
+        deps.remove(aFile);
+        deps.removeIf(file -> Project.get(file)!=_proj);
+        return new ArrayList(deps);
+    }
+}
+
 }
\ No newline at end of file
@@ -2,7 +2,6 @@
  * Copyright (c) 2010, ReportMill Software. All rights reserved.
  */
 package snap.project;
-import java.io.Closeable;
 import java.net.*;
 import java.util.*;
 import javakit.parse.JavaDecl;
@@ -37,6 +36,9 @@ public class Project {
     // The ClassLoader for compiled class info
     ClassLoader                        _clsLdr;
     
+    // The writer to write compiled class files to build dir in background
+    ClassFileWriter                    _classFileWriter = new ClassFileWriter(this);
+    
     // The project that loaded us
     Project                            _parent;
     
@@ -139,7 +141,7 @@ public JavaDecl getJavaDecl(Object anObj)
     // If not RootProject, forward to RootProject
     Project rproj = getRootProject(); if(rproj!=this) return rproj.getJavaDecl(anObj);
     
-    // Forward to JavaDeclOwner
+    // Forward to JavaDeclOwner (thread safe, since dependent projects can build in parallel)
     return _javaDeclOwnr.getJavaDecl(anObj);
 }
 
@@ -159,6 +161,13 @@ private class ProjJavaDeclOwner extends JavaDeclOwner {
     
     /** Override to return project ClassLoader. */
     public ClassLoader getClassLoader()  { return Project.this.getClassLoader(); }
+    
+    /** Override to return compiled class bytes not yet written to build dir. */
+    public byte[] getClassBytes(String aName)
+    {
+        byte bytes[] = getProjectSet().getClassBytes(aName);
+        return bytes!=null? bytes : super.getClassBytes(aName);
+    }
 }
 
 /**
@@ -186,7 +195,8 @@ public WebFile getBuildFile(String aPath, boolean doCreate, boolean isDir)
     String path = aPath, spath = getSourceDir().getDirPath(), bpath = getBuildDir().getPath();
     if(spath.length()>1 && path.startsWith(spath)) path = path.substring(spath.length() - 1);
     if(bpath.length()>1 && !path.startsWith(bpath)) path = bpath + path;
-    WebFile file = getBuildDir().getSite().getFile(path);
+    WebFile file = _classFileWriter.getFile(path);
+    if(file==null) file = getBuildDir().getSite().getFile(path);
     
     // If file still not found, maybe create and return
     if(file==null && doCreate) file = getBuildDir().getSite().createFile(path, isDir);
@@ -267,6 +277,9 @@ public WebFile[] getClassFiles(WebFile aFile)
     for(WebFile file : cfile.getParent().getFiles())
         if(file.getType().equals("class") && file.getName().startsWith(cfilePrefix))
             files.add(file);
+    for(WebFile file : _classFileWriter.getFiles(cfile.getParent().getPath()))
+        if(file.getName().startsWith(cfilePrefix) && !ListUtils.containsId(files, file))
+            files.add(file);
     return files.toArray(new WebFile[files.size()]);
 }
 
@@ -291,7 +304,7 @@ public String getPackageName(WebFile aFile)
 /**
  * Returns the project class loader.
  */
-public ClassLoader getClassLoader()
+public synchronized ClassLoader getClassLoader()
 {
     // If RootProject, return RootProject.ClassLoader
     Project rproj = getRootProject(); if(rproj!=this) return rproj.getClassLoader();
@@ -303,12 +316,23 @@ public ClassLoader getClassLoader()
     String cpaths[] = getProjectSet().getClassPaths();
     URL urls[] = FilePathUtils.getURLs(cpaths);
     ClassLoader cldr = ClassLoader.getSystemClassLoader().getParent();
-    return _clsLdr = new ProjectClassLoaderX(urls, cldr);
+    return _clsLdr = new ProjectClassLoaderX(urls, cldr, this);
 }
 
 /** Needs unique name so that when debugging SnapCode, we can ignore classes loaded by Project. */
 public static class ProjectClassLoaderX extends URLClassLoader {
-    public ProjectClassLoaderX(URL urls[], ClassLoader aPar) { super(urls, aPar); }}
+    Project _proj;
+    public ProjectClassLoaderX(URL urls[], ClassLoader aPar) { super(urls, aPar); }
+    public ProjectClassLoaderX(URL urls[], ClassLoader aPar, Project aProj) { super(urls, aPar); _proj = aProj; }
+    
+    /** Override to define classes from compiled class files not yet written to build dir. */
+    protected Class <?> findClass(String aName) throws ClassNotFoundException
+    {
+        byte bytes[] = _proj!=null? _proj.getProjectSet().getClassBytes(aName) : null;
+        if(bytes!=null) return defineClass(aName, bytes, 0, bytes.length);
+        return super.findClass(aName);
+    }
+}
 
 /**
  * Returns the project class loader.
@@ -323,20 +347,19 @@ public ClassLoader createLibClassLoader()
 }
 
 /**
- * Clears the class loader.
+ * Clears the class loader (the RootProject loader, shared by all projects - reset is coordinated by ProjectSet, since
+ * dependent projects can build in parallel).
  */
-protected void clearClassLoader()
+protected void clearClassLoader()  { getProjectSet().resetClassLoader(); }
+
+/**
+ * Removes the class loader and returns it (for ProjectSet.resetClassLoader).
+ */
+synchronized ClassLoader removeClassLoader()
 {
-    // If ClassLoader closeable, close it and clear
-    if(_clsLdr instanceof Closeable)
-        try { ((Closeable)_clsLdr).close(); }
-        catch(Exception e) { throw new RuntimeException(e); }
-    _clsLdr = null;
-    
-    // If parent, forward on
-    Project parent = getParent();
-    if(parent!=null)
-        parent.clearClassLoader();
+    Project rproj = getRootProject(); if(rproj!=this) return rproj.removeClassLoader();
+    ClassLoader cldr = _clsLdr; _clsLdr = null;
+    return cldr;
 }
 
 /**
@@ -409,29 +432,50 @@ public boolean buildProject(TaskMonitor aTM)
 {
     // Build files
     _building = true;
-    boolean buildSuccess = _javaFileBuilder.buildFiles(aTM);
-    buildSuccess |= _defaultFileBuilder.buildFiles(aTM);
-    _buildDate = new Date(); _building = false;
+    BuildTimeline.Span span = getBuildTimeline().begin(BuildTimeline.BUILD, getName(), this);
+    try {
+        boolean buildSuccess = _javaFileBuilder.buildFiles(aTM);
+        buildSuccess |= _defaultFileBuilder.buildFiles(aTM);
+        _buildDate = new Date();
+        return buildSuccess;
+    }
     
-    // Return build success
-    return buildSuccess;
+    // Clear building and end span
+    finally { _building = false; span.end(); }
 }
 
+/**
+ * Returns the timing events for last build (from RootProject.ProjectSet).
+ */
+public BuildTimeline getBuildTimeline()  { return getRootProject().getProjectSet().getBuildTimeline(); }
+
 /**
  * Finds unused imports from last set of compiled files.
  */
 public void findUnusedImports()  { _javaFileBuilder.findUnusedImports(); }
 
 /**
- * Interrupts build.
+ * Interrupts build (and build of dependent projects).
  */
-public void interruptBuild()  { _javaFileBuilder._interrupt = true; }
+public void interruptBuild()
+{
+    _javaFileBuilder._interrupt = true;
+    for(Project proj : getProjects()) proj._javaFileBuilder._interrupt = true;
+}
+
+/**
+ * Returns the writer to write compiled class files to build dir in background.
+ */
+public ClassFileWriter getClassFileWriter()  { return _classFileWriter; }
 
 /**
  * Removes all build files from project.
  */
 public void cleanProject()
 {
+    // Clear pending class files
+    _classFileWriter.clear();
+    
     // If separate build directory, just delete it
     if(getBuildDir()!=getSourceDir() && getBuildDir()!=getSite().getRootDir())
         try { if(getBuildDir().getExists()) getBuildDir().delete(); }
@@ -558,7 +602,7 @@ public void deleteProject(TaskMonitor aTM) throws Exception
 {
     aTM.startTasks(1);
     aTM.beginTask("Deleting files", -1);
-    clearClassLoader();
+    clearClassLoader(); _projSet.resetCompiler(); _classFileWriter.clear();
     getSite().getSandbox().deleteSite();
     getSite().deleteSite();
     aTM.endTask();
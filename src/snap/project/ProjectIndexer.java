@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.project;
+import java.util.*;
+import java.util.concurrent.*;
+import javakit.parse.JFileCache;
+import javakit.parse.JavaData;
+import snap.util.TaskMonitor;
+import snap.web.WebFile;
+
+/**
+ * A class to parse all Java files of a ProjectSet in the background (on a ForkJoin pool), so that the first editor
+ * open and cross-file operations (reference search, unused imports) find JavaData JFiles already parsed. Files are
+ * parsed in priority order (files opened by the user, then most recently modified files) while they fit in the
+ * JFileCache budget - the rest only get their identifier names (JavaData.getFileNames) and are parsed again when
+ * needed. Indexing is cancellable.
+ */
+public class ProjectIndexer {
+
+    // The ProjectSet
+    ProjectSet                   _projSet;
+
+    // The files waiting to be parsed (opened files are added to front)
+    LinkedBlockingDeque <WebFile> _files = new LinkedBlockingDeque();
+
+    // The files opened by the user while waiting to be parsed (always parsed, even if cache is full)
+    Set <WebFile>                _priorityFiles = ConcurrentHashMap.newKeySet();
+
+    // The pool that parses files
+    ForkJoinPool                 _pool;
+
+    // The TaskMonitor for current index
+    TaskMonitor                  _monitor;
+
+    // Whether index has been cancelled
+    volatile boolean             _cancelled;
+
+    // The number of workers still running
+    int                          _workerCount;
+
+/**
+ * Creates a new ProjectIndexer for given ProjectSet.
+ */
+public ProjectIndexer(ProjectSet aProjSet)  { _projSet = aProjSet; }
+
+/**
+ * Returns whether index is running.
+ */
+public synchronized boolean isRunning()  { return _workerCount>0; }
+
+/**
+ * Parses all Java files of ProjectSet projects and waits for them to finish (or for cancel).
+ */
+public void index(TaskMonitor aTM)
+{
+    // Get Java files of root project and dependent projects
+    List <WebFile> files = new ArrayList(); Project rootProj = _projSet.getProject();
+    getJavaFiles(rootProj, rootProj.getSourceDir(), files);
+    for(Project proj : _projSet.getProjects()) getJavaFiles(proj, proj.getSourceDir(), files);
+    
+    // Sort files open in editor first, then most recently modified (files user is most likely to open next get parsed
+    // while cache has room)
+    Map <WebFile,Long> modTimes = new HashMap();
+    for(WebFile file : files) modTimes.put(file, JavaData.get(file).isPinned()? Long.MAX_VALUE : file.getLastModTime());
+    files.sort((f1,f2) -> Long.compare(modTimes.get(f2), modTimes.get(f1)));
+
+    // Start workers (leave one processor for UI thread, which parses open files itself)
+    int count = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+    synchronized(this) {
+        if(_workerCount>0) return;
+        _cancelled = false; _monitor = aTM!=null? aTM : TaskMonitor.NULL;
+        _files.clear(); _files.addAll(files); _priorityFiles.clear();
+        _monitor.startTasks(1); _monitor.beginTask("Indexing " + files.size() + " files", files.size());
+        if(_pool==null) _pool = new ForkJoinPool(count);
+        _workerCount = count;
+        for(int i=0; i<count; i++) _pool.execute(() -> runWorker());
+    }
+
+    // Wait for workers to finish
+    synchronized(this) {
+        try { while(_workerCount>0) wait(); }
+        catch(InterruptedException e) { cancel(); }
+        _monitor.endTask(); _monitor = null;
+    }
+}
+
+/**
+ * Moves given file to the front of the queue (if it hasn't been parsed yet) and makes sure it gets a full JFile.
+ */
+public void indexFirst(WebFile aFile)
+{
+    if(_files.remove(aFile)) { _priorityFiles.add(aFile); _files.addFirst(aFile); }
+}
+
+/**
+ * Cancels index (files being parsed are finished).
+ */
+public void cancel()  { _cancelled = true; _files.clear(); _priorityFiles.clear(); }
+
+/**
+ * Called by pool threads to parse files until queue is empty or index is cancelled.
+ */
+private void runWorker()
+{
+    try {
+        for(WebFile file=_files.poll(); file!=null && !isCancelled(); file=_files.poll()) {
+            try { indexFile(file); }
+            catch(Throwable t) { System.err.println("ProjectIndexer: Failed to parse " + file.getPath() + ": " + t); }
+            fileIndexed();
+        }
+    }
+    finally { synchronized(this) { _workerCount--; notifyAll(); } }
+}
+
+/**
+ * Parses given file into JavaData JFile if it was opened by user (or is open in editor) or fits in JFileCache budget
+ * (otherwise just gets identifier names).
+ */
+private void indexFile(WebFile aFile)
+{
+    JavaData jdata = JavaData.get(aFile);
+    boolean priority = _priorityFiles.remove(aFile) || jdata.isPinned();
+    if(priority || JFileCache.get().hasRoom(aFile.getText().length())) jdata.getJFile();
+    else jdata.getFileNames();
+}
+
+/**
+ * Returns whether index has been cancelled (by cancel() or TaskMonitor).
+ */
+private synchronized boolean isCancelled()
+{
+    if(_monitor!=null && _monitor.isCancelled()) _cancelled = true;
+    return _cancelled;
+}
+
+/**
+ * Updates TaskMonitor for indexed file.
+ */
+private synchronized void fileIndexed()  { if(_monitor!=null) _monitor.updateTask(1); }
+
+/**
+ * Adds Java files in given directory to given list (skipping project build directory).
+ */
+private void getJavaFiles(Project aProj, WebFile aDir, List <WebFile> theFiles)
+{
+    for(WebFile file : aDir.getFiles()) {
+        if(file.isDir()) { if(file!=aProj.getBuildDir()) getJavaFiles(aProj, file, theFiles); }
+        else if(file.getType().equals("java")) theFiles.add(file);
+    }
+}
+
+}
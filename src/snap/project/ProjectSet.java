@@ -1,7 +1,9 @@
 package snap.project;
+import java.io.Closeable;
 import java.util.*;
-import snap.util.ListUtils;
-import snap.util.TaskMonitor;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import snap.util.*;
 import snap.web.*;
 
 /**
@@ -17,6 +19,33 @@ public class ProjectSet {
     
     // The array of class paths and library paths
     String              _cpaths[], _lpaths[];
+    
+    // The compiler for project Java files (kept between builds)
+    SnapCompiler        _compiler;
+    
+    // The compilers for parallel group compiles of project Java files (kept between builds)
+    List <SnapCompiler> _groupCompilers = new ArrayList();
+    
+    // The ClassPaths watched for JarPaths change to reset compiler
+    List <ClassPath>    _compilerCPs = new ArrayList();
+    
+    // A listener for ClassPath PropChange
+    PropChangeListener  _classPathPCL = pc -> classPathDidPropChange(pc);
+    
+    // The max number of dependent projects to build at the same time
+    int                 _buildThreadCount = Runtime.getRuntime().availableProcessors();
+    
+    // The timing events for last build
+    BuildTimeline       _timeline = new BuildTimeline();
+    
+    // The indexer to parse project Java files in background
+    ProjectIndexer      _indexer;
+    
+    // The lock for RootProject.ClassLoader (pipeline stages hold read lock while reflecting, resets take write lock)
+    ReentrantReadWriteLock  _loaderLock = new ReentrantReadWriteLock();
+    
+    // The class loaders replaced while building (closed when build is done) and the number of builds running
+    List <ClassLoader>  _oldLoaders = new ArrayList(); int _buildCount;
 
 /**
  * Creates a new ProjectSet for given Project.
@@ -59,6 +88,7 @@ public void addProject(String aPath)
     String path = aPath; if(!path.startsWith("/")) path = '/' + path;
     _proj.getClassPath().addSrcPath(path);
     _projects = null; _cpaths = _lpaths = null;
+    resetCompiler();
 }
 
 /**
@@ -68,6 +98,7 @@ public void removeProject(String aPath)
 {
     _proj.getClassPath().removeSrcPath(aPath);
     _projects = null; _cpaths = _lpaths = null;
+    resetCompiler();
 }
 
 /**
@@ -145,6 +176,79 @@ public String[] getLibPaths()
     return _lpaths = paths.toArray(new String[paths.size()]);
 }
 
+/**
+ * Returns the compiler for project Java files. The compiler (and its file manager, cached JavaFileObjects and library
+ * jars) is kept between builds until a ClassPath JarPaths change.
+ */
+public synchronized SnapCompiler getCompiler()
+{
+    // If already set, just return
+    if(_compiler!=null) return _compiler;
+    
+    // Watch project ClassPath and dependent project ClassPaths for JarPaths change
+    List <ClassPath> cpaths = new ArrayList(); cpaths.add(_proj.getClassPath());
+    for(Project p : getProjects()) cpaths.add(p.getClassPath());
+    for(ClassPath cpath : cpaths) {
+        if(ListUtils.containsId(_compilerCPs, cpath)) continue;
+        _compilerCPs.add(cpath); cpath.addPropChangeListener(_classPathPCL);
+    }
+    
+    // Create compiler and return
+    return _compiler = new SnapCompiler(_proj);
+}
+
+/**
+ * Returns the group compiler at given index, for parallel compiles of independent groups of files (created as needed
+ * and kept between builds until a ClassPath JarPaths change, like compiler). Group compilers only write class files
+ * for given files, so compiles of separate groups never write the same class file.
+ */
+public synchronized SnapCompiler getGroupCompiler(int anIndex)
+{
+    getCompiler(); // So ClassPaths are watched
+    while(_groupCompilers.size()<=anIndex) {
+        SnapCompiler compiler = new SnapCompiler(_proj); compiler.setImplicitNone(true);
+        _groupCompilers.add(compiler);
+    }
+    return _groupCompilers.get(anIndex);
+}
+
+/**
+ * Returns whether given compiler is a current group compiler.
+ */
+public synchronized boolean isGroupCompiler(SnapCompiler aCompiler)
+{
+    return ListUtils.containsId(_groupCompilers, aCompiler);
+}
+
+/**
+ * Resets the compiler and group compilers (closes file managers and library jars, unless project is building).
+ */
+public synchronized void resetCompiler()
+{
+    // Stop watching ClassPaths
+    for(ClassPath cpath : _compilerCPs) cpath.removePropChangeListener(_classPathPCL);
+    _compilerCPs.clear();
+    
+    // Clear compilers and close (if building, JavaFileBuilder closes them when done)
+    SnapCompiler compiler = _compiler; _compiler = null;
+    List <SnapCompiler> gcompilers = new ArrayList(_groupCompilers); _groupCompilers.clear();
+    if(!_proj.isBuilding()) {
+        if(compiler!=null) compiler.close();
+        for(SnapCompiler gcompiler : gcompilers) gcompiler.close();
+    }
+}
+
+/**
+ * Watches ClassPaths for JarPaths change to reset compiler.
+ */
+void classPathDidPropChange(PropChange anEvent)
+{
+    if(anEvent.getPropertyName()==ClassPath.JarPaths_Prop) {
+        _cpaths = _lpaths = null;
+        resetCompiler();
+    }
+}
+
 /**
  * Adds a build file.
  */
@@ -155,23 +259,205 @@ public void addBuildFilesAll()
         p.addBuildFilesAll();
 }
 
+/**
+ * Returns the max number of dependent projects to build at the same time.
+ */
+public int getBuildThreadCount()  { return _buildThreadCount; }
+
+/**
+ * Sets the max number of dependent projects to build at the same time.
+ */
+public void setBuildThreadCount(int aValue)  { _buildThreadCount = Math.max(aValue, 1); }
+
 /**
  * Builds the project.
  */
 public boolean buildProjects(TaskMonitor aTM)
 {
-    boolean success = true;
-    for(Project p : getProjects())
-        if(!p.buildProject(aTM)) {
-            success = false; break; }
-    if(success)
-        success = _proj.buildProject(aTM);
-    
-    // Find unused imports
-    _proj.findUnusedImports();
-    for(Project p : getProjects()) p.findUnusedImports();
+    // Reset build timeline
+    _timeline.reset();
+    BuildTimeline.Span span = _timeline.begin(BuildTimeline.BUILD, "Build " + _proj.getName(), _proj);
+    
+    // Build dependent projects (in parallel, if there's more than one), then root project, and find unused imports
+    boolean success; buildStarted();
+    try {
+        Project projs[] = getProjects();
+        success = projs.length>1 && _buildThreadCount>1? buildProjectsParallel(projs, aTM) :
+            buildProjectsSerial(projs, aTM);
+        if(success)
+            success = _proj.buildProject(aTM);
+        _proj.findUnusedImports();
+        for(Project p : getProjects()) p.findUnusedImports();
+    }
+    finally { buildFinished(); span.end(); }
+    
+    // If build trace path is set (snapcode.buildTrace system property), write build timeline as Chrome trace
+    String tracePath = System.getProperty("snapcode.buildTrace");
+    if(tracePath!=null)
+        try { _timeline.writeChromeTrace(new java.io.File(tracePath)); }
+        catch(Exception e) { System.err.println("ProjectSet.buildProjects: Failed to write build trace " + e); }
+    return success;
+}
+
+/**
+ * Returns the timing events for last build.
+ */
+public BuildTimeline getBuildTimeline()  { return _timeline; }
+
+/**
+ * Returns the indexer to parse project Java files in background.
+ */
+public synchronized ProjectIndexer getIndexer()  { return _indexer!=null? _indexer : (_indexer=new ProjectIndexer(this)); }
+
+/**
+ * Returns the lock for RootProject.ClassLoader: Build pipeline stages hold read lock while reflecting on classes for a
+ * file and loader resets take write lock, so a reset by one project build waits for stages of all running builds.
+ */
+public ReadWriteLock getClassLoaderLock()
+{
+    ProjectSet rset = _proj.getRootProject().getProjectSet();
+    return rset!=this? rset.getClassLoaderLock() : _loaderLock;
+}
+
+/**
+ * Resets the RootProject.ClassLoader (so classes are loaded again from new class files), once pipeline stages of all
+ * running project builds have finished their current file. While building, the old loader isn't closed until build is
+ * done, since classes from it may still be referenced by other project builds.
+ */
+public void resetClassLoader()
+{
+    // If not RootProject ProjectSet, forward to it
+    ProjectSet rset = _proj.getRootProject().getProjectSet(); if(rset!=this) { rset.resetClassLoader(); return; }
+    
+    // Remove loader (with write lock) and close it (or save to close when build is done)
+    Lock lock = _loaderLock.writeLock(); lock.lock();
+    try {
+        ClassLoader cldr = _proj.removeClassLoader();
+        if(cldr!=null && _buildCount>0) _oldLoaders.add(cldr);
+        else closeClassLoader(cldr);
+    }
+    finally { lock.unlock(); }
+}
+
+/**
+ * Marks start of a build (class loaders reset during build are closed when build is done).
+ */
+private void buildStarted()
+{
+    Lock lock = getClassLoaderLock().writeLock(); lock.lock();
+    try { _buildCount++; }
+    finally { lock.unlock(); }
+}
+
+/**
+ * Marks end of a build and closes class loaders reset during build (if no other build is running).
+ */
+private void buildFinished()
+{
+    Lock lock = getClassLoaderLock().writeLock(); lock.lock();
+    try {
+        if(--_buildCount>0) return;
+        for(ClassLoader cldr : _oldLoaders) closeClassLoader(cldr);
+        _oldLoaders.clear();
+    }
+    finally { lock.unlock(); }
+}
+
+/**
+ * Closes given class loader (if closeable).
+ */
+private static void closeClassLoader(ClassLoader aLoader)
+{
+    if(aLoader instanceof Closeable)
+        try { ((Closeable)aLoader).close(); }
+        catch(Exception e) { throw new RuntimeException(e); }
+}
+
+/**
+ * Builds given projects one after another (in dependency order).
+ */
+private boolean buildProjectsSerial(Project theProjs[], TaskMonitor aTM)
+{
+    for(Project p : theProjs)
+        if(!buildDependentProject(p, aTM))
+            return false;
+    return true;
+}
+
+/**
+ * Builds given dependent project and writes its pending class files, so compiles of projects that depend on it (which
+ * only check their own ClassFileWriter for pending classes) find them on disk.
+ */
+private boolean buildDependentProject(Project aProj, TaskMonitor aTM)
+{
+    boolean success = aProj.buildProject(aTM);
+    aProj.getClassFileWriter().flush();
     return success;
 }
+
+/**
+ * Builds given projects on a bounded worker pool, starting each project as soon as all projects it depends on have
+ * been built. If any project fails, no new projects are started. Workers build with a null task monitor - the given
+ * task monitor is only updated from this (coordinating) thread, as each project finishes.
+ */
+private boolean buildProjectsParallel(Project theProjs[], TaskMonitor aTM)
+{
+    // Get list of projects waiting to build and set of built projects
+    List <Project> pending = new ArrayList(Arrays.asList(theProjs));
+    Set <Project> built = new HashSet();
+    
+    // Create executor
+    int threadCount = Math.min(_buildThreadCount, theProjs.length);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    CompletionService <Project> service = new ExecutorCompletionService(executor);
+    int running = 0; boolean success = true, done = false;
+    
+    // Iterate until all projects are built (or a project fails and running builds have finished)
+    try {
+        while(true) {
+            
+            // Start any pending projects whose dependencies are all built
+            if(success) for(Iterator <Project> i=pending.iterator(); i.hasNext(); ) { Project proj = i.next();
+                if(!built.containsAll(Arrays.asList(proj.getProjects()))) continue;
+                i.remove(); running++;
+                service.submit(() -> buildDependentProject(proj, TaskMonitor.NULL)? proj : null);
+            }
+            
+            // If nothing running, we're done
+            if(running==0) break;
+            
+            // Wait for next build to finish and add to built projects (or clear success)
+            Project proj = service.take().get(); running--;
+            if(proj!=null) { built.add(proj); aTM.beginTask("Built " + proj.getName(), -1); aTM.endTask(); }
+            else success = false;
+        }
+        done = true;
+    }
+    
+    // If interrupted, reset thread interrupt flag and return false
+    catch(InterruptedException e) { Thread.currentThread().interrupt(); return false; }
+    
+    // If build threw exception, rethrow
+    catch(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if(cause instanceof RuntimeException) throw (RuntimeException)cause;
+        if(cause instanceof Error) throw (Error)cause;
+        throw new RuntimeException(cause);
+    }
+    
+    // Shutdown executor (if interrupted or failed, interrupt running builds and wait for them to stop)
+    finally {
+        executor.shutdown();
+        if(!done) {
+            for(Project p : theProjs) p._javaFileBuilder._interrupt = true;
+            try { executor.awaitTermination(1, TimeUnit.MINUTES); }
+            catch(InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+    }
+    
+    // Return success (if all projects built)
+    return success && pending.isEmpty();
+}
     
 /**
  * Returns a Java file for class name.
@@ -183,4 +469,23 @@ public WebFile getJavaFile(String aClassName)
     return null;
 }
 
+/**
+ * Returns the bytes of compiled class file for given class name that hasn't yet been written to build dir.
+ */
+public byte[] getClassBytes(String aClassName)
+{
+    byte bytes[] = _proj.getClassFileWriter().getClassBytes(aClassName); if(bytes!=null) return bytes;
+    for(Project p : getProjects()) { bytes = p.getClassFileWriter().getClassBytes(aClassName); if(bytes!=null) return bytes; }
+    return null;
+}
+
+/**
+ * Writes compiled class files for project and dependent projects to build dirs now (before running app or jar).
+ */
+public void flushClassFiles()
+{
+    _proj.getClassFileWriter().flush();
+    for(Project p : getProjects()) p.getClassFileWriter().flush();
+}
+
 }
\ No newline at end of file
@@ -23,6 +23,9 @@ public class SnapCompiler implements DiagnosticListener {
     // The options for compile
     List <String>           _options;
     
+    // Whether compiler only writes class files for given files (not for sources it finds on source path)
+    boolean                 _implicitNone;
+    
     // The shared file manager for any project compile
     SnapCompilerFM          _fm;
     
@@ -32,9 +35,18 @@ public class SnapCompiler implements DiagnosticListener {
     // The Set of source files that had class files modified by last compile
     Set <WebFile>           _compJFs = new HashSet(), _modJFs = new HashSet();
     
+    // The Set of source files that had errors in last compile
+    Set <WebFile>           _errJFs = new HashSet();
+    
+    // The class files written for each source file by last compile (not including class files restored from cache)
+    Map <WebFile,List<WebFile>>  _classFiles = new HashMap();
+    
     // The number of errors currently encountered
     int                     _errorCount;
     
+    // The index of ProjectSet Java files by simple name and package (for BuildCache keys)
+    BuildCache.SourceIndex  _srcIndex;
+    
 /**
  * Creates a new compiler for given site.
  */
@@ -78,6 +90,7 @@ protected List <String> getOptions()
     //options.add("-warn:-serial,-raw,-unchecked"); options.add("-proceedOnError");
     options.add("-g");
     options.add("-source"); options.add("1.8"); options.add("-target"); options.add("1.8");
+    if(_implicitNone) options.add("-implicit:none");
     
     // Add class path from project library paths and return
     String libPaths[] = _proj.getProjectSet().getLibPaths();
@@ -90,6 +103,12 @@ protected List <String> getOptions()
     return _options = options;
 }
 
+/**
+ * Sets whether compiler only writes class files for given files, not for sources it finds on source path (so parallel
+ * compiles of separate files never write the same class file).
+ */
+public void setImplicitNone(boolean aValue)  { _implicitNone = aValue; _options = null; }
+
 /**
  * Returns the compiler file manager.
  */
@@ -100,26 +119,68 @@ public SnapCompilerFM getFileManaer()
     return _fm = new SnapCompilerFM(this, sfm);
 }
 
+/**
+ * Resets compiler state from previous build (error count, cached source text and source index), keeping compiler,
+ * file manager and lib class loader.
+ */
+public void resetBuild()
+{
+    _errorCount = 0; _srcIndex = null;
+    if(_fm!=null) _fm.resetSourceCache();
+}
+
+/**
+ * Returns the index of ProjectSet Java files by simple name and package (for BuildCache keys, recreated each build).
+ */
+synchronized BuildCache.SourceIndex getSourceIndex()
+{
+    return _srcIndex!=null? _srcIndex : (_srcIndex=new BuildCache.SourceIndex(_proj.getProjectSet()));
+}
+
+/**
+ * Closes the file manager (and any open library jars).
+ */
+public void close()
+{
+    if(_fm!=null)
+        try { _fm.close(); }
+        catch(Exception e) { throw new RuntimeException(e); }
+    _fm = null;
+}
+
 /**
  * Executes the compile task.
  */
-public boolean compile(WebFile aFile)
+public boolean compile(WebFile aFile)  { return compile(Collections.singletonList(aFile)); }
+
+/**
+ * Executes a single compile task for given files.
+ */
+public boolean compile(Collection <WebFile> theFiles)
 {
     // Clear files from previous compile
-    _compJFs.clear(); _modJFs.clear();
+    _compJFs.clear(); _modJFs.clear(); _errJFs.clear(); _classFiles.clear();
     
     // Get compiler and file manager
     JavaCompiler compiler = getCompiler();
     SnapCompilerFM fman = getFileManaer();
     
-    // Get JFOs
-    JavaFileObject jfo = fman.getJFO(aFile.getPath(), aFile);
-    List <JavaFileObject> jfos = Arrays.asList(jfo);
+    // Get JFOs (for files that can't be restored from BuildCache) - if none, just return
+    BuildCache cache = BuildCache.get(); _succeeded = true;
+    List <JavaFileObject> jfos = new ArrayList(theFiles.size());
+    for(WebFile file : theFiles)
+        if(cache==null || !fman.restoreClassFiles(cache, file))
+            jfos.add(fman.getJFO(file.getPath(), file));
+    if(jfos.isEmpty()) return true;
     
     // Get task, call and return _succeeded
-    CompilationTask task = compiler.getTask(new StringWriter(), fman, this, getOptions(), null, jfos);
-    _succeeded = true;
-    task.call();
+    String name = jfos.size()==1? _proj.getClassName(((SnapCompilerFM.SnapFileJFO)jfos.get(0)).getFile()) : jfos.size() + " files";
+    BuildTimeline.Span span = _proj.getBuildTimeline().begin(BuildTimeline.COMPILE, name, _proj);
+    try {
+        CompilationTask task = compiler.getTask(new StringWriter(), fman, this, getOptions(), null, jfos);
+        task.call();
+    }
+    finally { span.end(); }
     return _succeeded;
 }
 
@@ -128,7 +189,12 @@ public boolean compile(WebFile aFile)
  */
 public void report(Diagnostic aDiagnostic)
 {
-    if(_succeeded && aDiagnostic.getKind()==Diagnostic.Kind.ERROR) _succeeded = false;
+    // If error, clear Succeeded and add source file to ErrorJavaFiles
+    if(aDiagnostic.getKind()==Diagnostic.Kind.ERROR) { _succeeded = false;
+        if(aDiagnostic.getSource() instanceof SnapCompilerFM.SnapFileJFO)
+            _errJFs.add(((SnapCompilerFM.SnapFileJFO)aDiagnostic.getSource()).getFile()); }
+    
+    // Create BuildIssue and report
     BuildIssue issue = createBuildIssue(aDiagnostic); if(issue==null) return; //System.out.println(issue.toString());
     report(issue);
 }
@@ -138,7 +204,8 @@ public void report(Diagnostic aDiagnostic)
  */
 protected void report(BuildIssue anIssue)
 {
-    _proj.getRootProject().getBuildIssues().add(anIssue);
+    BuildIssues buildIssues = _proj.getRootProject().getBuildIssues();
+    synchronized(buildIssues) { buildIssues.add(anIssue); }
     if(anIssue.getKind()==BuildIssue.Kind.Error) _errorCount++;
 }
 
@@ -191,4 +258,14 @@ public Set <WebFile> getCompiledJavaFiles()  { return _compJFs; }
  */
 public Set <WebFile> getModifiedJavaFiles()  { return _modJFs; }
 
+/**
+ * Returns the Set of source files that had errors in the compile.
+ */
+public Set <WebFile> getErrorJavaFiles()  { return _errJFs; }
+
+/**
+ * Returns the class files written for each source file by the compile (not including class files from BuildCache).
+ */
+public Map <WebFile,List<WebFile>> getClassFiles()  { return _classFiles; }
+
 }
\ No newline at end of file
@@ -143,6 +143,11 @@ public Iterable<JavaFileObject> list(Location aLoc, String aPkgName, Set<Kind> k
         if(pkgDir!=null)
             for(WebFile file : pkgDir.getFiles()) {
                 if(file.getType().equals("class")) files.add(getJFO(file.getPath(), file)); }
+        
+        // Add class files not yet written to build dir
+        String pkgPath = _proj.getBuildDir().getDirPath() + aPkgName.replace('.', '/');
+        for(WebFile file : _proj.getClassFileWriter().getFiles(pkgPath)) { JavaFileObject jfo = getJFO(file.getPath(), file);
+            if(!files.contains(jfo)) files.add(jfo); }
     }
     
     // Add Source files
@@ -191,7 +196,7 @@ private WebFile getSourceDir(String aPackageName)
 public synchronized SnapFileJFO getJFO(String aPath, WebFile aFile)
 {
     SnapFileJFO jfo = _jfos.get(aPath);
-    if(jfo==null) {
+    if(jfo==null || aFile!=null && jfo._file!=aFile) {
         WebFile dfile = aFile!=null? aFile : _proj.getFile(aPath);
         if(dfile!=null)
             _jfos.put(aPath, jfo = new SnapFileJFO(dfile));
@@ -199,6 +204,73 @@ public synchronized SnapFileJFO getJFO(String aPath, WebFile aFile)
     return jfo;
 }
 
+/**
+ * Clears the source text cached by JavaFileObjects in previous build (so changed files are read again).
+ */
+public synchronized void resetSourceCache()
+{
+    for(SnapFileJFO jfo : _jfos.values()) jfo._str = null;
+}
+
+/**
+ * Override to close lib class loader and clear cached JavaFileObjects.
+ */
+public synchronized void close() throws IOException
+{
+    // Close ClassLoader
+    if(_cldr instanceof Closeable) ((Closeable)_cldr).close();
+    _cldr = null; _jfos.clear();
+    
+    // Do normal version
+    super.close();
+}
+
+/**
+ * Restores class files for given Java file from given BuildCache (if found) and updates compiler as if compiled.
+ *
+ * @return whether class files were restored.
+ */
+public boolean restoreClassFiles(BuildCache aCache, WebFile aJavaFile)
+{
+    // Get cached class files (just return if not found)
+    Map <String,byte[]> cfiles = aCache.getClassFiles(_compiler, aJavaFile); if(cfiles==null) return false;
+    
+    // Clear Java file BuildIssues (as compile would)
+    BuildIssues buildIssues = _proj.getRootProject().getBuildIssues();
+    synchronized(buildIssues) { buildIssues.remove(aJavaFile); }
+    
+    // Write class files to build dir
+    WebFile dir = _proj.getClassFile(aJavaFile).getParent();
+    for(Map.Entry <String,byte[]> entry : cfiles.entrySet()) {
+        WebFile cfile = _proj.getBuildFile(dir.getDirPath() + entry.getKey(), true, false);
+        writeClassFile(cfile, aJavaFile, entry.getValue());
+    }
+    return true;
+}
+
+/**
+ * Writes given bytes to given class file for given source file (if changed) and adds source file to compiler
+ * CompiledFiles (and ModifiedFiles, if changed).
+ */
+void writeClassFile(WebFile aClassFile, WebFile aSourceFile, byte theBytes[])
+{
+    // Add SourceFile to Compiler.CompiledFiles
+    _compiler._compJFs.add(aSourceFile);
+    
+    // Get whether class file is modified
+    boolean modified = !Arrays.equals(theBytes, aClassFile.getBytes());
+
+    // If modified, set File.Bytes and add ClassFile to ModifiedFiles and SourceFile to ModifiedSources
+    if(modified) {
+        aClassFile.setBytes(theBytes);
+        _compiler._modJFs.add(aSourceFile);
+    }
+    
+    // If file was modified or a real compile file, add to ClassFileWriter to save in background
+    if(modified || aClassFile.getLastModTime()<aSourceFile.getLastModTime())
+        _proj.getClassFileWriter().addFile(aClassFile);
+}
+
 /**
  * A Java File Object for a WebFile.
  */
@@ -239,7 +311,8 @@ class SnapFileJFO extends SimpleJavaFileObject {
     {
         if(_str!=null) return _str;
         _str = _file.getText();
-        _proj.getRootProject().getBuildIssues().remove(_file);
+        BuildIssues buildIssues = _proj.getRootProject().getBuildIssues();
+        synchronized(buildIssues) { buildIssues.remove(_file); }
         return _str;
     }
     
@@ -252,25 +325,12 @@ class SnapFileJFO extends SimpleJavaFileObject {
         return new ByteArrayOutputStream() {
             public void close() throws IOException {
                 
-                // Do normal close and add SourceFile to Compiler.CompiledFiles
+                // Do normal close, add ClassFile to Compiler.ClassFiles and write bytes
                 super.close();
-                _compiler._compJFs.add(_sourceFile);
-                
-                // Get bytes and whether class file is modified
-                byte bytes[] = toByteArray();
-                boolean modified = !Arrays.equals(bytes, _file.getBytes());
-
-                // If modified, set File.Bytes and add ClassFile to ModifiedFiles and SourceFile to ModifiedSources
-                if(modified) {
-                    _file.setBytes(bytes);
-                    _compiler._modJFs.add(_sourceFile);
-                }
-                
-                // If file was modified or a real compile file, save
-                if(modified || _file.getLastModTime()<_sourceFile.getLastModTime()) {
-                    try { _file.save(); }
-                    catch(Exception e) { throw new RuntimeException(e); }
-                }
+                List <WebFile> cfiles = _compiler._classFiles.get(_sourceFile);
+                if(cfiles==null) _compiler._classFiles.put(_sourceFile, cfiles = new ArrayList());
+                cfiles.add(_file);
+                writeClassFile(_file, _sourceFile, toByteArray());
             }  
         };
     }
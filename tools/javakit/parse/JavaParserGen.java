@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package javakit.parse;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.*;
+import snap.parse.*;
+
+/**
+ * A build tool to precompile JavaParser.txt into Java code (JavaParserRules) that creates the ParseRule graph and
+ * installs the JavaParser handlers directly, so parsers don't need to parse grammar text or use reflection at startup.
+ * Run by Gradle 'generateGrammar' task with args: JavaParser.java path, output source directory.
+ */
+public class JavaParserGen {
+
+    // The rules (in order of index) and their indexes
+    List <ParseRule>           _rules = new ArrayList();
+    Map <ParseRule,Integer>    _indexes = new IdentityHashMap();
+
+    // The names of rules with handlers (JavaParser inner classes named rule name + "Handler")
+    Set <String>               _handlers = new HashSet();
+
+    // The number of rules initialized per method (to stay under method size limit)
+    static final int           RULES_PER_METHOD = 200;
+
+/**
+ * Generates JavaParserRules.java.
+ */
+public static void main(String args[]) throws Exception
+{
+    // Load rules and get handler names from JavaParser source
+    JavaParserGen gen = new JavaParserGen();
+    ParseRule rule = ParseUtils.loadRule(JavaParserGen.class, "JavaParser.txt");
+    gen.addRules(rule);
+    gen.addHandlers(new String(Files.readAllBytes(Paths.get(args[0])), "UTF-8"));
+
+    // Write JavaParserRules.java
+    File file = new File(args[1], "javakit/parse/JavaParserRules.java"); file.getParentFile().mkdirs();
+    Files.write(file.toPath(), gen.getJava().getBytes("UTF-8"));
+    System.out.println("JavaParserGen: Wrote " + gen._rules.size() + " rules to " + file);
+}
+
+/**
+ * Adds given rule and all rules reachable from it (breadth first, so the root rule gets index 0).
+ */
+void addRules(ParseRule aRule)
+{
+    Deque <ParseRule> queue = new ArrayDeque(); queue.add(aRule);
+    for(ParseRule rule=queue.poll(); rule!=null; rule=queue.poll()) {
+        if(_indexes.containsKey(rule)) continue;
+        _indexes.put(rule, _rules.size()); _rules.add(rule);
+        if(rule.getChild0()!=null) queue.add(rule.getChild0());
+        if(rule.getChild1()!=null) queue.add(rule.getChild1());
+    }
+}
+
+/**
+ * Adds names of rules with handlers from given JavaParser source (same match as ParseUtils.installHandlers).
+ */
+void addHandlers(String aSource)
+{
+    Matcher matcher = Pattern.compile("public\\s+static\\s+class\\s+(\\w+)Handler\\b").matcher(aSource);
+    while(matcher.find()) _handlers.add(matcher.group(1));
+}
+
+/**
+ * Returns the Java source for JavaParserRules.
+ */
+String getJava()
+{
+    // Append header
+    StringBuffer sb = new StringBuffer();
+    sb.append("/*\n * Generated by JavaParserGen from JavaParser.txt - do not edit.\n */\n");
+    sb.append("package javakit.parse;\nimport java.util.function.Supplier;\nimport snap.parse.*;\n");
+    sb.append("import snap.parse.ParseRule.Op;\n\n");
+    sb.append("/**\n * The JavaParser rules precompiled from JavaParser.txt (with handlers installed). ");
+    sb.append("Holds no state, so get() can\n * be called from multiple threads at once ");
+    sb.append("(each call creates a new rule graph).\n */\n");
+    sb.append("public class JavaParserRules implements Supplier <ParseRule> {\n\n");
+
+    // Append get() to create rules and call init methods
+    int methodCount = (_rules.size() + RULES_PER_METHOD - 1)/RULES_PER_METHOD;
+    sb.append("/**\n * Creates the rules and returns the root rule.\n */\npublic ParseRule get()\n{\n");
+    sb.append("    ParseRule rules[] = new ParseRule[").append(_rules.size()).append("];\n");
+    sb.append("    for(int i=0; i<rules.length; i++) rules[i] = new ParseRule();\n");
+    for(int i=0; i<methodCount; i++) sb.append("    init").append(i).append("(rules);\n");
+    sb.append("    return rules[0];\n}\n\n");
+
+    // Append init methods
+    for(int i=0; i<methodCount; i++) {
+        sb.append("/** Initializes rules ").append(i*RULES_PER_METHOD).append(" to ");
+        sb.append(Math.min((i+1)*RULES_PER_METHOD, _rules.size()) - 1).append(". */\n");
+        sb.append("private static void init").append(i).append("(ParseRule rules[])\n{\n");
+        for(int j=i*RULES_PER_METHOD, jMax=Math.min(j+RULES_PER_METHOD, _rules.size()); j<jMax; j++)
+            appendRule(sb, j);
+        sb.append("}\n\n");
+    }
+
+    // Append rule init method and close
+    sb.append("/** Initializes rule at given index in given rules. */\n");
+    sb.append("private static void r(ParseRule rules[], int anIndex, String aName, Op anOp, int aChild0, ");
+    sb.append("int aChild1,\n    String aPattern, int aLookAhead, ParseHandler aHandler)\n{\n");
+    sb.append("    ParseRule rule = rules[anIndex];\n");
+    sb.append("    if(aName!=null) rule.setName(aName);\n");
+    sb.append("    rule.setOp(anOp);\n");
+    sb.append("    if(aChild0>=0) rule.setChild0(rules[aChild0]);\n");
+    sb.append("    if(aChild1>=0) rule.setChild1(rules[aChild1]);\n");
+    sb.append("    if(aPattern!=null) rule.setPattern(aPattern);\n");
+    sb.append("    if(aLookAhead>0) rule.setLookAheadCount(aLookAhead);\n");
+    sb.append("    if(aHandler!=null) rule.setHandler(aHandler);\n}\n\n}\n");
+    return sb.toString();
+}
+
+/**
+ * Appends the init call for rule at given index.
+ */
+void appendRule(StringBuffer aSB, int anIndex)
+{
+    ParseRule rule = _rules.get(anIndex); String name = rule.getName();
+    aSB.append("    r(rules, ").append(anIndex).append(", ");
+    appendString(aSB, name); aSB.append(", Op.").append(rule.getOp()).append(", ");
+    aSB.append(getIndex(rule.getChild0())).append(", ").append(getIndex(rule.getChild1())).append(", ");
+    appendString(aSB, rule.getPattern()); aSB.append(", ").append(rule.getLookAheadCount()).append(", ");
+    aSB.append(name!=null && _handlers.contains(name)? "new JavaParser." + name + "Handler()" : "null");
+    aSB.append(");\n");
+}
+
+/** Returns the index of given rule (or -1 if null). */
+int getIndex(ParseRule aRule)  { return aRule!=null? _indexes.get(aRule) : -1; }
+
+/** Appends given string as Java string literal (or null). */
+static void appendString(StringBuffer aSB, String aStr)
+{
+    if(aStr==null) { aSB.append("null"); return; }
+    aSB.append('"');
+    for(int i=0, iMax=aStr.length(); i<iMax; i++) { char c = aStr.charAt(i);
+        if(c=='"' || c=='\\') aSB.append('\\').append(c);
+        else if(c=='\n') aSB.append("\\n");
+        else if(c=='\r') aSB.append("\\r");
+        else if(c=='\t') aSB.append("\\t");
+        else if(c<' ' || c>'~') aSB.append(String.format("\\u%04x", (int)c));
+        else aSB.append(c);
+    }
+    aSB.append('"');
+}
+
+}